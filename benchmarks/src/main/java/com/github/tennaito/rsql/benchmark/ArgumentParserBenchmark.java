@@ -0,0 +1,145 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2013 Jakub Jirutka <jakub@jirutka.cz>.
+ * Copyright 2015 Antonio Rabelo.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.tennaito.rsql.benchmark;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.github.tennaito.rsql.misc.ArgumentParser;
+import com.github.tennaito.rsql.misc.DefaultArgumentParser;
+
+/**
+ * ArgumentParserBenchmark
+ *
+ * Conversion of string arguments by the DefaultArgumentParser, one argument
+ * and a list of arguments as used by =in= comparisons.
+ *
+ * @author AntonioRabelo
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class ArgumentParserBenchmark {
+
+    @Param({"String", "Integer", "Long", "Float", "Double", "Boolean", "BigDecimal", "Enum", "Date", "DateTime", "ValueOf"})
+    public String type;
+
+    @Param({"100"})
+    public int listSize;
+
+    private final ArgumentParser parser = new DefaultArgumentParser();
+
+    private Class<?> javaType;
+
+    private String argument;
+
+    private List<String> arguments;
+
+    @Setup
+    public void setUp() {
+        if ("String".equals(type)) {
+            javaType = String.class; argument = "Testing Course";
+        } else if ("Integer".equals(type)) {
+            javaType = Integer.class; argument = "123456";
+        } else if ("Long".equals(type)) {
+            javaType = Long.class; argument = "123456789123456789";
+        } else if ("Float".equals(type)) {
+            javaType = Float.class; argument = "42.22";
+        } else if ("Double".equals(type)) {
+            javaType = Double.class; argument = "42.22";
+        } else if ("Boolean".equals(type)) {
+            javaType = Boolean.class; argument = "true";
+        } else if ("BigDecimal".equals(type)) {
+            javaType = BigDecimal.class; argument = "1235.2232";
+        } else if ("Enum".equals(type)) {
+            javaType = Season.class; argument = "WINTER";
+        } else if ("Date".equals(type)) {
+            javaType = Date.class; argument = "2011-08-26";
+        } else if ("DateTime".equals(type)) {
+            javaType = Date.class; argument = "2011-08-26T14:15:30";
+        } else if ("ValueOf".equals(type)) {
+            javaType = Code.class; argument = "MI-MDW";
+        } else {
+            throw new IllegalArgumentException("Unknown type: " + type);
+        }
+        arguments = new ArrayList<String>(listSize);
+        for (int i = 0; i < listSize; i++) {
+            arguments.add(argument);
+        }
+    }
+
+    @Benchmark
+    public Object parse() {
+        return parser.parse(argument, javaType);
+    }
+
+    @Benchmark
+    public Object parseList() {
+        return parser.parse(arguments, javaType);
+    }
+
+    public enum Season {
+        WINTER, SUMMER
+    }
+
+    /**
+     * Type converted through its valueOf(String) method.
+     */
+    public static class Code {
+
+        private final String value;
+
+        private Code(String value) {
+            this.value = value;
+        }
+
+        public static Code valueOf(String value) {
+            return new Code(value);
+        }
+
+        @Override
+        public String toString() {
+            return value;
+        }
+    }
+}
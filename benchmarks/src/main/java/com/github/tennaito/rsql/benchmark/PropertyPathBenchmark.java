@@ -0,0 +1,104 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2013 Jakub Jirutka <jakub@jirutka.cz>.
+ * Copyright 2015 Antonio Rabelo.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.tennaito.rsql.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Path;
+import javax.persistence.criteria.Root;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.github.tennaito.rsql.benchmark.entity.Course;
+import com.github.tennaito.rsql.builder.BuilderTools;
+import com.github.tennaito.rsql.builder.SimpleBuilderTools;
+import com.github.tennaito.rsql.jpa.PredicateBuilder;
+
+/**
+ * PropertyPathBenchmark
+ *
+ * Resolution of selectors of increasing depth by PredicateBuilder.findPropertyPath,
+ * with a warm selector plan cache and with the plan compiled on every call.
+ * The baseline measures the creation of the CriteriaQuery and its root alone.
+ *
+ * @author AntonioRabelo
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class PropertyPathBenchmark {
+
+    private static final String[] SELECTORS = {
+        "name",
+        "department.code",
+        "department.head.surname",
+        "department.head.titles.name"
+    };
+
+    @Param({"1", "2", "3", "4"})
+    public int depth;
+
+    private final BuilderTools tools = new SimpleBuilderTools();
+
+    private String selector;
+
+    @Setup
+    public void setUp() {
+        selector = SELECTORS[depth - 1];
+    }
+
+    @Benchmark
+    public Root<Course> baseline(PersistenceState state) {
+        CriteriaQuery<Course> query = state.entityManager.getCriteriaBuilder().createQuery(Course.class);
+        return query.from(Course.class);
+    }
+
+    @Benchmark
+    public Path<?> findPropertyPath(PersistenceState state) {
+        CriteriaQuery<Course> query = state.entityManager.getCriteriaBuilder().createQuery(Course.class);
+        Root<Course> root = query.from(Course.class);
+        return PredicateBuilder.findPropertyPath(selector, root, state.entityManager, tools);
+    }
+
+    @Benchmark
+    public Path<?> findPropertyPathUncached(PersistenceState state) {
+        tools.getSelectorPlanCache().clear();
+        return findPropertyPath(state);
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2013 Jakub Jirutka <jakub@jirutka.cz>.
+ * Copyright 2015 Antonio Rabelo.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.tennaito.rsql.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import javax.persistence.EntityManager;
+import javax.persistence.criteria.CriteriaQuery;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.github.tennaito.rsql.benchmark.entity.Course;
+import com.github.tennaito.rsql.jpa.JpaCriteriaQueryVisitor;
+
+import cz.jirutka.rsql.parser.RSQLParser;
+import cz.jirutka.rsql.parser.ast.Node;
+import cz.jirutka.rsql.parser.ast.RSQLVisitor;
+
+/**
+ * TranslationBenchmark
+ *
+ * Parsing of RSQL filters and full translation of their AST into a CriteriaQuery
+ * by the JpaCriteriaQueryVisitor, for small, medium and huge filters.
+ *
+ * @author AntonioRabelo
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class TranslationBenchmark {
+
+    @Param({"small", "medium", "huge"})
+    public String size;
+
+    private final RSQLParser parser = new RSQLParser();
+
+    private final RSQLVisitor<CriteriaQuery<Course>, EntityManager> visitor = new JpaCriteriaQueryVisitor<Course>();
+
+    private String filter;
+
+    private Node node;
+
+    @Setup
+    public void setUp() {
+        filter = filter(size);
+        node = parser.parse(filter);
+    }
+
+    @Benchmark
+    public Node parse() {
+        return parser.parse(filter);
+    }
+
+    @Benchmark
+    public CriteriaQuery<Course> translate(PersistenceState state) {
+        return node.accept(visitor, state.entityManager);
+    }
+
+    @Benchmark
+    public CriteriaQuery<Course> parseAndTranslate(PersistenceState state) {
+        return parser.parse(filter).accept(visitor, state.entityManager);
+    }
+
+    /**
+     * Build the filter of a given size.
+     *
+     * @param size  small, medium or huge.
+     * @return      RSQL filter.
+     */
+    static String filter(String size) {
+        if ("small".equals(size)) {
+            return "id==1";
+        }
+        if ("medium".equals(size)) {
+            return "name==*Course*;credits=gt=3;department.code==MI-MDW;(active==true,startDate=ge=2015-01-01)";
+        }
+        if ("huge".equals(size)) {
+            StringBuilder builder = new StringBuilder("id=in=(");
+            for (int i = 0; i < 500; i++) {
+                builder.append(i == 0 ? "" : ",").append(i);
+            }
+            builder.append(")");
+            for (int i = 0; i < 50; i++) {
+                builder.append(i % 2 == 0 ? ';' : ',')
+                       .append("(name==*Course").append(i).append("*,department.head.surname==Surname").append(i)
+                       .append(";credits=le=").append(i).append(")");
+            }
+            return builder.toString();
+        }
+        throw new IllegalArgumentException("Unknown size: " + size);
+    }
+}
@@ -0,0 +1,154 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Antonio Rabelo.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.tennaito.rsql.builder;
+
+import com.github.tennaito.rsql.jpa.CaseSensitivityPolicy;
+import com.github.tennaito.rsql.jpa.CollectionFilterMode;
+import com.github.tennaito.rsql.jpa.DefaultInListStrategy;
+import com.github.tennaito.rsql.jpa.InListStrategy;
+import com.github.tennaito.rsql.jpa.LeadingWildcardHandler;
+import com.github.tennaito.rsql.jpa.OperatorRegistry;
+import com.github.tennaito.rsql.jpa.SelectorPlanCache;
+import com.github.tennaito.rsql.jpa.TranslationListener;
+import com.github.tennaito.rsql.jpa.TranslationListenerAdapter;
+
+/**
+ * Abstract Builder Tools
+ *
+ * Base class of the BuilderTools that only define the mapper, the argument
+ * parser and the predicate builder. The other tools default to the ones of
+ * {@link SimpleBuilderTools}, each instance with its own registries, and can
+ * be replaced through their setters.
+ *
+ * @author AntonioRabelo
+ */
+public abstract class AbstractBuilderTools implements BuilderTools {
+
+	// defaults are created eagerly, so threads sharing the tools see the same ones
+	private volatile SelectorPlanCache selectorPlanCache = new SelectorPlanCache();
+	private volatile TranslationListener listener = TranslationListenerAdapter.NONE;
+	private volatile OperatorRegistry operatorRegistry = new OperatorRegistry();
+	private volatile InListStrategy inListStrategy = new DefaultInListStrategy();
+	private volatile LeadingWildcardHandler leadingWildcardHandler;
+	private volatile CaseSensitivityPolicy caseSensitivityPolicy = new CaseSensitivityPolicy();
+	private volatile CollectionFilterMode collectionFilterMode = CollectionFilterMode.JOIN;
+
+	/* (non-Javadoc)
+	 * @see br.tennaito.rsql.builder.BuilderTools#setSelectorPlanCache(br.tennaito.rsql.jpa.SelectorPlanCache)
+	 */
+	public void setSelectorPlanCache(SelectorPlanCache selectorPlanCache) {
+		this.selectorPlanCache = selectorPlanCache == null ? new SelectorPlanCache() : selectorPlanCache;
+	}
+
+	/* (non-Javadoc)
+	 * @see br.tennaito.rsql.builder.BuilderTools#setTranslationListener(br.tennaito.rsql.jpa.TranslationListener)
+	 */
+	public void setTranslationListener(TranslationListener listener) {
+		this.listener = listener == null ? TranslationListenerAdapter.NONE : listener;
+	}
+
+	/* (non-Javadoc)
+	 * @see br.tennaito.rsql.builder.BuilderTools#setOperatorRegistry(br.tennaito.rsql.jpa.OperatorRegistry)
+	 */
+	public void setOperatorRegistry(OperatorRegistry operatorRegistry) {
+		this.operatorRegistry = operatorRegistry == null ? new OperatorRegistry() : operatorRegistry;
+	}
+
+	/* (non-Javadoc)
+	 * @see br.tennaito.rsql.builder.BuilderTools#setInListStrategy(br.tennaito.rsql.jpa.InListStrategy)
+	 */
+	public void setInListStrategy(InListStrategy inListStrategy) {
+		this.inListStrategy = inListStrategy == null ? new DefaultInListStrategy() : inListStrategy;
+	}
+
+	/* (non-Javadoc)
+	 * @see br.tennaito.rsql.builder.BuilderTools#setLeadingWildcardHandler(br.tennaito.rsql.jpa.LeadingWildcardHandler)
+	 */
+	public void setLeadingWildcardHandler(LeadingWildcardHandler leadingWildcardHandler) {
+		this.leadingWildcardHandler = leadingWildcardHandler;
+	}
+
+	/* (non-Javadoc)
+	 * @see br.tennaito.rsql.builder.BuilderTools#setCaseSensitivityPolicy(br.tennaito.rsql.jpa.CaseSensitivityPolicy)
+	 */
+	public void setCaseSensitivityPolicy(CaseSensitivityPolicy caseSensitivityPolicy) {
+		this.caseSensitivityPolicy = caseSensitivityPolicy == null ? new CaseSensitivityPolicy() : caseSensitivityPolicy;
+	}
+
+	/* (non-Javadoc)
+	 * @see br.tennaito.rsql.builder.BuilderTools#setCollectionFilterMode(br.tennaito.rsql.jpa.CollectionFilterMode)
+	 */
+	public void setCollectionFilterMode(CollectionFilterMode collectionFilterMode) {
+		this.collectionFilterMode = collectionFilterMode == null ? CollectionFilterMode.JOIN : collectionFilterMode;
+	}
+
+	/* (non-Javadoc)
+	 * @see br.tennaito.rsql.builder.BuilderTools#getSelectorPlanCache()
+	 */
+	public SelectorPlanCache getSelectorPlanCache() {
+		return this.selectorPlanCache;
+	}
+
+	/* (non-Javadoc)
+	 * @see br.tennaito.rsql.builder.BuilderTools#getTranslationListener()
+	 */
+	public TranslationListener getTranslationListener() {
+		return this.listener;
+	}
+
+	/* (non-Javadoc)
+	 * @see br.tennaito.rsql.builder.BuilderTools#getOperatorRegistry()
+	 */
+	public OperatorRegistry getOperatorRegistry() {
+		return this.operatorRegistry;
+	}
+
+	/* (non-Javadoc)
+	 * @see br.tennaito.rsql.builder.BuilderTools#getInListStrategy()
+	 */
+	public InListStrategy getInListStrategy() {
+		return this.inListStrategy;
+	}
+
+	/* (non-Javadoc)
+	 * @see br.tennaito.rsql.builder.BuilderTools#getLeadingWildcardHandler()
+	 */
+	public LeadingWildcardHandler getLeadingWildcardHandler() {
+		return this.leadingWildcardHandler;
+	}
+
+	/* (non-Javadoc)
+	 * @see br.tennaito.rsql.builder.BuilderTools#getCaseSensitivityPolicy()
+	 */
+	public CaseSensitivityPolicy getCaseSensitivityPolicy() {
+		return this.caseSensitivityPolicy;
+	}
+
+	/* (non-Javadoc)
+	 * @see br.tennaito.rsql.builder.BuilderTools#getCollectionFilterMode()
+	 */
+	public CollectionFilterMode getCollectionFilterMode() {
+		return this.collectionFilterMode;
+	}
+}
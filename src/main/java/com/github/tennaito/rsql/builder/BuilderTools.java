@@ -23,7 +23,15 @@
  */
 package com.github.tennaito.rsql.builder;
 
+import com.github.tennaito.rsql.jpa.CaseSensitivityPolicy;
+import com.github.tennaito.rsql.jpa.CollectionFilterMode;
+import com.github.tennaito.rsql.jpa.InListStrategy;
+import com.github.tennaito.rsql.jpa.LeadingWildcardHandler;
+import com.github.tennaito.rsql.jpa.OperatorRegistry;
 import com.github.tennaito.rsql.jpa.PredicateBuilderStrategy;
+import com.github.tennaito.rsql.jpa.SelectorPlanCache;
+import com.github.tennaito.rsql.jpa.TranslationListener;
+import com.github.tennaito.rsql.jpa.TranslationListenerAdapter;
 import com.github.tennaito.rsql.misc.ArgumentParser;
 import com.github.tennaito.rsql.misc.Mapper;
 
@@ -33,6 +41,19 @@ import com.github.tennaito.rsql.misc.Mapper;
  * PropertyMapper for translation of properties aliases.
  * ArgumentParser for casting specific types.
  * PredicateBuilder for RSQL AST new nodes.
+ * SelectorPlanCache for reusing resolved selectors.
+ * TranslationListener for tracing the translation.
+ * OperatorRegistry for the handlers of comparison operators.
+ * InListStrategy for the translation of large lists of values.
+ * LeadingWildcardHandler for string comparisons no index can serve.
+ * CaseSensitivityPolicy for the case sensitivity of string comparisons.
+ * CollectionFilterMode for the comparisons on collections.
+ *
+ * The tools after the first three have default methods: their getters return
+ * the defaults of {@link SimpleBuilderTools}, with frozen registries shared by
+ * all such implementations, and their setters throw an
+ * UnsupportedOperationException. {@link AbstractBuilderTools} makes them
+ * settable.
  *
  * @author AntonioRabelo
  * @since 2015-02-03
@@ -80,4 +101,130 @@ public interface BuilderTools {
 	 * @param predicateStrategy PredicateBuilderStrategy
 	 */
 	public void setPredicateBuilder(PredicateBuilderStrategy predicateStrategy);
+
+	/**
+	 * Get the cache of resolved selector plans.
+	 *
+	 * @return SelectorPlanCache
+	 */
+	public default SelectorPlanCache getSelectorPlanCache() {
+		return BuilderToolsDefaults.SELECTOR_PLAN_CACHE;
+	}
+
+	/**
+	 * Set a specific selector plan cache, e.g. to share it between visitors.
+	 *
+	 * @param selectorPlanCache SelectorPlanCache
+	 */
+	public default void setSelectorPlanCache(SelectorPlanCache selectorPlanCache) {
+		throw BuilderToolsDefaults.unsupported("SelectorPlanCache");
+	}
+
+	/**
+	 * Get the listener notified during the translation.
+	 *
+	 * @return TranslationListener
+	 */
+	public default TranslationListener getTranslationListener() {
+		return TranslationListenerAdapter.NONE;
+	}
+
+	/**
+	 * Set a specific translation listener.
+	 *
+	 * @param listener TranslationListener
+	 */
+	public default void setTranslationListener(TranslationListener listener) {
+		throw BuilderToolsDefaults.unsupported("TranslationListener");
+	}
+
+	/**
+	 * Get the registry of comparison operator handlers.
+	 *
+	 * @return OperatorRegistry
+	 */
+	public default OperatorRegistry getOperatorRegistry() {
+		return BuilderToolsDefaults.OPERATOR_REGISTRY;
+	}
+
+	/**
+	 * Set a specific operator registry, e.g. to register new operators.
+	 *
+	 * @param operatorRegistry OperatorRegistry
+	 */
+	public default void setOperatorRegistry(OperatorRegistry operatorRegistry) {
+		throw BuilderToolsDefaults.unsupported("OperatorRegistry");
+	}
+
+	/**
+	 * Get the strategy for the translation of =in= and =out= lists.
+	 *
+	 * @return InListStrategy
+	 */
+	public default InListStrategy getInListStrategy() {
+		return BuilderToolsDefaults.IN_LIST_STRATEGY;
+	}
+
+	/**
+	 * Set a specific strategy for lists of values, e.g. to split large lists.
+	 *
+	 * @param inListStrategy InListStrategy
+	 */
+	public default void setInListStrategy(InListStrategy inListStrategy) {
+		throw BuilderToolsDefaults.unsupported("InListStrategy");
+	}
+
+	/**
+	 * Get the handler of string comparisons with a leading wildcard.
+	 *
+	 * @return LeadingWildcardHandler
+	 */
+	public default LeadingWildcardHandler getLeadingWildcardHandler() {
+		return null;
+	}
+
+	/**
+	 * Set the handler of string comparisons with a leading wildcard, <tt>null</tt> for none.
+	 *
+	 * @param leadingWildcardHandler LeadingWildcardHandler
+	 */
+	public default void setLeadingWildcardHandler(LeadingWildcardHandler leadingWildcardHandler) {
+		throw BuilderToolsDefaults.unsupported("LeadingWildcardHandler");
+	}
+
+	/**
+	 * Get the policy of the case sensitivity of string comparisons.
+	 *
+	 * @return CaseSensitivityPolicy
+	 */
+	public default CaseSensitivityPolicy getCaseSensitivityPolicy() {
+		return BuilderToolsDefaults.CASE_SENSITIVITY_POLICY;
+	}
+
+	/**
+	 * Set the policy of the case sensitivity of string comparisons.
+	 *
+	 * @param caseSensitivityPolicy CaseSensitivityPolicy
+	 */
+	public default void setCaseSensitivityPolicy(CaseSensitivityPolicy caseSensitivityPolicy) {
+		throw BuilderToolsDefaults.unsupported("CaseSensitivityPolicy");
+	}
+
+	/**
+	 * Get the mode of the comparisons on collections.
+	 *
+	 * @return CollectionFilterMode
+	 */
+	public default CollectionFilterMode getCollectionFilterMode() {
+		return CollectionFilterMode.JOIN;
+	}
+
+	/**
+	 * Set the mode of the comparisons on collections.
+	 *
+	 * @param collectionFilterMode CollectionFilterMode
+	 */
+	public default void setCollectionFilterMode(CollectionFilterMode collectionFilterMode) {
+		throw BuilderToolsDefaults.unsupported("CollectionFilterMode");
+	}
 }
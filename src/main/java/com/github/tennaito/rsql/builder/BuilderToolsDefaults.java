@@ -0,0 +1,54 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Antonio Rabelo.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.tennaito.rsql.builder;
+
+import com.github.tennaito.rsql.jpa.CaseSensitivityPolicy;
+import com.github.tennaito.rsql.jpa.DefaultInListStrategy;
+import com.github.tennaito.rsql.jpa.InListStrategy;
+import com.github.tennaito.rsql.jpa.OperatorRegistry;
+import com.github.tennaito.rsql.jpa.SelectorPlanCache;
+
+/**
+ * Defaults of the tools returned by the default methods of {@link BuilderTools}.
+ * The registries are frozen, as they are shared by all such implementations.
+ *
+ * @author AntonioRabelo
+ */
+final class BuilderToolsDefaults {
+
+	static final SelectorPlanCache SELECTOR_PLAN_CACHE = new SelectorPlanCache();
+
+	static final OperatorRegistry OPERATOR_REGISTRY = new OperatorRegistry().frozenCopy();
+
+	static final InListStrategy IN_LIST_STRATEGY = new DefaultInListStrategy();
+
+	static final CaseSensitivityPolicy CASE_SENSITIVITY_POLICY = new CaseSensitivityPolicy().frozenCopy();
+
+	private BuilderToolsDefaults() {
+	}
+
+	static UnsupportedOperationException unsupported(String tool) {
+		return new UnsupportedOperationException(tool + " can not be set on these builder tools.");
+	}
+}
@@ -0,0 +1,198 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2013 Jakub Jirutka <jakub@jirutka.cz>.
+ * Copyright 2015 Antonio Rabelo.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.tennaito.rsql.builder;
+
+import com.github.tennaito.rsql.jpa.CaseSensitivityPolicy;
+import com.github.tennaito.rsql.jpa.CollectionFilterMode;
+import com.github.tennaito.rsql.jpa.InListStrategy;
+import com.github.tennaito.rsql.jpa.LeadingWildcardHandler;
+import com.github.tennaito.rsql.jpa.OperatorRegistry;
+import com.github.tennaito.rsql.jpa.PredicateBuilderStrategy;
+import com.github.tennaito.rsql.jpa.SelectorPlanCache;
+import com.github.tennaito.rsql.jpa.TranslationListener;
+import com.github.tennaito.rsql.misc.ArgumentParser;
+import com.github.tennaito.rsql.misc.DefaultArgumentParser;
+import com.github.tennaito.rsql.misc.Mapper;
+import com.github.tennaito.rsql.misc.SimpleMapper;
+
+/**
+ * Immutable Builder Tools
+ *
+ * A frozen copy of another BuilderTools. All tools are resolved when the copy
+ * is made and every setter throws an UnsupportedOperationException, so the
+ * instance can be shared between threads.
+ *
+ * The mutable tools of this library, SimpleMapper, DefaultArgumentParser,
+ * OperatorRegistry and CaseSensitivityPolicy, are replaced by frozen copies, so later changes on the
+ * original facade are not seen. Other implementations of these tools, and the
+ * thread-safe SelectorPlanCache, are shared with the original facade and must
+ * not be changed after they have been frozen.
+ *
+ * @author AntonioRabelo
+ */
+public final class ImmutableBuilderTools implements BuilderTools {
+
+	private final Mapper mapper;
+	private final ArgumentParser argumentParser;
+	private final PredicateBuilderStrategy delegate;
+	private final SelectorPlanCache selectorPlanCache;
+	private final TranslationListener listener;
+	private final OperatorRegistry operatorRegistry;
+	private final InListStrategy inListStrategy;
+	private final LeadingWildcardHandler leadingWildcardHandler;
+	private final CaseSensitivityPolicy caseSensitivityPolicy;
+	private final CollectionFilterMode collectionFilterMode;
+
+	/**
+	 * Freeze the tools of another facade.
+	 *
+	 * @param tools BuilderTools to copy.
+	 */
+	public ImmutableBuilderTools(BuilderTools tools) {
+		this.mapper = freeze(tools.getPropertiesMapper());
+		this.argumentParser = freeze(tools.getArgumentParser());
+		this.delegate = tools.getPredicateBuilder();
+		this.selectorPlanCache = tools.getSelectorPlanCache();
+		this.listener = tools.getTranslationListener();
+		this.operatorRegistry = freeze(tools.getOperatorRegistry());
+		this.inListStrategy = tools.getInListStrategy();
+		this.leadingWildcardHandler = tools.getLeadingWildcardHandler();
+		this.caseSensitivityPolicy = freeze(tools.getCaseSensitivityPolicy());
+		this.collectionFilterMode = tools.getCollectionFilterMode();
+	}
+
+	/**
+	 * Freeze a facade unless it is already frozen.
+	 *
+	 * @param tools BuilderTools to freeze.
+	 * @return      An immutable facade with the same tools.
+	 */
+	public static ImmutableBuilderTools of(BuilderTools tools) {
+		if (tools instanceof ImmutableBuilderTools) {
+			return (ImmutableBuilderTools) tools;
+		}
+		return new ImmutableBuilderTools(tools);
+	}
+
+	private static Mapper freeze(Mapper mapper) {
+		return mapper != null && mapper.getClass() == SimpleMapper.class ? ((SimpleMapper) mapper).frozenCopy() : mapper;
+	}
+
+	private static ArgumentParser freeze(ArgumentParser parser) {
+		return parser != null && parser.getClass() == DefaultArgumentParser.class ? ((DefaultArgumentParser) parser).frozenCopy() : parser;
+	}
+
+	private static OperatorRegistry freeze(OperatorRegistry registry) {
+		return registry != null && registry.getClass() == OperatorRegistry.class ? registry.frozenCopy() : registry;
+	}
+
+	private static CaseSensitivityPolicy freeze(CaseSensitivityPolicy policy) {
+		return policy != null && policy.getClass() == CaseSensitivityPolicy.class ? policy.frozenCopy() : policy;
+	}
+
+	public Mapper getPropertiesMapper() {
+		return this.mapper;
+	}
+
+	public void setPropertiesMapper(Mapper mapper) {
+		throw unsupported();
+	}
+
+	public ArgumentParser getArgumentParser() {
+		return this.argumentParser;
+	}
+
+	public void setArgumentParser(ArgumentParser argumentParser) {
+		throw unsupported();
+	}
+
+	public PredicateBuilderStrategy getPredicateBuilder() {
+		return this.delegate;
+	}
+
+	public void setPredicateBuilder(PredicateBuilderStrategy predicateStrategy) {
+		throw unsupported();
+	}
+
+	public SelectorPlanCache getSelectorPlanCache() {
+		return this.selectorPlanCache;
+	}
+
+	public void setSelectorPlanCache(SelectorPlanCache selectorPlanCache) {
+		throw unsupported();
+	}
+
+	public TranslationListener getTranslationListener() {
+		return this.listener;
+	}
+
+	public void setTranslationListener(TranslationListener listener) {
+		throw unsupported();
+	}
+
+	public OperatorRegistry getOperatorRegistry() {
+		return this.operatorRegistry;
+	}
+
+	public void setOperatorRegistry(OperatorRegistry operatorRegistry) {
+		throw unsupported();
+	}
+
+	public InListStrategy getInListStrategy() {
+		return this.inListStrategy;
+	}
+
+	public void setInListStrategy(InListStrategy inListStrategy) {
+		throw unsupported();
+	}
+
+	public LeadingWildcardHandler getLeadingWildcardHandler() {
+		return this.leadingWildcardHandler;
+	}
+
+	public void setLeadingWildcardHandler(LeadingWildcardHandler leadingWildcardHandler) {
+		throw unsupported();
+	}
+
+	public CaseSensitivityPolicy getCaseSensitivityPolicy() {
+		return this.caseSensitivityPolicy;
+	}
+
+	public void setCaseSensitivityPolicy(CaseSensitivityPolicy caseSensitivityPolicy) {
+		throw unsupported();
+	}
+
+	public CollectionFilterMode getCollectionFilterMode() {
+		return this.collectionFilterMode;
+	}
+
+	public void setCollectionFilterMode(CollectionFilterMode collectionFilterMode) {
+		throw unsupported();
+	}
+
+	private static UnsupportedOperationException unsupported() {
+		return new UnsupportedOperationException("Builder tools are immutable.");
+	}
+}
@@ -37,25 +37,25 @@ import com.github.tennaito.rsql.misc.SimpleMapper;
  * @author AntonioRabelo
  * @since 2015-02-13
  */
-public class SimpleBuilderTools implements BuilderTools {
+public class SimpleBuilderTools extends AbstractBuilderTools {
 
-	private Mapper mapper;
-	private ArgumentParser argumentParser;
-	private PredicateBuilderStrategy delegate;
+	private volatile Mapper mapper = new SimpleMapper();
+	private volatile ArgumentParser argumentParser = new DefaultArgumentParser();
+	private volatile PredicateBuilderStrategy delegate;
 
 
 	/* (non-Javadoc)
 	 * @see br.tennaito.rsql.builder.BuilderTools#setPropertiesMapper(br.tennaito.rsql.misc.Mapper)
 	 */
 	public void setPropertiesMapper(Mapper mapper) {
-		this.mapper = mapper;
+		this.mapper = mapper == null ? new SimpleMapper() : mapper;
 	}
 
 	/* (non-Javadoc)
 	 * @see br.tennaito.rsql.builder.BuilderTools#setArgumentParser(br.tennaito.rsql.misc.ArgumentParser)
 	 */
 	public void setArgumentParser(ArgumentParser argumentParser) {
-		this.argumentParser = argumentParser;
+		this.argumentParser = argumentParser == null ? new DefaultArgumentParser() : argumentParser;
 	}
 
 	/* (non-Javadoc)
@@ -69,9 +69,6 @@ public class SimpleBuilderTools implements BuilderTools {
 	 * @see br.tennaito.rsql.builder.BuilderTools#getPropertiesMapper()
 	 */
 	public Mapper getPropertiesMapper() {
-		if (this.mapper == null) {
-			this.mapper = new SimpleMapper();
-		}
 		return this.mapper;
 	}
 
@@ -79,9 +76,6 @@ public class SimpleBuilderTools implements BuilderTools {
 	 * @see br.tennaito.rsql.builder.BuilderTools#getArgumentParser()
 	 */
 	public ArgumentParser getArgumentParser() {
-		if (this.argumentParser == null) {
-			this.argumentParser = new DefaultArgumentParser();
-		}
 		return this.argumentParser;
 	}
 
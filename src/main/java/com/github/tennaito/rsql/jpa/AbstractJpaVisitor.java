@@ -35,6 +35,9 @@ import cz.jirutka.rsql.parser.ast.RSQLVisitor;
  *
  * Abstract Visitor class for parsing RSQL AST Nodes.
  *
+ * Visitors keep their state in fields and are not thread-safe, use a
+ * {@link JpaTranslator} to share one translator between threads.
+ *
  * @author AntonioRabelo
  *
  * @param <T> Result type
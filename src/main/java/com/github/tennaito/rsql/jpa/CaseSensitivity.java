@@ -0,0 +1,67 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2013 Jakub Jirutka <jakub@jirutka.cz>.
+ * Copyright 2015 Antonio Rabelo.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.tennaito.rsql.jpa;
+
+/**
+ * CaseSensitivity
+ *
+ * How a string attribute is compared by the == and != operators.
+ *
+ * @author AntonioRabelo
+ * @see CaseSensitivityPolicy
+ */
+public enum CaseSensitivity {
+
+    /**
+     * The column is compared with the argument as it is written.
+     */
+    SENSITIVE,
+
+    /**
+     * The column wrapped in <tt>lower(...)</tt> is compared with the argument
+     * in lower case, which needs a function-based index.
+     */
+    LOWER,
+
+    /**
+     * A mapped shadow attribute, holding the column in lower case, is compared
+     * with the argument in lower case.
+     */
+    SHADOW,
+
+    /**
+     * The column is compared with the argument as it is written, the
+     * case-insensitive collation of the column making the comparison
+     * case-insensitive.
+     */
+    COLLATION;
+
+    /**
+     * @return <tt>true</tt> if the argument is converted to lower case.
+     */
+    public boolean isLowerCase() {
+        return this == LOWER || this == SHADOW;
+    }
+}
@@ -0,0 +1,252 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2013 Jakub Jirutka <jakub@jirutka.cz>.
+ * Copyright 2015 Antonio Rabelo.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.tennaito.rsql.jpa;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.Expression;
+import javax.persistence.criteria.Path;
+import javax.persistence.metamodel.Attribute;
+import javax.persistence.metamodel.Bindable;
+
+/**
+ * CaseSensitivityPolicy
+ *
+ * Thread-safe policy of the case sensitivity of string comparisons. The
+ * sensitivity of an attribute is the one registered for the attribute, then
+ * the one registered for its entity and finally the default one, which is
+ * {@link CaseSensitivity#LOWER} unless told otherwise.
+ *
+ * Attributes are looked up in the entity the selector navigates through and
+ * in the type that declares them, so an attribute of a mapped superclass can
+ * be registered once for all its entities.
+ *
+ * @author AntonioRabelo
+ */
+public class CaseSensitivityPolicy {
+
+    private final CaseSensitivity defaultSensitivity;
+
+    private final boolean frozen;
+
+    private final ConcurrentMap<Key, CaseSensitivity> sensitivities = new ConcurrentHashMap<Key, CaseSensitivity>();
+
+    /**
+     * Segments of the shadow paths, split once when they are registered.
+     */
+    private final ConcurrentMap<Key, String[]> shadows = new ConcurrentHashMap<Key, String[]>();
+
+    /**
+     * Construct a policy comparing in lower case by default.
+     */
+    public CaseSensitivityPolicy() {
+        this(CaseSensitivity.LOWER);
+    }
+
+    /**
+     * Construct a policy.
+     *
+     * @param defaultSensitivity  Sensitivity of attributes without registration, can not be SHADOW.
+     */
+    public CaseSensitivityPolicy(CaseSensitivity defaultSensitivity) {
+        if (defaultSensitivity == null || defaultSensitivity == CaseSensitivity.SHADOW) {
+            throw new IllegalArgumentException("Invalid default sensitivity: " + defaultSensitivity);
+        }
+        this.defaultSensitivity = defaultSensitivity;
+        this.frozen = false;
+    }
+
+    private CaseSensitivityPolicy(CaseSensitivityPolicy policy) {
+        this.defaultSensitivity = policy.defaultSensitivity;
+        this.frozen = true;
+        this.sensitivities.putAll(policy.sensitivities);
+        this.shadows.putAll(policy.shadows);
+    }
+
+    /**
+     * Copy the registered sensitivities and shadows into a policy that rejects
+     * new registrations.
+     *
+     * @return A frozen copy of this policy.
+     */
+    public CaseSensitivityPolicy frozenCopy() {
+        return frozen ? this : new CaseSensitivityPolicy(this);
+    }
+
+    /**
+     * Register the sensitivity of all string attributes of an entity.
+     *
+     * @param type         Entity java type.
+     * @param sensitivity  Case sensitivity, can not be SHADOW.
+     */
+    public void register(Class<?> type, CaseSensitivity sensitivity) {
+        register(type, null, sensitivity);
+    }
+
+    /**
+     * Register the sensitivity of one attribute.
+     *
+     * @param type         Entity java type.
+     * @param attribute    Attribute name, null for all attributes.
+     * @param sensitivity  Case sensitivity, can not be SHADOW.
+     */
+    public void register(Class<?> type, String attribute, CaseSensitivity sensitivity) {
+        if (type == null || sensitivity == null || sensitivity == CaseSensitivity.SHADOW) {
+            throw new IllegalArgumentException("Type and a sensitivity other than SHADOW must be defined.");
+        }
+        checkNotFrozen();
+        sensitivities.put(new Key(type, attribute), sensitivity);
+    }
+
+    /**
+     * Register the shadow attribute that holds an attribute in lower case.
+     *
+     * @param type       Entity java type.
+     * @param attribute  Attribute name.
+     * @param shadow     Name of the attribute holding the lower case value, or
+     *                   its dotted path from the entity (e.g. of an embeddable).
+     */
+    public void registerShadow(Class<?> type, String attribute, String shadow) {
+        if (type == null || attribute == null || shadow == null) {
+            throw new IllegalArgumentException("Type, attribute and shadow must be defined.");
+        }
+        checkNotFrozen();
+        Key key = new Key(type, attribute);
+        shadows.put(key, shadow.split("\\."));
+        sensitivities.put(key, CaseSensitivity.SHADOW);
+    }
+
+    /**
+     * Get the sensitivity of a property path.
+     *
+     * @param path  Property path of a string attribute.
+     * @return      Its case sensitivity.
+     */
+    public CaseSensitivity sensitivityOf(Expression<?> path) {
+        if (sensitivities.isEmpty()) {
+            return defaultSensitivity;
+        }
+        Key key = keyOf(path);
+        if (key == null) {
+            return defaultSensitivity;
+        }
+        CaseSensitivity sensitivity = sensitivities.get(key);
+        if (sensitivity == null) {
+            sensitivity = sensitivities.get(new Key(key.type, null));
+        }
+        if (sensitivity == null && key.declaringType != null) {
+            sensitivity = sensitivities.get(new Key(key.declaringType, key.attribute));
+        }
+        return sensitivity == null ? defaultSensitivity : sensitivity;
+    }
+
+    /**
+     * Get the expression compared with the argument.
+     *
+     * @param path         Property path of a string attribute.
+     * @param sensitivity  Its case sensitivity.
+     * @param builder      CriteriaBuilder of the query.
+     * @return             The path, the path in lower case or its shadow path.
+     */
+    @SuppressWarnings("unchecked")
+    public Expression<String> compared(Expression<String> path, CaseSensitivity sensitivity, CriteriaBuilder builder) {
+        switch (sensitivity) {
+            case LOWER : return builder.lower(path);
+            case SHADOW : {
+                Key key = keyOf(path);
+                String[] shadow = shadows.get(key);
+                if (shadow == null && key.declaringType != null) {
+                    shadow = shadows.get(new Key(key.declaringType, key.attribute));
+                }
+                Path<?> shadowPath = ((Path<?>) path).getParentPath();
+                for (String segment : shadow) {
+                    shadowPath = shadowPath.get(segment);
+                }
+                return (Expression<String>) shadowPath;
+            }
+            default : return path;
+        }
+    }
+
+    /**
+     * @return The sensitivity of attributes without registration.
+     */
+    public CaseSensitivity getDefaultSensitivity() {
+        return defaultSensitivity;
+    }
+
+    private void checkNotFrozen() {
+        if (frozen) {
+            throw new UnsupportedOperationException("Case sensitivity policy is frozen.");
+        }
+    }
+
+    private static Key keyOf(Expression<?> path) {
+        if (!(path instanceof Path) || ((Path<?>) path).getParentPath() == null) {
+            return null;
+        }
+        Path<?> property = (Path<?>) path;
+        Bindable<?> model = property.getModel();
+        if (!(model instanceof Attribute)) {
+            return null;
+        }
+        Attribute<?, ?> attribute = (Attribute<?, ?>) model;
+        Class<?> declaringType = attribute.getDeclaringType().getJavaType();
+        Class<?> type = property.getParentPath().getJavaType();
+        return new Key(type, attribute.getName(), type.equals(declaringType) ? null : declaringType);
+    }
+
+    private static final class Key {
+
+        private final Class<?> type;
+        private final String attribute;
+        private final Class<?> declaringType;
+
+        Key(Class<?> type, String attribute) {
+            this(type, attribute, null);
+        }
+
+        Key(Class<?> type, String attribute, Class<?> declaringType) {
+            this.type = type;
+            this.attribute = attribute;
+            this.declaringType = declaringType;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * type.hashCode() + (attribute == null ? 0 : attribute.hashCode());
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) return true;
+            if (!(obj instanceof Key)) return false;
+            Key other = (Key) obj;
+            return type.equals(other.type) && (attribute == null ? other.attribute == null : attribute.equals(other.attribute));
+        }
+    }
+}
@@ -0,0 +1,50 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2013 Jakub Jirutka <jakub@jirutka.cz>.
+ * Copyright 2015 Antonio Rabelo.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.tennaito.rsql.jpa;
+
+/**
+ * CollectionFilterMode
+ *
+ * How a comparison whose selector goes through a collection, such as
+ * <tt>titles.name==Phd</tt> on a person, restricts the main query.
+ *
+ * @author AntonioRabelo
+ */
+public enum CollectionFilterMode {
+
+    /**
+     * The collection is inner joined into the main query, each comparison with
+     * its own join, which repeats the entities matched by several elements.
+     */
+    JOIN,
+
+    /**
+     * The comparison becomes a correlated <tt>exists</tt> subquery, so every
+     * entity is selected once. Comparisons of a conjunction on the same
+     * collection with different selectors share one subquery, so they must be
+     * matched by the same element; a repeated selector opens another subquery.
+     */
+    EXISTS
+}
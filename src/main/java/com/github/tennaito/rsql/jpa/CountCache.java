@@ -0,0 +1,351 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2013 Jakub Jirutka <jakub@jirutka.cz>.
+ * Copyright 2015 Antonio Rabelo.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.tennaito.rsql.jpa;
+
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.github.tennaito.rsql.builder.BuilderTools;
+import com.github.tennaito.rsql.misc.Mapper;
+import com.github.tennaito.rsql.parser.RSQLParserCache;
+
+import cz.jirutka.rsql.parser.ast.Node;
+
+/**
+ * CountCache
+ *
+ * Thread-safe cache of counts, keyed by entity class, canonical fingerprint
+ * of the filter (see {@link RSQLParserCache#fingerprint(Node)}) and the tools
+ * that translated it, with the identity and version of their mapper, so the
+ * pages of a list do not count the same filter again and a filter resolved
+ * differently by other tools is counted apart. Counts are kept at most for the
+ * maximum staleness, and all counts of an entity class and of its super classes
+ * are dropped when {@link #invalidate(Class)} is called, which the
+ * {@link CountCacheInvalidator} entity listener does on every write for the
+ * caches given to {@link #register()}.
+ *
+ * Counts of a filter through an association (e.g. <tt>department.name==X</tt>
+ * on courses) are not invalidated by writes on the associated entity, only by
+ * the maximum staleness. One cache is meant for one persistence unit.
+ *
+ * @author AntonioRabelo
+ * @see JpaCounter
+ */
+public class CountCache {
+
+    public static final int DEFAULT_MAXIMUM_SIZE = 1024;
+
+    private final long maximumStaleness;
+
+    private final int maximumSize;
+
+    private final ConcurrentMap<Class<?>, Region> regions = new ConcurrentHashMap<Class<?>, Region>();
+
+    private final Queue<Queued> insertionOrder = new ConcurrentLinkedQueue<Queued>();
+
+    private final AtomicInteger queued = new AtomicInteger();
+
+    private final AtomicLong hits = new AtomicLong();
+
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * Construct a cache with the default maximum size.
+     *
+     * @param maximumStaleness  Maximum age of a count.
+     * @param unit              Time unit of the maximum age.
+     */
+    public CountCache(long maximumStaleness, TimeUnit unit) {
+        this(maximumStaleness, unit, DEFAULT_MAXIMUM_SIZE);
+    }
+
+    /**
+     * Construct a cache.
+     *
+     * @param maximumStaleness  Maximum age of a count.
+     * @param unit              Time unit of the maximum age.
+     * @param maximumSize       Maximum number of counts kept.
+     */
+    public CountCache(long maximumStaleness, TimeUnit unit, int maximumSize) {
+        if (maximumStaleness < 0 || unit == null || maximumSize < 1) {
+            throw new IllegalArgumentException("Invalid bounds: " + maximumStaleness + " " + unit + ", " + maximumSize);
+        }
+        this.maximumStaleness = unit.toNanos(maximumStaleness);
+        this.maximumSize = maximumSize;
+    }
+
+    /**
+     * Register this cache to the {@link CountCacheInvalidator}, which keeps it
+     * through a weak reference.
+     *
+     * @return This cache.
+     */
+    public CountCache register() {
+        CountCacheInvalidator.register(this);
+        return this;
+    }
+
+    /**
+     * Get a count that is not older than the maximum staleness.
+     *
+     * @param entityClass  Entity class counted.
+     * @param node         RSQL AST node.
+     * @return             The count, or <tt>null</tt> when it must be counted again.
+     */
+    public Long get(Class<?> entityClass, Node node) {
+        return get(entityClass, node, null);
+    }
+
+    /**
+     * Get a count that is not older than the maximum staleness.
+     *
+     * @param entityClass  Entity class counted.
+     * @param node         RSQL AST node.
+     * @param tools        Tools that translate the filter, may be <tt>null</tt>.
+     * @return             The count, or <tt>null</tt> when it must be counted again.
+     */
+    public Long get(Class<?> entityClass, Node node, BuilderTools tools) {
+        Region region = regions.get(entityClass);
+        Entry entry = region == null ? null : region.entries.get(new Key(RSQLParserCache.fingerprint(node), tools));
+        if (entry == null || System.nanoTime() - entry.created > maximumStaleness) {
+            misses.incrementAndGet();
+            return null;
+        }
+        hits.incrementAndGet();
+        return entry.count;
+    }
+
+    /**
+     * Count through a loader, or get the count from the cache. A count that
+     * is loaded while its entity class is invalidated is not kept.
+     *
+     * @param entityClass  Entity class counted.
+     * @param node         RSQL AST node.
+     * @param loader       Loader of the count on misses.
+     * @return             The count.
+     */
+    public long count(Class<?> entityClass, Node node, Loader loader) {
+        return count(entityClass, node, null, loader);
+    }
+
+    /**
+     * Count through a loader, or get the count from the cache. A count that
+     * is loaded while its entity class is invalidated is not kept.
+     *
+     * @param entityClass  Entity class counted.
+     * @param node         RSQL AST node.
+     * @param tools        Tools that translate the filter, may be <tt>null</tt>.
+     * @param loader       Loader of the count on misses.
+     * @return             The count.
+     */
+    public long count(Class<?> entityClass, Node node, BuilderTools tools, Loader loader) {
+        Long cached = get(entityClass, node, tools);
+        if (cached != null) {
+            return cached;
+        }
+        Region region = regionOf(entityClass);
+        long generation = region.generation.get();
+        long count = loader.load();
+        Key key = new Key(RSQLParserCache.fingerprint(node), tools);
+        Entry entry = new Entry(count);
+        region.entries.put(key, entry);
+        // a replaced entry leaves a stale item, which removes nothing when polled
+        insertionOrder.add(new Queued(region, key, entry));
+        queued.incrementAndGet();
+        evict();
+        if (region.generation.get() != generation) {
+            // a write happened while counting
+            region.entries.remove(key, entry);
+        }
+        return count;
+    }
+
+    /**
+     * Drop the counts of an entity class and of its super classes.
+     *
+     * @param entityClass  Entity class written.
+     */
+    public void invalidate(Class<?> entityClass) {
+        for (Map.Entry<Class<?>, Region> region : regions.entrySet()) {
+            if (region.getKey().isAssignableFrom(entityClass)) {
+                region.getValue().generation.incrementAndGet();
+                region.getValue().entries.clear();
+            }
+        }
+    }
+
+    /**
+     * Drop all counts.
+     */
+    public void invalidateAll() {
+        for (Region region : regions.values()) {
+            region.generation.incrementAndGet();
+            region.entries.clear();
+        }
+    }
+
+    /**
+     * @return Number of counts found in the cache.
+     */
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    /**
+     * @return Number of counts not found in the cache or too old.
+     */
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    /**
+     * @return Number of counts kept, including the ones too old.
+     */
+    public int size() {
+        int size = 0;
+        for (Region region : regions.values()) {
+            size += region.entries.size();
+        }
+        return size;
+    }
+
+    private Region regionOf(Class<?> entityClass) {
+        Region region = regions.get(entityClass);
+        if (region == null) {
+            region = new Region();
+            Region previous = regions.putIfAbsent(entityClass, region);
+            region = previous != null ? previous : region;
+        }
+        return region;
+    }
+
+    /**
+     * Poll the oldest items while there are more than the maximum size. Every
+     * kept count has an item, so this bounds the counts; the items of invalidated
+     * or replaced counts only remove the very entry they were queued for.
+     */
+    private void evict() {
+        while (queued.get() > maximumSize) {
+            Queued oldest = insertionOrder.poll();
+            if (oldest == null) {
+                return;
+            }
+            queued.decrementAndGet();
+            oldest.region.entries.remove(oldest.key, oldest.entry);
+        }
+    }
+
+    /**
+     * Loader of a count on cache misses.
+     */
+    public interface Loader {
+
+        /**
+         * @return The exact count.
+         */
+        public long load();
+    }
+
+    /**
+     * Counts of one entity class.
+     */
+    private static final class Region {
+
+        private final AtomicLong generation = new AtomicLong();
+
+        private final ConcurrentMap<Key, Entry> entries = new ConcurrentHashMap<Key, Entry>();
+    }
+
+    private static final class Entry {
+
+        private final long count;
+        private final long created = System.nanoTime();
+
+        Entry(long count) {
+            this.count = count;
+        }
+    }
+
+    /**
+     * Filter and the tools that translate it, compared by identity.
+     */
+    private static final class Key {
+
+        private final String fingerprint;
+        private final BuilderTools tools;
+        private final Mapper mapper;
+        private final long mapperVersion;
+        private final int hash;
+
+        Key(String fingerprint, BuilderTools tools) {
+            this.fingerprint = fingerprint;
+            this.tools = tools;
+            this.mapper = tools == null ? null : tools.getPropertiesMapper();
+            this.mapperVersion = SelectorPlanCache.versionOf(mapper);
+            int h = fingerprint.hashCode();
+            h = 31 * h + System.identityHashCode(tools);
+            h = 31 * h + System.identityHashCode(mapper);
+            this.hash = 31 * h + (int) (mapperVersion ^ (mapperVersion >>> 32));
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) return true;
+            if (!(obj instanceof Key)) return false;
+            Key other = (Key) obj;
+            return tools == other.tools
+                    && mapper == other.mapper
+                    && mapperVersion == other.mapperVersion
+                    && fingerprint.equals(other.fingerprint);
+        }
+    }
+
+    /**
+     * Item of the insertion order.
+     */
+    private static final class Queued {
+
+        private final Region region;
+        private final Key key;
+        private final Entry entry;
+
+        Queued(Region region, Key key, Entry entry) {
+            this.region = region;
+            this.key = key;
+            this.entry = entry;
+        }
+    }
+}
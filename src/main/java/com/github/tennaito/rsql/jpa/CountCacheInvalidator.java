@@ -0,0 +1,83 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2013 Jakub Jirutka <jakub@jirutka.cz>.
+ * Copyright 2015 Antonio Rabelo.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.tennaito.rsql.jpa;
+
+import java.lang.ref.WeakReference;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import javax.persistence.PostPersist;
+import javax.persistence.PostRemove;
+import javax.persistence.PostUpdate;
+
+/**
+ * CountCacheInvalidator
+ *
+ * JPA entity listener invalidating the counts of the written entity classes
+ * in all live {@link CountCache} instances given to {@link CountCache#register()}.
+ *
+ * JPA offers no portable way to add an entity listener at runtime, and this
+ * library does not depend on a provider, so the application declares it on
+ * the entities, <tt>@EntityListeners(CountCacheInvalidator.class)</tt>, or
+ * once for all of them as a default entity listener in <tt>orm.xml</tt>.
+ * Without that declaration counts only expire through the maximum staleness.
+ *
+ * @author AntonioRabelo
+ */
+public class CountCacheInvalidator {
+
+    private static final List<WeakReference<CountCache>> CACHES = new CopyOnWriteArrayList<WeakReference<CountCache>>();
+
+    /**
+     * Register a cache, which is forgotten once it is garbage collected.
+     *
+     * @param cache  Count cache.
+     */
+    static void register(CountCache cache) {
+        for (WeakReference<CountCache> reference : CACHES) {
+            if (reference.get() == null) {
+                CACHES.remove(reference);
+            }
+        }
+        CACHES.add(new WeakReference<CountCache>(cache));
+    }
+
+    /**
+     * Invalidate the counts of the class of a written entity.
+     *
+     * @param entity  Entity persisted, updated or removed.
+     */
+    @PostPersist
+    @PostUpdate
+    @PostRemove
+    public void entityWritten(Object entity) {
+        for (WeakReference<CountCache> reference : CACHES) {
+            CountCache cache = reference.get();
+            if (cache != null) {
+                cache.invalidate(entity.getClass());
+            }
+        }
+    }
+}
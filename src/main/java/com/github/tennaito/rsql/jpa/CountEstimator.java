@@ -0,0 +1,52 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2013 Jakub Jirutka <jakub@jirutka.cz>.
+ * Copyright 2015 Antonio Rabelo.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.tennaito.rsql.jpa;
+
+import javax.persistence.EntityManager;
+
+import cz.jirutka.rsql.parser.ast.Node;
+
+/**
+ * CountEstimator
+ *
+ * Estimates the number of entities matching a filter without counting them,
+ * e.g. from sampling or from the statistics of the database.
+ *
+ * @author AntonioRabelo
+ *
+ * @param <T> Entity type
+ * @see JpaCounter#estimate(Node, EntityManager)
+ */
+public interface CountEstimator<T> {
+
+    /**
+     * Estimate the number of entities matching the RSQL AST node.
+     *
+     * @param node           RSQL AST node.
+     * @param entityManager  JPA EntityManager.
+     * @return               The estimated number of entities.
+     */
+    public long estimate(Node node, EntityManager entityManager);
+}
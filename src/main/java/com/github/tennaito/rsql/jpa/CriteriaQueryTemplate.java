@@ -0,0 +1,406 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2013 Jakub Jirutka <jakub@jirutka.cz>.
+ * Copyright 2015 Antonio Rabelo.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.tennaito.rsql.jpa;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.persistence.EntityManager;
+import javax.persistence.TypedQuery;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Expression;
+import javax.persistence.criteria.From;
+import javax.persistence.criteria.ParameterExpression;
+import javax.persistence.criteria.Path;
+import javax.persistence.criteria.Predicate;
+import javax.persistence.criteria.Root;
+
+import com.github.tennaito.rsql.builder.BuilderTools;
+import com.github.tennaito.rsql.parser.ast.ComparisonOperatorProxy;
+
+import cz.jirutka.rsql.parser.ast.ComparisonNode;
+import cz.jirutka.rsql.parser.ast.LogicalNode;
+import cz.jirutka.rsql.parser.ast.Node;
+
+/**
+ * CriteriaQueryTemplate
+ *
+ * A CriteriaQuery compiled for the shape of a filter (selectors, operators and
+ * arity) where the arguments are ParameterExpressions. Every execution creates
+ * a TypedQuery out of the same CriteriaQuery and only binds the arguments, so
+ * the provider query plan cache and the database statement cache can be hit.
+ *
+ * Comparisons that cannot be parameterized (custom operators, null bounds) are
+ * compiled with their literal arguments, which are then part of the shape.
+ *
+ * Instances are created by the {@link CriteriaQueryTemplateCache} and are never
+ * changed after compilation.
+ *
+ * @author AntonioRabelo
+ *
+ * @param <T> Entity type
+ */
+public final class CriteriaQueryTemplate<T> {
+
+    /**
+     * Conversion applied to an argument before it is bound.
+     */
+    enum Transform {
+        NONE, LOWER, PATTERN, LIKE, NEXT_DAY, PREVIOUS_DAY, START_DATE, END_DATE
+    }
+
+    private final CriteriaQuery<T> criteria;
+
+    private final List<Binding> bindings;
+
+    private CriteriaQueryTemplate(CriteriaQuery<T> criteria, List<Binding> bindings) {
+        this.criteria = criteria;
+        this.bindings = Collections.unmodifiableList(bindings);
+    }
+
+    /**
+     * Create a TypedQuery out of the template with the arguments of the filter.
+     *
+     * @param entityManager  JPA EntityManager.
+     * @param comparisons    Parsed comparisons of the filter, in depth-first order.
+     * @return               The typed query with all parameters bound.
+     */
+    TypedQuery<T> bind(EntityManager entityManager, List<ParsedComparison> comparisons) {
+        TypedQuery<T> query;
+        // providers may change the criteria while rendering it
+        synchronized (criteria) {
+            query = entityManager.createQuery(criteria);
+        }
+        for (Binding binding : bindings) {
+            query.setParameter(binding.parameter, binding.valueOf(comparisons));
+        }
+        return query;
+    }
+
+    /**
+     * @return The compiled criteria query, which must not be changed.
+     */
+    public CriteriaQuery<T> getCriteriaQuery() {
+        return criteria;
+    }
+
+    /**
+     * @return Number of parameters bound on every execution.
+     */
+    public int getParameterCount() {
+        return bindings.size();
+    }
+
+    /**
+     * Compile the template of a filter.
+     *
+     * @param entityClass    Entity class of the query.
+     * @param node           RSQL AST node.
+     * @param comparisons    Parsed comparisons of the filter, in depth-first order.
+     * @param entityManager  JPA EntityManager.
+     * @param misc           Facade with all necessary tools for predicate creation.
+     * @return               The compiled template.
+     */
+    static <T> CriteriaQueryTemplate<T> compile(Class<T> entityClass, Node node, List<ParsedComparison> comparisons, EntityManager entityManager, BuilderTools misc) {
+        CriteriaQuery<T> criteria = entityManager.getCriteriaBuilder().createQuery(entityClass);
+        Root<T> root = criteria.from(entityClass);
+        List<Binding> bindings = new ArrayList<Binding>();
+        if (ExistsSubqueries.isEnabled(misc)) {
+            criteria.where(compileExists(node, root, criteria, entityClass, comparisons, bindings, entityManager, misc));
+        } else {
+            int[] index = {0};
+            criteria.where(compile(node, root, entityClass, comparisons, index, bindings, entityManager, misc, null));
+        }
+        return new CriteriaQueryTemplate<T>(criteria, bindings);
+    }
+
+    /**
+     * Compile a filter with exists subqueries for the comparisons on collections,
+     * which are not visited in depth-first order, so their positions are looked up.
+     */
+    private static <T> Predicate compileExists(Node node, Root<T> root, CriteriaQuery<T> criteria, final Class<T> entityClass, final List<ParsedComparison> comparisons,
+            final List<Binding> bindings, final EntityManager entityManager, final BuilderTools misc) {
+        final Map<ComparisonNode, Integer> positions = new IdentityHashMap<ComparisonNode, Integer>();
+        collectPositions(node, positions);
+        final CriteriaBuilder builder = entityManager.getCriteriaBuilder();
+        return ExistsSubqueries.createPredicate(node, root, criteria, entityManager, misc, TranslationListenerAdapter.NONE, new ExistsSubqueries.ComparisonCompiler() {
+            public Predicate compile(ComparisonNode node, SelectorPlan plan, From<?, ?> startRoot, From<?, ?> pathRoot, int firstStep) {
+                int position = positions.get(node);
+                ParsedComparison comparison = comparisons.get(position);
+                if (!comparison.isParameterized()) {
+                    return PredicateBuilder.createPredicate(comparison.getNode(), startRoot, pathRoot, firstStep, entityClass, entityManager, misc);
+                }
+                return compileComparison(comparison, position, comparison.getPlan().replay(pathRoot, firstStep), bindings, builder, misc);
+            }
+        });
+    }
+
+    private static void collectPositions(Node node, Map<ComparisonNode, Integer> positions) {
+        if (node instanceof LogicalNode) {
+            for (Node child : ((LogicalNode) node).getChildren()) {
+                collectPositions(child, positions);
+            }
+        } else if (node instanceof ComparisonNode) {
+            positions.put((ComparisonNode) node, positions.size());
+        }
+    }
+
+    private static <T> Predicate compile(Node node, Root<T> root, Class<T> entityClass, List<ParsedComparison> comparisons, int[] index,
+            List<Binding> bindings, EntityManager entityManager, BuilderTools misc, JoinScope scope) {
+        CriteriaBuilder builder = entityManager.getCriteriaBuilder();
+        if (node instanceof LogicalNode) {
+            LogicalNode logical = (LogicalNode) node;
+            JoinScope childScope = JoinScope.of(logical, scope);
+            List<Predicate> predicates = new ArrayList<Predicate>();
+            for (Node child : logical.getChildren()) {
+                predicates.add(compile(child, root, entityClass, comparisons, index, bindings, entityManager, misc, childScope));
+            }
+            Predicate[] array = predicates.toArray(new Predicate[predicates.size()]);
+            switch (logical.getOperator()) {
+                case AND : return builder.and(array);
+                case OR : return builder.or(array);
+                default : throw new IllegalArgumentException("Unknown operator: " + logical.getOperator());
+            }
+        }
+        if (node instanceof ComparisonNode) {
+            int position = index[0]++;
+            ParsedComparison comparison = comparisons.get(position);
+            if (!comparison.isParameterized()) {
+                return PredicateBuilder.createPredicate(comparison.getNode(), root, root, 0, entityClass, entityManager, misc, scope);
+            }
+            return compileComparison(comparison, position, comparison.getPlan().replay(root, 0, scope), bindings, builder, misc);
+        }
+        throw new IllegalArgumentException("Unknown expression type: " + node.getClass());
+    }
+
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private static Predicate compileComparison(ParsedComparison comparison, int position, Path path, List<Binding> bindings, CriteriaBuilder builder, BuilderTools misc) {
+        List<Object> values = comparison.getValues();
+        Object value = values.get(0);
+        switch (ComparisonOperatorProxy.asEnum(comparison.getNode().getOperator())) {
+            case EQUAL :
+            case NOT_EQUAL : {
+                boolean equal = ComparisonOperatorProxy.asEnum(comparison.getNode().getOperator()) == ComparisonOperatorProxy.EQUAL;
+                Predicate predicate;
+                if (value instanceof String) {
+                    CaseSensitivityPolicy policy = PredicateBuilder.caseSensitivityPolicyOf(misc);
+                    CaseSensitivity sensitivity = policy.sensitivityOf(path);
+                    Expression<String> compared = policy.compared(path, sensitivity, builder);
+                    boolean lowerCase = sensitivity.isLowerCase();
+                    if (!PredicateBuilder.isPattern((String) value)) {
+                        predicate = builder.equal(compared, parameter(String.class, position, 0, lowerCase ? Transform.LOWER : Transform.NONE, bindings, builder));
+                    } else {
+                        predicate = builder.like(compared, parameter(String.class, position, 0, lowerCase ? Transform.LIKE : Transform.PATTERN, bindings, builder));
+                    }
+                } else if (value == null) {
+                    return equal ? builder.isNull(path) : builder.isNotNull(path);
+                } else {
+                    ParameterExpression parameter = parameter(value.getClass(), position, 0, Transform.NONE, bindings, builder);
+                    return equal ? builder.equal(path, parameter) : builder.notEqual(path, parameter);
+                }
+                return equal ? predicate : builder.not(predicate);
+            }
+            case GREATER_THAN : {
+                if (value instanceof Date) {
+                    return builder.between(path, parameter(Date.class, position, 0, Transform.NEXT_DAY, bindings, builder),
+                            parameter(Date.class, position, 0, Transform.END_DATE, bindings, builder));
+                }
+                ParameterExpression parameter = parameter(value.getClass(), position, 0, Transform.NONE, bindings, builder);
+                return (value instanceof Number) ? builder.gt(path, parameter) : builder.greaterThan(path, parameter);
+            }
+            case GREATER_THAN_OR_EQUAL : {
+                if (value instanceof Date) {
+                    return builder.between(path, parameter(Date.class, position, 0, Transform.NONE, bindings, builder),
+                            parameter(Date.class, position, 0, Transform.END_DATE, bindings, builder));
+                }
+                ParameterExpression parameter = parameter(value.getClass(), position, 0, Transform.NONE, bindings, builder);
+                return (value instanceof Number) ? builder.ge(path, parameter) : builder.greaterThanOrEqualTo(path, parameter);
+            }
+            case LESS_THAN : {
+                if (value instanceof Date) {
+                    return builder.between(path, parameter(Date.class, position, 0, Transform.START_DATE, bindings, builder),
+                            parameter(Date.class, position, 0, Transform.PREVIOUS_DAY, bindings, builder));
+                }
+                ParameterExpression parameter = parameter(value.getClass(), position, 0, Transform.NONE, bindings, builder);
+                return (value instanceof Number) ? builder.lt(path, parameter) : builder.lessThan(path, parameter);
+            }
+            case LESS_THAN_OR_EQUAL : {
+                if (value instanceof Date) {
+                    return builder.between(path, parameter(Date.class, position, 0, Transform.START_DATE, bindings, builder),
+                            parameter(Date.class, position, 0, Transform.NONE, bindings, builder));
+                }
+                ParameterExpression parameter = parameter(value.getClass(), position, 0, Transform.NONE, bindings, builder);
+                return (value instanceof Number) ? builder.le(path, parameter) : builder.lessThanOrEqualTo(path, parameter);
+            }
+            case IN :
+            case NOT_IN : {
+                // lists padded to the same size share the template, so the padding
+                // slots bind the last value of each list when it is bound
+                int size = comparison.getParameterCount();
+                List<Expression<?>> parameters = new ArrayList<Expression<?>>(size);
+                for (int i = 0; i < size; i++) {
+                    parameters.add(parameter(values.get(Math.min(i, values.size() - 1)).getClass(), position, i, Transform.NONE, bindings, builder));
+                }
+                Predicate in = PredicateBuilder.inListStrategyOf(misc).createIn(path, parameters, builder);
+                return ComparisonOperatorProxy.asEnum(comparison.getNode().getOperator()) == ComparisonOperatorProxy.IN ? in : builder.not(in);
+            }
+            case BETWEEN :
+                return builder.between(path, parameter((Class) value.getClass(), position, 0, Transform.NONE, bindings, builder),
+                        parameter((Class) values.get(1).getClass(), position, 1, Transform.NONE, bindings, builder));
+        }
+        throw new IllegalArgumentException("Unknown operator: " + comparison.getNode().getOperator());
+    }
+
+    private static <Y> ParameterExpression<Y> parameter(Class<Y> type, int comparison, int argument, Transform transform, List<Binding> bindings, CriteriaBuilder builder) {
+        ParameterExpression<Y> parameter = builder.parameter(type);
+        bindings.add(new Binding(parameter, comparison, argument, transform));
+        return parameter;
+    }
+
+    /**
+     * Parameter of the template and where its value comes from.
+     */
+    private static final class Binding {
+
+        private final ParameterExpression<Object> parameter;
+        private final int comparison;
+        private final int argument;
+        private final Transform transform;
+
+        @SuppressWarnings("unchecked")
+        Binding(ParameterExpression<?> parameter, int comparison, int argument, Transform transform) {
+            this.parameter = (ParameterExpression<Object>) parameter;
+            this.comparison = comparison;
+            this.argument = argument;
+            this.transform = transform;
+        }
+
+        Object valueOf(List<ParsedComparison> comparisons) {
+            List<Object> values = comparisons.get(comparison).getValues();
+            // a padding slot of a list takes the last value of the bound list
+            Object value = values.get(Math.min(argument, values.size() - 1));
+            switch (transform) {
+                case LOWER : return ((String) value).toLowerCase();
+                case PATTERN : return PredicateBuilder.toLikePattern((String) value, false);
+                case LIKE : return PredicateBuilder.toLikePattern((String) value, true);
+                case NEXT_DAY : return PredicateBuilder.modifyDate(value, 1);
+                case PREVIOUS_DAY : return PredicateBuilder.modifyDate(value, -1);
+                case START_DATE : return PredicateBuilder.START_DATE;
+                case END_DATE : return PredicateBuilder.END_DATE;
+                default : return value;
+            }
+        }
+    }
+
+    /**
+     * A comparison node with its resolved selector and parsed arguments.
+     */
+    static final class ParsedComparison {
+
+        private final ComparisonNode node;
+        private final SelectorPlan plan;
+        private final List<Object> values;
+        private final boolean parameterized;
+        private final int parameterCount;
+
+        ParsedComparison(ComparisonNode node, SelectorPlan plan, List<Object> values, boolean builtIn, BuilderTools misc) {
+            this.node = node;
+            this.plan = plan;
+            this.values = values;
+            this.parameterized = builtIn && isParameterizable(node, values, misc.getLeadingWildcardHandler() != null);
+            this.parameterCount = isList(node) ? Math.max(values.size(), misc.getInListStrategy().paddedSize(values.size())) : values.size();
+        }
+
+        ComparisonNode getNode() {
+            return node;
+        }
+
+        SelectorPlan getPlan() {
+            return plan;
+        }
+
+        List<Object> getValues() {
+            return values;
+        }
+
+        boolean isParameterized() {
+            return parameterized;
+        }
+
+        /**
+         * @return Number of values of the comparison, including the padding of lists.
+         */
+        int getParameterCount() {
+            return parameterCount;
+        }
+
+        /**
+         * Append the shape of the comparison: its arguments are only part of the
+         * shape when they are not parameterized.
+         *
+         * @param shape  Shape being built.
+         */
+        void appendShape(StringBuilder shape) {
+            shape.append(node.getSelector()).append(node.getOperator().getSymbol());
+            if (!parameterized) {
+                shape.append(node.getArguments());
+                return;
+            }
+            shape.append('(');
+            for (int i = 0; i < parameterCount; i++) {
+                Object value = values.get(Math.min(i, values.size() - 1));
+                shape.append(value == null ? 'n' : value instanceof String ? (PredicateBuilder.isPattern((String) value) ? 'p' : 's') : value instanceof Date ? 'd' : 'v');
+            }
+            shape.append(')');
+        }
+
+        private static boolean isList(ComparisonNode node) {
+            ComparisonOperatorProxy operator = ComparisonOperatorProxy.asEnum(node.getOperator());
+            return operator == ComparisonOperatorProxy.IN || operator == ComparisonOperatorProxy.NOT_IN;
+        }
+
+        private static boolean isParameterizable(ComparisonNode node, List<Object> values, boolean leadingWildcardHandled) {
+            switch (ComparisonOperatorProxy.asEnum(node.getOperator())) {
+                case EQUAL :
+                case NOT_EQUAL :
+                    // the handler may need the argument, e.g. to choose another predicate
+                    return !(leadingWildcardHandled && values.get(0) instanceof String && PredicateBuilder.hasLeadingWildcard((String) values.get(0)));
+                case IN :
+                case NOT_IN :
+                    return !values.contains(null);
+                case BETWEEN :
+                    return values.size() == 2 && values.get(0) instanceof Comparable && values.get(1) instanceof Comparable;
+                default :
+                    Object value = values.get(0);
+                    return value instanceof Date || value instanceof Number || value instanceof Comparable;
+            }
+        }
+    }
+}
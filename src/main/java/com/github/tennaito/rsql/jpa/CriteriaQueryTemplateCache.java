@@ -0,0 +1,182 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2013 Jakub Jirutka <jakub@jirutka.cz>.
+ * Copyright 2015 Antonio Rabelo.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.tennaito.rsql.jpa;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.TypedQuery;
+
+import com.github.tennaito.rsql.builder.BuilderTools;
+import com.github.tennaito.rsql.builder.ImmutableBuilderTools;
+import com.github.tennaito.rsql.builder.SimpleBuilderTools;
+import com.github.tennaito.rsql.jpa.CriteriaQueryTemplate.ParsedComparison;
+
+import cz.jirutka.rsql.parser.ast.ComparisonNode;
+import cz.jirutka.rsql.parser.ast.LogicalNode;
+import cz.jirutka.rsql.parser.ast.Node;
+
+/**
+ * CriteriaQueryTemplateCache
+ *
+ * Thread-safe cache of parameterized criteria query templates for one entity
+ * class, kept per EntityManagerFactory and keyed by the shape of the filter.
+ *
+ * JPA does not promise that criteria objects can be rendered by several
+ * threads at once, and providers do change them while rendering (EclipseLink
+ * iterates and updates internal lists on every createQuery). The rendering of
+ * one template is therefore serialized; binding and executing the query are not.
+ *
+ * <pre>
+ * TypedQuery&lt;Course&gt; query = templates.createQuery(rootNode, manager);
+ * List&lt;Course&gt; courses = query.getResultList();
+ * </pre>
+ *
+ * @author AntonioRabelo
+ *
+ * @param <T> Entity type
+ */
+public class CriteriaQueryTemplateCache<T> {
+
+    public static final int DEFAULT_MAXIMUM_SIZE = 256;
+
+    private final Class<T> entityClass;
+
+    private final BuilderTools builderTools;
+
+    private final int maximumSize;
+
+    private final ConcurrentMap<EntityManagerFactory, ConcurrentMap<String, CriteriaQueryTemplate<T>>> templates =
+            new ConcurrentHashMap<EntityManagerFactory, ConcurrentMap<String, CriteriaQueryTemplate<T>>>();
+
+    /**
+     * Construct a cache with the default tools and maximum size.
+     *
+     * @param entityClass  Entity class of the queries.
+     */
+    public CriteriaQueryTemplateCache(Class<T> entityClass) {
+        this(entityClass, new SimpleBuilderTools(), DEFAULT_MAXIMUM_SIZE);
+    }
+
+    /**
+     * Construct a cache.
+     *
+     * @param entityClass   Entity class of the queries.
+     * @param builderTools  Tools to freeze, later changes on them are not seen.
+     * @param maximumSize   Maximum number of shapes kept per EntityManagerFactory.
+     */
+    public CriteriaQueryTemplateCache(Class<T> entityClass, BuilderTools builderTools, int maximumSize) {
+        if (maximumSize < 1) {
+            throw new IllegalArgumentException("Maximum size must be positive: " + maximumSize);
+        }
+        this.entityClass = entityClass;
+        this.builderTools = ImmutableBuilderTools.of(builderTools);
+        this.maximumSize = maximumSize;
+    }
+
+    /**
+     * Create a query for the filter, compiling its template on the first usage
+     * of its shape and only binding the arguments afterwards.
+     *
+     * @param node           RSQL AST node.
+     * @param entityManager  JPA EntityManager.
+     * @return               The typed query with all parameters bound.
+     */
+    public TypedQuery<T> createQuery(Node node, EntityManager entityManager) {
+        List<ParsedComparison> comparisons = new ArrayList<ParsedComparison>();
+        StringBuilder shape = new StringBuilder();
+        parse(node, entityManager, comparisons, shape);
+
+        ConcurrentMap<String, CriteriaQueryTemplate<T>> shapes = templatesOf(entityManager.getEntityManagerFactory());
+        String key = shape.toString();
+        CriteriaQueryTemplate<T> template = shapes.get(key);
+        if (template == null) {
+            template = CriteriaQueryTemplate.compile(entityClass, node, comparisons, entityManager, builderTools);
+            if (shapes.size() >= maximumSize) {
+                shapes.clear();
+            }
+            CriteriaQueryTemplate<T> previous = shapes.putIfAbsent(key, template);
+            template = previous != null ? previous : template;
+        }
+        return template.bind(entityManager, comparisons);
+    }
+
+    /**
+     * @param factory  EntityManagerFactory of the templates.
+     * @return         Number of shapes compiled for the factory.
+     */
+    public int size(EntityManagerFactory factory) {
+        ConcurrentMap<String, CriteriaQueryTemplate<T>> shapes = templates.get(factory);
+        return shapes == null ? 0 : shapes.size();
+    }
+
+    /**
+     * Remove all templates.
+     */
+    public void clear() {
+        templates.clear();
+    }
+
+    private ConcurrentMap<String, CriteriaQueryTemplate<T>> templatesOf(EntityManagerFactory factory) {
+        ConcurrentMap<String, CriteriaQueryTemplate<T>> shapes = templates.get(factory);
+        if (shapes == null) {
+            shapes = new ConcurrentHashMap<String, CriteriaQueryTemplate<T>>();
+            ConcurrentMap<String, CriteriaQueryTemplate<T>> previous = templates.putIfAbsent(factory, shapes);
+            shapes = previous != null ? previous : shapes;
+        }
+        return shapes;
+    }
+
+    /**
+     * Resolve and parse all comparisons of the filter in depth-first order,
+     * building its shape along the way.
+     */
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private void parse(Node node, EntityManager entityManager, List<ParsedComparison> comparisons, StringBuilder shape) {
+        if (node instanceof LogicalNode) {
+            LogicalNode logical = (LogicalNode) node;
+            shape.append(logical.getOperator()).append('(');
+            for (Node child : logical.getChildren()) {
+                parse(child, entityManager, comparisons, shape);
+                shape.append(';');
+            }
+            shape.append(')');
+        } else if (node instanceof ComparisonNode) {
+            ComparisonNode comparison = (ComparisonNode) node;
+            SelectorPlan plan = PredicateBuilder.findSelectorPlan(comparison.getSelector(), entityClass, entityManager, builderTools);
+            List<Object> values = builderTools.getArgumentParser().parse(comparison.getArguments(), (Class) plan.getJavaType());
+            boolean builtIn = PredicateBuilder.isBuiltIn(comparison.getOperator(), plan.getJavaType(), builderTools);
+            ParsedComparison parsed = new ParsedComparison(comparison, plan, values, builtIn, builderTools);
+            parsed.appendShape(shape);
+            comparisons.add(parsed);
+        } else {
+            throw new IllegalArgumentException("Unknown expression type: " + node.getClass());
+        }
+    }
+}
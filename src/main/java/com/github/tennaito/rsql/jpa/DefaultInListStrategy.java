@@ -0,0 +1,214 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2013 Jakub Jirutka <jakub@jirutka.cz>.
+ * Copyright 2015 Antonio Rabelo.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.tennaito.rsql.jpa;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.Expression;
+import javax.persistence.criteria.Predicate;
+
+/**
+ * DefaultInListStrategy
+ *
+ * Translates a list of values into one IN, or into IN predicates of at most
+ * <tt>maximumSize</tt> values joined by OR. Literal values can also be
+ * deduplicated and sorted first, so the same set of values always gives the
+ * same statement.
+ *
+ * To limit the number of distinct statements, lists can also be padded up to
+ * the next configured bucket size by repeating their last value, so lists of
+ * 5 to 8 values all give the statement of 8 values when padding to powers of
+ * two. Padding does not change the result of the IN.
+ *
+ * The default instance keeps the list as it is, in a single IN.
+ *
+ * @author AntonioRabelo
+ */
+public class DefaultInListStrategy implements InListStrategy {
+
+    /**
+     * Maximum number of expressions in a list on Oracle.
+     */
+    public static final int ORACLE_MAXIMUM_SIZE = 1000;
+
+    private final int maximumSize;
+
+    private final boolean normalized;
+
+    private final int[] buckets;
+
+    /**
+     * Construct a strategy that keeps the list as it is.
+     */
+    public DefaultInListStrategy() {
+        this(Integer.MAX_VALUE, false);
+    }
+
+    /**
+     * Construct a strategy.
+     *
+     * @param maximumSize  Maximum number of values in one IN.
+     * @param normalized   <tt>true</tt> to deduplicate and sort literal values.
+     */
+    public DefaultInListStrategy(int maximumSize, boolean normalized) {
+        this(maximumSize, normalized, new int[0]);
+    }
+
+    /**
+     * Construct a strategy that pads lists to bucket sizes.
+     *
+     * @param maximumSize  Maximum number of values in one IN.
+     * @param normalized   <tt>true</tt> to deduplicate and sort literal values.
+     * @param buckets      Sizes lists are padded to, lists above the largest one are not padded.
+     */
+    public DefaultInListStrategy(int maximumSize, boolean normalized, int[] buckets) {
+        if (maximumSize < 1) {
+            throw new IllegalArgumentException("Maximum size must be positive: " + maximumSize);
+        }
+        int[] sorted = buckets.clone();
+        Arrays.sort(sorted);
+        if (sorted.length > 0 && sorted[0] < 1) {
+            throw new IllegalArgumentException("Bucket sizes must be positive: " + Arrays.toString(buckets));
+        }
+        this.maximumSize = maximumSize;
+        this.normalized = normalized;
+        this.buckets = sorted;
+    }
+
+    /**
+     * Bucket sizes of all powers of two up to a maximum.
+     *
+     * @param maximum  Largest bucket size.
+     * @return         1, 2, 4, ... up to the maximum.
+     */
+    public static int[] powersOfTwo(int maximum) {
+        List<Integer> sizes = new ArrayList<Integer>();
+        for (int size = 1; size > 0 && size <= maximum; size <<= 1) {
+            sizes.add(size);
+        }
+        int[] buckets = new int[sizes.size()];
+        for (int i = 0; i < buckets.length; i++) {
+            buckets[i] = sizes.get(i);
+        }
+        return buckets;
+    }
+
+    /* (non-Javadoc)
+     * @see com.github.tennaito.rsql.jpa.InListStrategy#createIn(javax.persistence.criteria.Expression, java.util.List, javax.persistence.criteria.CriteriaBuilder)
+     */
+    public Predicate createIn(Expression<?> path, List<?> values, CriteriaBuilder builder) {
+        List<?> list = normalized ? normalize(values) : values;
+        if (list.size() <= maximumSize) {
+            return in(path, pad(list));
+        }
+        List<Predicate> chunks = new ArrayList<Predicate>();
+        for (int from = 0; from < list.size(); from += maximumSize) {
+            // only the last chunk can be shorter than the maximum size
+            chunks.add(in(path, pad(list.subList(from, Math.min(list.size(), from + maximumSize)))));
+        }
+        return builder.or(chunks.toArray(new Predicate[chunks.size()]));
+    }
+
+    /**
+     * @return Maximum number of values in one IN.
+     */
+    public int getMaximumSize() {
+        return maximumSize;
+    }
+
+    /**
+     * @return <tt>true</tt> if literal values are deduplicated and sorted.
+     */
+    public boolean isNormalized() {
+        return normalized;
+    }
+
+    /**
+     * The smallest bucket size not below the size and not above the maximum
+     * size, or the size itself.
+     *
+     * @see com.github.tennaito.rsql.jpa.InListStrategy#paddedSize(int)
+     */
+    public int paddedSize(int size) {
+        for (int bucket : buckets) {
+            if (bucket > maximumSize) {
+                break;
+            }
+            if (bucket >= size) {
+                return bucket;
+            }
+        }
+        return size;
+    }
+
+    private List<?> pad(List<?> values) {
+        int size = paddedSize(values.size());
+        if (size == values.size() || values.isEmpty()) {
+            return values;
+        }
+        List<Object> padded = new ArrayList<Object>(size);
+        padded.addAll(values);
+        Object last = values.get(values.size() - 1);
+        while (padded.size() < size) {
+            padded.add(last);
+        }
+        return padded;
+    }
+
+    /**
+     * Create one IN out of literal values or of expressions.
+     */
+    static Predicate in(Expression<?> path, List<?> values) {
+        if (!values.isEmpty() && values.get(0) instanceof Expression) {
+            return path.in(values.toArray(new Expression<?>[values.size()]));
+        }
+        return path.in(values);
+    }
+
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private static List<?> normalize(List<?> values) {
+        if (!values.isEmpty() && values.get(0) instanceof Expression) {
+            // parameters are only known when the query is executed
+            return values;
+        }
+        List<Object> unique = new ArrayList<Object>(new LinkedHashSet<Object>(values));
+        for (Object value : unique) {
+            if (!(value instanceof Comparable)) {
+                return unique;
+            }
+        }
+        try {
+            Collections.sort((List) unique);
+        } catch (ClassCastException e) {
+            // values of different types keep their order
+        }
+        return unique;
+    }
+}
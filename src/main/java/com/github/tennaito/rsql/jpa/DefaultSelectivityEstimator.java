@@ -0,0 +1,219 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2013 Jakub Jirutka <jakub@jirutka.cz>.
+ * Copyright 2015 Antonio Rabelo.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.tennaito.rsql.jpa;
+
+import java.lang.reflect.AnnotatedElement;
+import java.lang.reflect.Member;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.persistence.EntityManager;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Path;
+import javax.persistence.metamodel.Attribute;
+import javax.persistence.metamodel.ManagedType;
+import javax.persistence.metamodel.SingularAttribute;
+
+import com.github.tennaito.rsql.parser.ast.ComparisonOperatorProxy;
+
+import cz.jirutka.rsql.parser.ast.ComparisonNode;
+
+/**
+ * DefaultSelectivityEstimator
+ *
+ * Estimates selectivities out of the fraction of rows that match one value of
+ * an attribute, taken in this order from:
+ *
+ * <ul>
+ * <li>hints set per entity and attribute path, e.g. sampled with
+ * {@link #sample(EntityManager, Class, String...)} at startup;</li>
+ * <li>the {@link Selectivity} annotation of the attribute;</li>
+ * <li>{@link #ID_SELECTIVITY} for identifiers and {@link #DEFAULT_SELECTIVITY}
+ * for other attributes.</li>
+ * </ul>
+ *
+ * Comparisons are then estimated with the usual textbook rules: an IN list
+ * matches its number of values times one value, an inequality everything else,
+ * an open range a third of the rows and a between a tenth.
+ *
+ * @author AntonioRabelo
+ */
+public class DefaultSelectivityEstimator implements SelectivityEstimator {
+
+    public static final double ID_SELECTIVITY = 0.0001;
+
+    public static final double DEFAULT_SELECTIVITY = 0.1;
+
+    public static final double RANGE_SELECTIVITY = 1.0 / 3;
+
+    public static final double BETWEEN_SELECTIVITY = 0.1;
+
+    public static final double LIKE_SELECTIVITY = 0.25;
+
+    public static final double UNKNOWN_SELECTIVITY = 0.5;
+
+    private final ConcurrentMap<String, Double> hints = new ConcurrentHashMap<String, Double>();
+
+    private final ConcurrentMap<Attribute<?, ?>, Double> attributes = new ConcurrentHashMap<Attribute<?, ?>, Double>();
+
+    /**
+     * Set the fraction of rows that match one value of an attribute. Hints are
+     * keyed by the attribute path, so they apply to all the selectors the
+     * mapper resolves to it.
+     *
+     * @param entityClass  Entity class the path starts from.
+     * @param property     Dotted attribute path from the entity.
+     * @param selectivity  Fraction of rows, between 0 and 1.
+     */
+    public void setSelectivity(Class<?> entityClass, String property, double selectivity) {
+        if (selectivity < 0 || selectivity > 1) {
+            throw new IllegalArgumentException("Selectivity must be between 0 and 1: " + selectivity);
+        }
+        hints.put(key(entityClass, property), selectivity);
+    }
+
+    /**
+     * Sample the number of distinct values of some attributes of an entity and
+     * set their selectivities, one query per attribute.
+     *
+     * @param entityManager  JPA EntityManager.
+     * @param entityClass    Entity class.
+     * @param properties     Dotted property paths from the entity.
+     */
+    public void sample(EntityManager entityManager, Class<?> entityClass, String... properties) {
+        CriteriaBuilder builder = entityManager.getCriteriaBuilder();
+        for (String property : properties) {
+            CriteriaQuery<Long> query = builder.createQuery(Long.class);
+            Path<?> path = query.from(entityClass);
+            for (String segment : property.split("\\.")) {
+                path = path.get(segment);
+            }
+            long distinct = entityManager.createQuery(query.select(builder.countDistinct(path))).getSingleResult();
+            if (distinct > 0) {
+                setSelectivity(entityClass, property, 1.0 / distinct);
+            }
+        }
+    }
+
+    /* (non-Javadoc)
+     * @see com.github.tennaito.rsql.jpa.SelectivityEstimator#estimate(cz.jirutka.rsql.parser.ast.ComparisonNode, com.github.tennaito.rsql.jpa.SelectorPlan, java.util.List, javax.persistence.EntityManager)
+     */
+    public double estimate(ComparisonNode comparison, SelectorPlan plan, List<Object> arguments, EntityManager entityManager) {
+        ComparisonOperatorProxy operator = ComparisonOperatorProxy.asEnum(comparison.getOperator());
+        if (operator == null) {
+            return UNKNOWN_SELECTIVITY;
+        }
+        Object argument = arguments.isEmpty() ? null : arguments.get(0);
+        switch (operator) {
+            case EQUAL :
+                return argument instanceof String ? likeSelectivity((String) argument, plan, entityManager) : valueSelectivity(plan, entityManager);
+            case NOT_EQUAL :
+                return 1 - (argument instanceof String ? likeSelectivity((String) argument, plan, entityManager) : valueSelectivity(plan, entityManager));
+            case IN :
+                return Math.min(1, arguments.size() * valueSelectivity(plan, entityManager));
+            case NOT_IN :
+                return Math.max(0, 1 - arguments.size() * valueSelectivity(plan, entityManager));
+            case BETWEEN :
+                return BETWEEN_SELECTIVITY;
+            default :
+                return RANGE_SELECTIVITY;
+        }
+    }
+
+    private double likeSelectivity(String argument, SelectorPlan plan, EntityManager entityManager) {
+        return PredicateBuilder.isPattern(argument) ? LIKE_SELECTIVITY : valueSelectivity(plan, entityManager);
+    }
+
+    /**
+     * Fraction of rows that match one value of the selector.
+     */
+    private double valueSelectivity(SelectorPlan plan, EntityManager entityManager) {
+        Double hint = hints.get(key(plan.getEntityClass(), attributePath(plan)));
+        if (hint != null) {
+            return hint;
+        }
+        Attribute<?, ?> attribute = attributeOf(plan, entityManager);
+        if (attribute == null) {
+            return DEFAULT_SELECTIVITY;
+        }
+        Double selectivity = attributes.get(attribute);
+        if (selectivity == null) {
+            selectivity = attributeSelectivity(attribute);
+            attributes.putIfAbsent(attribute, selectivity);
+        }
+        return selectivity;
+    }
+
+    private static double attributeSelectivity(Attribute<?, ?> attribute) {
+        Member member = attribute.getJavaMember();
+        if (member instanceof AnnotatedElement) {
+            Selectivity annotation = ((AnnotatedElement) member).getAnnotation(Selectivity.class);
+            if (annotation != null) {
+                return annotation.value();
+            }
+        }
+        if (attribute instanceof SingularAttribute && ((SingularAttribute<?, ?>) attribute).isId()) {
+            return ID_SELECTIVITY;
+        }
+        return DEFAULT_SELECTIVITY;
+    }
+
+    /**
+     * Find the metamodel attribute of the last step of the selector.
+     */
+    private static Attribute<?, ?> attributeOf(SelectorPlan plan, EntityManager entityManager) {
+        List<SelectorPlan.Step> steps = plan.getSteps();
+        if (steps.isEmpty()) {
+            return null;
+        }
+        Class<?> owner = steps.size() == 1 ? plan.getEntityClass() : steps.get(steps.size() - 2).getJavaType();
+        try {
+            ManagedType<?> type = entityManager.getMetamodel().managedType(owner);
+            return type.getAttribute(steps.get(steps.size() - 1).getAttribute());
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Dotted attribute path of the resolved steps of the selector.
+     */
+    private static String attributePath(SelectorPlan plan) {
+        StringBuilder path = new StringBuilder();
+        for (SelectorPlan.Step step : plan.getSteps()) {
+            if (path.length() > 0) {
+                path.append('.');
+            }
+            path.append(step.getAttribute());
+        }
+        return path.toString();
+    }
+
+    private static String key(Class<?> entityClass, String property) {
+        return entityClass.getName() + '#' + property;
+    }
+}
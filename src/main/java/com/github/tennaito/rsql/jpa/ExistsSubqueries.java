@@ -0,0 +1,259 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2013 Jakub Jirutka <jakub@jirutka.cz>.
+ * Copyright 2015 Antonio Rabelo.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.tennaito.rsql.jpa;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.persistence.EntityManager;
+import javax.persistence.criteria.AbstractQuery;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.From;
+import javax.persistence.criteria.Join;
+import javax.persistence.criteria.Predicate;
+import javax.persistence.criteria.Root;
+import javax.persistence.criteria.Subquery;
+
+import com.github.tennaito.rsql.builder.BuilderTools;
+
+import cz.jirutka.rsql.parser.ast.ComparisonNode;
+import cz.jirutka.rsql.parser.ast.LogicalNode;
+import cz.jirutka.rsql.parser.ast.LogicalOperator;
+import cz.jirutka.rsql.parser.ast.Node;
+
+/**
+ * ExistsSubqueries
+ *
+ * Translation of a filter in the {@link CollectionFilterMode#EXISTS} mode: each
+ * comparison whose selector goes through a collection becomes a correlated
+ * <tt>exists</tt> subquery that joins the collection, so the main query has no
+ * collection join and selects every entity once.
+ *
+ * Inside a conjunction, the comparisons on the same collection with different
+ * selectors share one subquery, so one element must match all of them, e.g.
+ * <tt>titles.name==Phd;titles.id==1</tt>. A repeated selector opens another
+ * subquery, so <tt>titles.name==Phd;titles.name==Consultant</tt> still selects
+ * the entities having both titles.
+ *
+ * @author AntonioRabelo
+ */
+final class ExistsSubqueries {
+
+    /**
+     * Creates the predicate of a comparison once its path root is known.
+     */
+    interface ComparisonCompiler {
+
+        /**
+         * @param comparison  RSQL AST comparison node.
+         * @param plan        Resolved plan of the selector.
+         * @param startRoot   From of the entity, correlated inside a subquery.
+         * @param pathRoot    From the remaining steps of the plan are replayed against.
+         * @param firstStep   Index of the first step to replay.
+         * @return            The predicate of the comparison.
+         */
+        Predicate compile(ComparisonNode comparison, SelectorPlan plan, From<?, ?> startRoot, From<?, ?> pathRoot, int firstStep);
+    }
+
+    /**
+     * Comparisons on the same collection matched by the same element.
+     */
+    private static final class Group {
+
+        private final int position;
+        private final SelectorPlan collectionPlan;
+        private final int collectionStep;
+        private final List<ComparisonNode> comparisons = new ArrayList<ComparisonNode>();
+        private final List<SelectorPlan> plans = new ArrayList<SelectorPlan>();
+        private final Set<String> selectors = new HashSet<String>();
+
+        Group(int position, SelectorPlan collectionPlan, int collectionStep) {
+            this.position = position;
+            this.collectionPlan = collectionPlan;
+            this.collectionStep = collectionStep;
+        }
+
+        boolean add(ComparisonNode comparison, SelectorPlan plan) {
+            if (!selectors.add(attributePath(plan, plan.getSteps().size() - 1))) {
+                return false;
+            }
+            comparisons.add(comparison);
+            plans.add(plan);
+            return true;
+        }
+    }
+
+    /**
+     * Private constructor.
+     */
+    private ExistsSubqueries() {
+        super();
+    }
+
+    /**
+     * Create the predicate of a filter, with <tt>exists</tt> subqueries for the
+     * comparisons on collections.
+     *
+     * @param node           RSQL AST node.
+     * @param root           From of the entity.
+     * @param query          Query the subqueries belong to.
+     * @param entityManager  JPA EntityManager.
+     * @param misc           Facade with all necessary tools for predicate creation.
+     * @param listener       Listener notified of the logical nodes.
+     * @param compiler       Creates the predicates of the comparisons.
+     * @return               The predicate of the filter.
+     */
+    static Predicate createPredicate(Node node, From<?, ?> root, AbstractQuery<?> query, EntityManager entityManager, BuilderTools misc,
+            TranslationListener listener, ComparisonCompiler compiler) {
+        if (node instanceof LogicalNode) {
+            return createPredicate((LogicalNode) node, root, query, entityManager, misc, listener, compiler);
+        }
+        if (node instanceof ComparisonNode) {
+            ComparisonNode comparison = (ComparisonNode) node;
+            SelectorPlan plan = PredicateBuilder.findSelectorPlan(comparison.getSelector(), root.getJavaType(), entityManager, misc);
+            int collectionStep = collectionStepOf(plan);
+            if (collectionStep < 0) {
+                return compiler.compile(comparison, plan, root, root, 0);
+            }
+            Group group = new Group(0, plan, collectionStep);
+            group.add(comparison, plan);
+            return exists(group, root, query, entityManager, compiler);
+        }
+        throw new IllegalArgumentException("Unknown expression type: " + node.getClass());
+    }
+
+    private static Predicate createPredicate(LogicalNode logical, From<?, ?> root, AbstractQuery<?> query, EntityManager entityManager, BuilderTools misc,
+            TranslationListener listener, ComparisonCompiler compiler) {
+        listener.nodeEntered(logical);
+        List<Predicate> predicates = new ArrayList<Predicate>();
+        List<Group> groups = new ArrayList<Group>();
+        Map<String, Group> open = new HashMap<String, Group>();
+        for (Node child : logical.getChildren()) {
+            if (child instanceof ComparisonNode) {
+                ComparisonNode comparison = (ComparisonNode) child;
+                SelectorPlan plan = PredicateBuilder.findSelectorPlan(comparison.getSelector(), root.getJavaType(), entityManager, misc);
+                int collectionStep = collectionStepOf(plan);
+                if (collectionStep >= 0) {
+                    String collection = attributePath(plan, collectionStep);
+                    // only a conjunction asks for the same element
+                    Group group = (logical.getOperator() == LogicalOperator.AND) ? open.get(collection) : null;
+                    if (group == null || !group.add(comparison, plan)) {
+                        group = new Group(predicates.size(), plan, collectionStep);
+                        group.add(comparison, plan);
+                        open.put(collection, group);
+                        groups.add(group);
+                        predicates.add(null);
+                    }
+                    continue;
+                }
+            }
+            predicates.add(createPredicate(child, root, query, entityManager, misc, listener, compiler));
+        }
+        for (Group group : groups) {
+            predicates.set(group.position, exists(group, root, query, entityManager, compiler));
+        }
+
+        CriteriaBuilder builder = entityManager.getCriteriaBuilder();
+        Predicate[] array = predicates.toArray(new Predicate[predicates.size()]);
+        Predicate predicate;
+        switch (logical.getOperator()) {
+            case AND : predicate = builder.and(array); break;
+            case OR : predicate = builder.or(array); break;
+            default : throw new IllegalArgumentException("Unknown operator: " + logical.getOperator());
+        }
+        listener.predicateCreated(logical, predicate);
+        return predicate;
+    }
+
+    /**
+     * Create the <tt>exists</tt> subquery of a group, joining the collection
+     * from the correlated entity.
+     */
+    private static Predicate exists(Group group, From<?, ?> root, AbstractQuery<?> query, EntityManager entityManager, ComparisonCompiler compiler) {
+        Subquery<Integer> subquery = query.subquery(Integer.class);
+        From<?, ?> correlated = correlate(subquery, root);
+        From<?, ?> element = correlated;
+        for (int i = 0; i <= group.collectionStep; i++) {
+            element = element.join(group.collectionPlan.getSteps().get(i).getAttribute());
+        }
+        List<Predicate> predicates = new ArrayList<Predicate>(group.comparisons.size());
+        for (int i = 0; i < group.comparisons.size(); i++) {
+            predicates.add(compiler.compile(group.comparisons.get(i), group.plans.get(i), correlated, element, group.collectionStep + 1));
+        }
+        CriteriaBuilder builder = entityManager.getCriteriaBuilder();
+        subquery.select(builder.literal(1)).where(predicates.toArray(new Predicate[predicates.size()]));
+        return builder.exists(subquery);
+    }
+
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private static From<?, ?> correlate(Subquery<?> subquery, From<?, ?> root) {
+        if (root instanceof Root) {
+            return subquery.correlate((Root) root);
+        }
+        if (root instanceof Join) {
+            return subquery.correlate((Join) root);
+        }
+        throw new IllegalArgumentException("Can not correlate a subquery with: " + root);
+    }
+
+    /**
+     * @return Index of the first step through a collection, <tt>-1</tt> if there is none.
+     */
+    private static int collectionStepOf(SelectorPlan plan) {
+        List<SelectorPlan.Step> steps = plan.getSteps();
+        for (int i = 0; i < steps.size(); i++) {
+            if (steps.get(i).isCollection()) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return Mapped attribute names of the steps up to the given one, dot separated.
+     */
+    private static String attributePath(SelectorPlan plan, int lastStep) {
+        StringBuilder path = new StringBuilder();
+        for (int i = 0; i <= lastStep; i++) {
+            if (i > 0) {
+                path.append('.');
+            }
+            path.append(plan.getSteps().get(i).getAttribute());
+        }
+        return path.toString();
+    }
+
+    /**
+     * @param misc  Facade with all necessary tools, may be <tt>null</tt>.
+     * @return      <tt>true</tt> if comparisons on collections become subqueries.
+     */
+    static boolean isEnabled(BuilderTools misc) {
+        return misc != null && misc.getCollectionFilterMode() == CollectionFilterMode.EXISTS;
+    }
+}
@@ -0,0 +1,274 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2013 Jakub Jirutka <jakub@jirutka.cz>.
+ * Copyright 2015 Antonio Rabelo.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.tennaito.rsql.jpa;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.persistence.EntityGraph;
+import javax.persistence.EntityManager;
+import javax.persistence.Subgraph;
+import javax.persistence.criteria.Fetch;
+import javax.persistence.criteria.FetchParent;
+import javax.persistence.criteria.From;
+import javax.persistence.criteria.JoinType;
+
+import com.github.tennaito.rsql.builder.BuilderTools;
+
+import cz.jirutka.rsql.parser.ast.ComparisonNode;
+import cz.jirutka.rsql.parser.ast.LogicalNode;
+import cz.jirutka.rsql.parser.ast.Node;
+
+/**
+ * FetchPlan
+ *
+ * Immutable list of the association paths to load together with the entities,
+ * e.g. <tt>department.head,department.head.titles</tt>, to avoid one lazy
+ * select per entity when the results are serialized. Paths are resolved like
+ * the selectors of the filter, through the Mapper and the metamodel.
+ *
+ * Paths made only of single valued associations are loaded with fetch joins,
+ * which never repeat the entities: inner when the filter inner joins the same
+ * association anyway, so the filter reuses the fetch join instead of adding a
+ * second join, and left outer otherwise, so entities without the association
+ * are still selected. Paths through collections are loaded by an entity graph
+ * given as the <tt>javax.persistence.fetchgraph</tt> hint, because a fetch
+ * join of a collection repeats the entities and breaks pagination.
+ *
+ * @author AntonioRabelo
+ */
+public final class FetchPlan {
+
+    /**
+     * Query hint of the JPA 2.1 fetch graph.
+     */
+    public static final String FETCH_GRAPH_HINT = "javax.persistence.fetchgraph";
+
+    private final List<String> paths;
+
+    private FetchPlan(List<String> paths) {
+        if (paths.isEmpty()) {
+            throw new IllegalArgumentException("Fetch plan must have at least one path.");
+        }
+        this.paths = Collections.unmodifiableList(paths);
+    }
+
+    /**
+     * Create a fetch plan.
+     *
+     * @param paths  Association paths to load.
+     * @return       The fetch plan.
+     */
+    public static FetchPlan of(String... paths) {
+        List<String> list = new ArrayList<String>(Arrays.asList(paths));
+        return new FetchPlan(SelectorLists.requireNonEmpty(list, "path", "Fetch plan"));
+    }
+
+    /**
+     * Parse a fetch plan.
+     *
+     * @param fetchPlan  Comma separated association paths.
+     * @return           The fetch plan.
+     */
+    public static FetchPlan parse(String fetchPlan) {
+        List<String> paths = SelectorLists.split(fetchPlan, "Fetch plan");
+        return new FetchPlan(SelectorLists.requireNonEmpty(paths, "path", "Fetch plan"));
+    }
+
+    /**
+     * Create the entity graph of all the paths.
+     *
+     * @param entityClass    Entity class the paths depend on.
+     * @param entityManager  JPA EntityManager.
+     * @param misc           Facade with all necessary tools.
+     * @return               The entity graph.
+     * @throws IllegalArgumentException When a path is unknown.
+     */
+    public <T> EntityGraph<T> toEntityGraph(Class<T> entityClass, EntityManager entityManager, BuilderTools misc) {
+        List<List<String>> attributePaths = new ArrayList<List<String>>();
+        for (String path : paths) {
+            attributePaths.add(attributesOf(PredicateBuilder.findSelectorPlan(path, entityClass, entityManager, misc)));
+        }
+        // longest first, so a prefix is a subgraph and not also an attribute node
+        Collections.sort(attributePaths, new Comparator<List<String>>() {
+            public int compare(List<String> one, List<String> other) {
+                return other.size() - one.size();
+            }
+        });
+        EntityGraph<T> graph = entityManager.createEntityGraph(entityClass);
+        Map<String, Subgraph<?>> subgraphs = new HashMap<String, Subgraph<?>>();
+        Set<String> added = new HashSet<String>();
+        for (List<String> attributes : attributePaths) {
+            Subgraph<?> subgraph = null;
+            String prefix = null;
+            for (int i = 0; i < attributes.size(); i++) {
+                String attribute = attributes.get(i);
+                prefix = (prefix == null) ? attribute : prefix + "." + attribute;
+                if (i == attributes.size() - 1) {
+                    if (added.add(prefix)) {
+                        if (subgraph == null) {
+                            graph.addAttributeNodes(attribute);
+                        } else {
+                            subgraph.addAttributeNodes(attribute);
+                        }
+                    }
+                } else {
+                    Subgraph<?> next = subgraphs.get(prefix);
+                    if (next == null) {
+                        next = (subgraph == null) ? graph.addSubgraph(attribute) : subgraph.addSubgraph(attribute);
+                        subgraphs.put(prefix, next);
+                        added.add(prefix);
+                    }
+                    subgraph = next;
+                }
+            }
+        }
+        return graph;
+    }
+
+    /**
+     * Create the fetch joins of the paths made only of single valued associations.
+     *
+     * Must be called before the filter predicate is created, so the filter
+     * reuses the inner fetch joins.
+     *
+     * @param root           From the paths depend on, without joins yet.
+     * @param filter         RSQL AST node of the filter, <tt>null</tt> for no filter.
+     * @param entityManager  JPA EntityManager.
+     * @param misc           Facade with all necessary tools.
+     * @return               <tt>true</tt> if every path was fetch joined, <tt>false</tt> if
+     *                       some path goes through a collection and needs the entity graph.
+     */
+    public boolean fetchJoins(From<?, ?> root, Node filter, EntityManager entityManager, BuilderTools misc) {
+        Set<String> innerJoined = new HashSet<String>();
+        if (filter != null) {
+            collectInnerJoins(filter, root.getJavaType(), entityManager, misc, innerJoined);
+        }
+        boolean complete = true;
+        for (String path : paths) {
+            SelectorPlan plan = PredicateBuilder.findSelectorPlan(path, root.getJavaType(), entityManager, misc);
+            if (!isSingleValued(plan)) {
+                complete = false;
+                continue;
+            }
+            FetchParent<?, ?> parent = root;
+            String prefix = null;
+            for (SelectorPlan.Step step : plan.getSteps()) {
+                prefix = (prefix == null) ? step.getAttribute() : prefix + "." + step.getAttribute();
+                parent = fetch(parent, step.getAttribute(), innerJoined.contains(prefix) ? JoinType.INNER : JoinType.LEFT);
+            }
+        }
+        return complete;
+    }
+
+    /**
+     * Get or create the fetch join of an attribute.
+     *
+     * @param parent    Owner of the fetch join.
+     * @param attribute Attribute to fetch.
+     * @param joinType  Join type of a new fetch join.
+     * @return          The existing fetch join of the attribute or a new one.
+     */
+    private static Fetch<?, ?> fetch(FetchParent<?, ?> parent, String attribute, JoinType joinType) {
+        for (Fetch<?, ?> fetch : parent.getFetches()) {
+            if (fetch.getAttribute().getName().equals(attribute)) {
+                return fetch;
+            }
+        }
+        return parent.fetch(attribute, joinType);
+    }
+
+    /**
+     * Collect the association prefixes the filter navigates with inner joins,
+     * up to the first collection.
+     */
+    private static void collectInnerJoins(Node node, Class<?> entityClass, EntityManager entityManager, BuilderTools misc, Set<String> prefixes) {
+        if (node instanceof LogicalNode) {
+            for (Node child : ((LogicalNode) node).getChildren()) {
+                collectInnerJoins(child, entityClass, entityManager, misc, prefixes);
+            }
+        } else if (node instanceof ComparisonNode) {
+            SelectorPlan plan = PredicateBuilder.findSelectorPlan(((ComparisonNode) node).getSelector(), entityClass, entityManager, misc);
+            if (ExistsSubqueries.isEnabled(misc) && SelectorLists.hasCollection(plan)) {
+                // joined inside an exists subquery, not by the main query
+                return;
+            }
+            String prefix = null;
+            for (SelectorPlan.Step step : plan.getSteps()) {
+                if (step.getKind() != SelectorPlan.Kind.ASSOCIATION || step.isCollection()) {
+                    break;
+                }
+                prefix = (prefix == null) ? step.getAttribute() : prefix + "." + step.getAttribute();
+                prefixes.add(prefix);
+            }
+        }
+    }
+
+    private static boolean isSingleValued(SelectorPlan plan) {
+        for (SelectorPlan.Step step : plan.getSteps()) {
+            if (step.getKind() != SelectorPlan.Kind.ASSOCIATION || step.isCollection()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static List<String> attributesOf(SelectorPlan plan) {
+        List<String> attributes = new ArrayList<String>(plan.getSteps().size());
+        for (SelectorPlan.Step step : plan.getSteps()) {
+            attributes.add(step.getAttribute());
+        }
+        return attributes;
+    }
+
+    /**
+     * @return Association paths to load.
+     */
+    public List<String> getPaths() {
+        return paths;
+    }
+
+    @Override
+    public int hashCode() {
+        return paths.hashCode();
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        return obj instanceof FetchPlan && paths.equals(((FetchPlan) obj).paths);
+    }
+
+    @Override
+    public String toString() {
+        return SelectorLists.join(paths);
+    }
+}
@@ -0,0 +1,63 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2013 Jakub Jirutka <jakub@jirutka.cz>.
+ * Copyright 2015 Antonio Rabelo.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.tennaito.rsql.jpa;
+
+import java.util.List;
+
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.Expression;
+import javax.persistence.criteria.Predicate;
+
+/**
+ * InListStrategy
+ *
+ * Strategy for the translation of the =in= and =out= operators, e.g. to keep
+ * very large lists under the limits of the database.
+ *
+ * @author AntonioRabelo
+ */
+public interface InListStrategy {
+
+    /**
+     * Create the "in" predicate of a list of values, the "not in" predicate
+     * is its negation.
+     *
+     * @param path     Property path that we want to compare.
+     * @param values   Values already cast to the attribute type, or
+     *                 ParameterExpressions when the query is a template.
+     * @param builder  CriteriaBuilder of the query.
+     * @return         Predicate a predicate representation.
+     */
+    public Predicate createIn(Expression<?> path, List<?> values, CriteriaBuilder builder);
+
+    /**
+     * Number of values a list is padded to before its predicate is created,
+     * lists of the same padded size share the same SQL statement.
+     *
+     * @param size  Number of values.
+     * @return      The padded size, or the size itself.
+     */
+    public int paddedSize(int size);
+}
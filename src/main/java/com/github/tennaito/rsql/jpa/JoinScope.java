@@ -0,0 +1,94 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2013 Jakub Jirutka <jakub@jirutka.cz>.
+ * Copyright 2015 Antonio Rabelo.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.tennaito.rsql.jpa;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+
+import javax.persistence.criteria.From;
+import javax.persistence.criteria.Join;
+
+import cz.jirutka.rsql.parser.ast.LogicalNode;
+import cz.jirutka.rsql.parser.ast.LogicalOperator;
+
+/**
+ * JoinScope
+ *
+ * Collection joins shared by the comparisons of one disjunction. Since
+ * (&exist;e: A(e)) &or; (&exist;e: B(e)) is &exist;e: A(e) &or; B(e), the
+ * comparisons of an OR node, and of the OR nodes nested in it, can match their
+ * collection through the same join, so an OR of ten comparisons on a
+ * collection joins it once instead of ten times. The comparisons of an AND
+ * node keep their own collection joins, as they may match different elements.
+ *
+ * @author AntonioRabelo
+ */
+final class JoinScope {
+
+    private final Set<Join<?, ?>> joins = Collections.newSetFromMap(new IdentityHashMap<Join<?, ?>, Boolean>());
+
+    private JoinScope() {
+    }
+
+    /**
+     * Get the scope of the children of a logical node.
+     *
+     * @param logical  RSQL AST logical node.
+     * @param parent   Scope of the node, may be <tt>null</tt>.
+     * @return         The scope of its children, <tt>null</tt> for an AND node.
+     */
+    static JoinScope of(LogicalNode logical, JoinScope parent) {
+        if (logical.getOperator() != LogicalOperator.OR) {
+            return null;
+        }
+        return parent != null ? parent : new JoinScope();
+    }
+
+    /**
+     * Find a collection join of this scope.
+     *
+     * @param from       From node that owns the join.
+     * @param attribute  Name of the collection attribute.
+     * @return           The join or <tt>null</tt> when there is none yet.
+     */
+    Join<?, ?> find(From<?, ?> from, String attribute) {
+        for (Join<?, ?> join : from.getJoins()) {
+            if (joins.contains(join) && join.getAttribute().getName().equals(attribute)) {
+                return join;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Share a collection join with the other comparisons of this scope.
+     *
+     * @param join  Join of a collection.
+     */
+    void add(Join<?, ?> join) {
+        joins.add(join);
+    }
+}
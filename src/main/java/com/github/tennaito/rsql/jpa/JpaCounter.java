@@ -0,0 +1,193 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2013 Jakub Jirutka <jakub@jirutka.cz>.
+ * Copyright 2015 Antonio Rabelo.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.tennaito.rsql.jpa;
+
+import javax.persistence.EntityManager;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Root;
+import javax.persistence.criteria.Selection;
+import javax.persistence.metamodel.EntityType;
+import javax.persistence.metamodel.SingularAttribute;
+
+import cz.jirutka.rsql.parser.ast.Node;
+
+/**
+ * JpaCounter
+ *
+ * Immutable counter of the entities matching RSQL AST nodes, with three modes:
+ *
+ * <ul>
+ * <li>exact: a count query, see {@link JpaTranslator#toCountQuery(Node, EntityManager)},
+ * which goes through the {@link CountCache} when there is one;</li>
+ * <li>capped: the identifiers of at most <tt>cap + 1</tt> matching entities are
+ * read, so the database stops once it knows there are more than <tt>cap</tt>;</li>
+ * <li>estimated: a {@link CountEstimator} guesses the count without a query.</li>
+ * </ul>
+ *
+ * @author AntonioRabelo
+ *
+ * @param <T> Entity type
+ */
+public final class JpaCounter<T> {
+
+    private final JpaTranslator<T> translator;
+
+    private final CountEstimator<T> estimator;
+
+    private final CountCache cache;
+
+    /**
+     * Construct a counter with the default tools and without estimator.
+     *
+     * @param entityClass  Entity class of the queries.
+     */
+    public JpaCounter(Class<T> entityClass) {
+        this(new JpaTranslator<T>(entityClass), null);
+    }
+
+    /**
+     * Construct a counter.
+     *
+     * @param translator  Translator of the filters.
+     * @param estimator   Estimator of the counts, may be <tt>null</tt>.
+     */
+    public JpaCounter(JpaTranslator<T> translator, CountEstimator<T> estimator) {
+        this(translator, estimator, null);
+    }
+
+    /**
+     * Construct a counter with a cache of the exact counts.
+     *
+     * @param translator  Translator of the filters.
+     * @param estimator   Estimator of the counts, may be <tt>null</tt>.
+     * @param cache       Cache of the exact counts, may be <tt>null</tt>.
+     */
+    public JpaCounter(JpaTranslator<T> translator, CountEstimator<T> estimator, CountCache cache) {
+        if (translator == null) {
+            throw new IllegalArgumentException("Translator must be defined.");
+        }
+        this.translator = translator;
+        this.estimator = estimator;
+        this.cache = cache;
+    }
+
+    /**
+     * Count the entities matching the RSQL AST node.
+     *
+     * @param node           RSQL AST node.
+     * @param entityManager  JPA EntityManager.
+     * @return               The exact count, or a cached one not older than the
+     *                       maximum staleness of the cache.
+     */
+    public long count(final Node node, final EntityManager entityManager) {
+        if (cache == null) {
+            return load(node, entityManager);
+        }
+        return cache.count(translator.getEntityClass(), node, translator.getBuilderTools(), new CountCache.Loader() {
+            public long load() {
+                return JpaCounter.this.load(node, entityManager);
+            }
+        });
+    }
+
+    private long load(Node node, EntityManager entityManager) {
+        return entityManager.createQuery(translator.toCountQuery(node, entityManager)).getSingleResult();
+    }
+
+    /**
+     * Count the entities matching the RSQL AST node up to a cap.
+     *
+     * @param node           RSQL AST node.
+     * @param entityManager  JPA EntityManager.
+     * @param cap            Largest count needed exactly.
+     * @return               The exact count when it is not above the cap,
+     *                       <tt>cap + 1</tt> otherwise.
+     */
+    public long countCapped(Node node, EntityManager entityManager, int cap) {
+        if (cap < 0 || cap == Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Invalid cap: " + cap);
+        }
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Object> cq = cb.createQuery();
+        Root<T> root = cq.from(translator.getEntityClass());
+        cq.where(translator.toPredicate(node, root, cq, entityManager));
+        cq.select(identifierOf(root, entityManager));
+        cq.distinct(JpaCriteriaCountQueryVisitor.hasCollectionJoin(root));
+        return entityManager.createQuery(cq).setMaxResults(cap + 1).getResultList().size();
+    }
+
+    /**
+     * Estimate the number of entities matching the RSQL AST node.
+     *
+     * @param node           RSQL AST node.
+     * @param entityManager  JPA EntityManager.
+     * @return               The estimated count.
+     * @throws IllegalStateException When the counter has no estimator.
+     */
+    public long estimate(Node node, EntityManager entityManager) {
+        if (estimator == null) {
+            throw new IllegalStateException("Count estimator was undefined.");
+        }
+        return estimator.estimate(node, entityManager);
+    }
+
+    /**
+     * @return The translator of the filters.
+     */
+    public JpaTranslator<T> getTranslator() {
+        return translator;
+    }
+
+    /**
+     * @return The estimator of the counts, may be <tt>null</tt>.
+     */
+    public CountEstimator<T> getEstimator() {
+        return estimator;
+    }
+
+    /**
+     * @return The cache of the exact counts, may be <tt>null</tt>.
+     */
+    public CountCache getCache() {
+        return cache;
+    }
+
+    /**
+     * Select the identifier of the root, or the root itself when the entity
+     * has a composite identifier.
+     */
+    private static Selection<?> identifierOf(Root<?> root, EntityManager entityManager) {
+        EntityType<?> type = entityManager.getMetamodel().entity(root.getJavaType());
+        if (type.hasSingleIdAttribute()) {
+            for (SingularAttribute<?, ?> attribute : type.getSingularAttributes()) {
+                if (attribute.isId()) {
+                    return root.get(attribute.getName());
+                }
+            }
+        }
+        return root;
+    }
+}
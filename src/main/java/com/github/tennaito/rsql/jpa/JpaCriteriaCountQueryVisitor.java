@@ -29,10 +29,14 @@ import java.util.logging.Logger;
 import javax.persistence.EntityManager;
 import javax.persistence.criteria.CriteriaBuilder;
 import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Expression;
+import javax.persistence.criteria.From;
+import javax.persistence.criteria.Join;
 import javax.persistence.criteria.Root;
 
 import cz.jirutka.rsql.parser.ast.AndNode;
 import cz.jirutka.rsql.parser.ast.ComparisonNode;
+import cz.jirutka.rsql.parser.ast.Node;
 import cz.jirutka.rsql.parser.ast.OrNode;
 import cz.jirutka.rsql.parser.ast.RSQLVisitor;
 
@@ -41,6 +45,9 @@ import cz.jirutka.rsql.parser.ast.RSQLVisitor;
  *
  * Visitor class for Criteria Query count creation from RSQL AST Nodes.
  *
+ * The query has a single root; entities are only counted distinct when a
+ * collection is joined by the filter.
+ *
  * @author sza
  *
  * @param <T> Entity type
@@ -78,44 +85,58 @@ public class JpaCriteriaCountQueryVisitor<T> extends AbstractJpaVisitor<Criteria
      * @see cz.jirutka.rsql.parser.ast.RSQLVisitor#visit(cz.jirutka.rsql.parser.ast.AndNode, java.lang.Object)
      */
     public CriteriaQuery<Long> visit(AndNode node, EntityManager entityManager) {
-        LOG.log(Level.INFO, "Creating CriteriaQuery for AndNode: {0}", node);
-
-        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
-        CriteriaQuery<Long> cq = cb.createQuery(Long.class);
-        root = cq.from(entityClass);
-        cq.select(cb.countDistinct(root));
-        cq.where(this.getPredicateVisitor().defineRoot(root).visit(node, entityManager));
-
-        return cq;
+        LOG.log(Level.FINE, "Creating CriteriaQuery for AndNode: {0}", node);
+        return createCountQuery(node, entityManager);
     }
 
     /* (non-Javadoc)
      * @see cz.jirutka.rsql.parser.ast.RSQLVisitor#visit(cz.jirutka.rsql.parser.ast.OrNode, java.lang.Object)
      */
     public CriteriaQuery<Long> visit(OrNode node, EntityManager entityManager) {
-        LOG.log(Level.INFO, "Creating CriteriaQuery for OrNode: {0}", node);
-
-        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
-        CriteriaQuery<Long> cq = cb.createQuery(Long.class);
-        root = cq.from(entityClass);
-        cq.select(cb.countDistinct(root));
-        root = cq.from(entityClass);
-        cq.where(this.getPredicateVisitor().defineRoot(root).visit(node, entityManager));
-        return cq;
+        LOG.log(Level.FINE, "Creating CriteriaQuery for OrNode: {0}", node);
+        return createCountQuery(node, entityManager);
     }
 
     /* (non-Javadoc)
      * @see cz.jirutka.rsql.parser.ast.RSQLVisitor#visit(cz.jirutka.rsql.parser.ast.ComparisonNode, java.lang.Object)
      */
     public CriteriaQuery<Long> visit(ComparisonNode node, EntityManager entityManager) {
-        LOG.log(Level.INFO, "Creating CriteriaQuery for ComparisonNode: {0}", node);
+        LOG.log(Level.FINE, "Creating CriteriaQuery for ComparisonNode: {0}", node);
+        return createCountQuery(node, entityManager);
+    }
 
+    private CriteriaQuery<Long> createCountQuery(Node node, EntityManager entityManager) {
         CriteriaBuilder cb = entityManager.getCriteriaBuilder();
         CriteriaQuery<Long> cq = cb.createQuery(Long.class);
         root = cq.from(entityClass);
-        cq.select(cb.countDistinct(root));
-        cq.where(this.getPredicateVisitor().defineRoot(root).visit(node, entityManager));
-        return cq;
+        cq.where(node.accept(this.getPredicateVisitor().defineRoot(root).defineQuery(cq), entityManager));
+        return cq.select(countOf(root, cb));
+    }
+
+    /**
+     * Create the count of a root once the joins of its predicate are created:
+     * a plain count when only single valued associations are joined, the
+     * count of distinct entities when a collection join can repeat them.
+     *
+     * @param root  Root of the query with all its joins.
+     * @param cb    CriteriaBuilder of the query.
+     * @return      The count expression.
+     */
+    static Expression<Long> countOf(Root<?> root, CriteriaBuilder cb) {
+        return hasCollectionJoin(root) ? cb.countDistinct(root) : cb.count(root);
+    }
+
+    /**
+     * @param from  From node with all its joins.
+     * @return      <tt>true</tt> if a collection is joined, directly or not.
+     */
+    static boolean hasCollectionJoin(From<?, ?> from) {
+        for (Join<?, ?> join : from.getJoins()) {
+            if (join.getAttribute().isCollection() || hasCollectionJoin(join)) {
+                return true;
+            }
+        }
+        return false;
     }
 
     public Root<T> getRoot() {
@@ -28,10 +28,11 @@ import java.util.logging.Logger;
 
 import javax.persistence.EntityManager;
 import javax.persistence.criteria.CriteriaQuery;
-import javax.persistence.criteria.From;
+import javax.persistence.criteria.Root;
 
 import cz.jirutka.rsql.parser.ast.AndNode;
 import cz.jirutka.rsql.parser.ast.ComparisonNode;
+import cz.jirutka.rsql.parser.ast.Node;
 import cz.jirutka.rsql.parser.ast.OrNode;
 import cz.jirutka.rsql.parser.ast.RSQLVisitor;
 
@@ -49,6 +50,10 @@ public class JpaCriteriaQueryVisitor<T> extends AbstractJpaVisitor<CriteriaQuery
 	private static final Logger LOG = Logger.getLogger(JpaCriteriaQueryVisitor.class.getName());
 
 	private final JpaPredicateVisitor<T> predicateVisitor;
+
+	private SortSpecification sortSpecification;
+
+	private Root<T> root;
 	
 	/**
 	 * Construtor with template varargs for entityClass discovery.
@@ -74,29 +79,61 @@ public class JpaCriteriaQueryVisitor<T> extends AbstractJpaVisitor<CriteriaQuery
 	 * @see cz.jirutka.rsql.parser.ast.RSQLVisitor#visit(cz.jirutka.rsql.parser.ast.AndNode, java.lang.Object)
 	 */
 	public CriteriaQuery<T> visit(AndNode node, EntityManager entityManager) {
-		LOG.log(Level.INFO, "Creating CriteriaQuery for AndNode: {0}", node);
-		CriteriaQuery<T> criteria = entityManager.getCriteriaBuilder().createQuery(entityClass);
-    	From root = criteria.from(entityClass);
-		return criteria.where(this.getPredicateVisitor().defineRoot(root).visit(node, entityManager));
+		LOG.log(Level.FINE, "Creating CriteriaQuery for AndNode: {0}", node);
+		return createQuery(node, entityManager);
 	}
 
 	/* (non-Javadoc)
 	 * @see cz.jirutka.rsql.parser.ast.RSQLVisitor#visit(cz.jirutka.rsql.parser.ast.OrNode, java.lang.Object)
 	 */
 	public CriteriaQuery<T> visit(OrNode node, EntityManager entityManager) {
-		LOG.log(Level.INFO, "Creating CriteriaQuery for OrNode: {0}", node);
-		CriteriaQuery<T> criteria = entityManager.getCriteriaBuilder().createQuery(entityClass);
-    	From root = criteria.from(entityClass);
-		return criteria.where(this.getPredicateVisitor().defineRoot(root).visit(node, entityManager));
+		LOG.log(Level.FINE, "Creating CriteriaQuery for OrNode: {0}", node);
+		return createQuery(node, entityManager);
 	}
 
 	/* (non-Javadoc)
 	 * @see cz.jirutka.rsql.parser.ast.RSQLVisitor#visit(cz.jirutka.rsql.parser.ast.ComparisonNode, java.lang.Object)
 	 */
 	public CriteriaQuery<T> visit(ComparisonNode node, EntityManager entityManager) {
-		LOG.log(Level.INFO, "Creating CriteriaQuery for ComparisonNode: {0}", node);
-    	CriteriaQuery<T> criteria = entityManager.getCriteriaBuilder().createQuery(entityClass);
-    	From root = criteria.from(entityClass);
-    	return criteria.where(this.getPredicateVisitor().defineRoot(root).visit(node, entityManager));
+		LOG.log(Level.FINE, "Creating CriteriaQuery for ComparisonNode: {0}", node);
+		return createQuery(node, entityManager);
+	}
+
+	private CriteriaQuery<T> createQuery(Node node, EntityManager entityManager) {
+		CriteriaQuery<T> criteria = entityManager.getCriteriaBuilder().createQuery(entityClass);
+		root = criteria.from(entityClass);
+		criteria.where(node.accept(this.getPredicateVisitor().defineRoot(root).defineQuery(criteria), entityManager));
+		if (sortSpecification != null) {
+			// after the filter, so the sort reuses its joins
+			criteria.orderBy(sortSpecification.toOrders(root, entityManager, this.getBuilderTools()));
+		}
+		return criteria;
+	}
+
+	/**
+	 * Get the root of the last created query.
+	 *
+	 * @return The root, with the joins of the filter.
+	 */
+	public Root<T> getRoot() {
+		return root;
+	}
+
+	/**
+	 * Get the sort specification of the created queries.
+	 *
+	 * @return The sort specification, may be <tt>null</tt>.
+	 */
+	public SortSpecification getSortSpecification() {
+		return sortSpecification;
+	}
+
+	/**
+	 * Set the sort specification of the created queries.
+	 *
+	 * @param sortSpecification Sort specification, <tt>null</tt> for no order.
+	 */
+	public void setSortSpecification(SortSpecification sortSpecification) {
+		this.sortSpecification = sortSpecification;
 	}
 }
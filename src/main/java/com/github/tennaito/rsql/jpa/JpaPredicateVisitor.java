@@ -27,6 +27,7 @@ import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import javax.persistence.EntityManager;
+import javax.persistence.criteria.AbstractQuery;
 import javax.persistence.criteria.From;
 import javax.persistence.criteria.Predicate;
 
@@ -56,6 +57,11 @@ public class JpaPredicateVisitor<T> extends AbstractJpaVisitor<Predicate, T>  im
 	 */
 	private From root;
 
+	/**
+	 * Query.
+	 */
+	private AbstractQuery<?> query;
+
 	/**
 	 * Construtor with template varargs for entityClass discovery.
 	 *
@@ -75,27 +81,38 @@ public class JpaPredicateVisitor<T> extends AbstractJpaVisitor<Predicate, T>  im
 		return this;
 	}
 
+	/**
+	 * Define the query of the predicate, needed for the exists subqueries of
+	 * the {@link CollectionFilterMode#EXISTS} mode.
+	 * @param query Query the predicate belongs to, <tt>null</tt> to always join the collections.
+	 * @return Fluent interface.
+	 */
+	public JpaPredicateVisitor<T> defineQuery(AbstractQuery<?> query) {
+		this.query = query;
+		return this;
+	}
+
 	/* (non-Javadoc)
 	 * @see cz.jirutka.rsql.parser.ast.RSQLVisitor#visit(cz.jirutka.rsql.parser.ast.AndNode, java.lang.Object)
 	 */
 	public Predicate visit(AndNode node, EntityManager entityManager) {
-		LOG.log(Level.INFO, "Creating Predicate for AndNode: {0}", node);
-		return PredicateBuilder.<T>createPredicate(node, root, entityClass, entityManager, getBuilderTools());
+		LOG.log(Level.FINE, "Creating Predicate for AndNode: {0}", node);
+		return PredicateBuilder.<T>createPredicate(node, root, entityClass, query, entityManager, getBuilderTools());
 	}
 
 	/* (non-Javadoc)
 	 * @see cz.jirutka.rsql.parser.ast.RSQLVisitor#visit(cz.jirutka.rsql.parser.ast.OrNode, java.lang.Object)
 	 */
 	public Predicate visit(OrNode node, EntityManager entityManager) {
-		LOG.log(Level.INFO, "Creating Predicate for OrNode: {0}", node);
-		return PredicateBuilder.<T>createPredicate(node, root, entityClass, entityManager, getBuilderTools());
+		LOG.log(Level.FINE, "Creating Predicate for OrNode: {0}", node);
+		return PredicateBuilder.<T>createPredicate(node, root, entityClass, query, entityManager, getBuilderTools());
 	}
 
 	/* (non-Javadoc)
 	 * @see cz.jirutka.rsql.parser.ast.RSQLVisitor#visit(cz.jirutka.rsql.parser.ast.ComparisonNode, java.lang.Object)
 	 */
 	public Predicate visit(ComparisonNode node, EntityManager entityManager) {
-		LOG.log(Level.INFO, "Creating Predicate for ComparisonNode: {0}", node);
-    	return PredicateBuilder.<T>createPredicate(node, root, entityClass, entityManager, getBuilderTools());
+		LOG.log(Level.FINE, "Creating Predicate for ComparisonNode: {0}", node);
+    	return PredicateBuilder.<T>createPredicate(node, root, entityClass, query, entityManager, getBuilderTools());
 	}
 }
@@ -0,0 +1,160 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Antonio Rabelo.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.tennaito.rsql.jpa;
+
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.persistence.EntityManager;
+import javax.persistence.Tuple;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Root;
+
+import cz.jirutka.rsql.parser.ast.AndNode;
+import cz.jirutka.rsql.parser.ast.ComparisonNode;
+import cz.jirutka.rsql.parser.ast.Node;
+import cz.jirutka.rsql.parser.ast.OrNode;
+import cz.jirutka.rsql.parser.ast.RSQLVisitor;
+
+/**
+ * JpaProjectionQueryVisitor
+ *
+ * Visitor class for Criteria Query creation from RSQL AST Nodes, selecting
+ * only the attributes of a {@link Projection} as tuples instead of whole
+ * entities, so no entity is hydrated nor managed by the persistence context.
+ * Tuple elements are aliased with their selectors. There is no distinct, so a
+ * filter joining a collection repeats the rows of the entities matched by
+ * several elements, unless the {@link CollectionFilterMode#EXISTS} mode is used.
+ *
+ * @author AntonioRabelo
+ *
+ * @param <T> Entity type
+ * @see JpaTranslator#toProjectionQuery(Node, Projection, Class, EntityManager)
+ */
+public class JpaProjectionQueryVisitor<T> extends AbstractJpaVisitor<CriteriaQuery<Tuple>, T>  implements RSQLVisitor<CriteriaQuery<Tuple>, EntityManager> {
+
+	private static final Logger LOG = Logger.getLogger(JpaProjectionQueryVisitor.class.getName());
+
+	private final JpaPredicateVisitor<T> predicateVisitor;
+
+	private Projection projection;
+
+	private SortSpecification sortSpecification;
+
+	/**
+	 * Construtor with template varargs for entityClass discovery.
+	 *
+	 * @param t not for usage
+	 */
+	@SafeVarargs
+	public JpaProjectionQueryVisitor(T... t) {
+		super(t);
+		this.predicateVisitor = new JpaPredicateVisitor<T>(t);
+	}
+
+	/**
+	 * Get the Predicate Visitor instance.
+	 *
+	 * @return Return the Predicate Visitor.
+	 */
+	protected JpaPredicateVisitor<T> getPredicateVisitor() {
+		this.predicateVisitor.setBuilderTools(this.getBuilderTools());
+		return this.predicateVisitor;
+	}
+
+	/* (non-Javadoc)
+	 * @see cz.jirutka.rsql.parser.ast.RSQLVisitor#visit(cz.jirutka.rsql.parser.ast.AndNode, java.lang.Object)
+	 */
+	public CriteriaQuery<Tuple> visit(AndNode node, EntityManager entityManager) {
+		LOG.log(Level.FINE, "Creating projection CriteriaQuery for AndNode: {0}", node);
+		return createQuery(node, entityManager);
+	}
+
+	/* (non-Javadoc)
+	 * @see cz.jirutka.rsql.parser.ast.RSQLVisitor#visit(cz.jirutka.rsql.parser.ast.OrNode, java.lang.Object)
+	 */
+	public CriteriaQuery<Tuple> visit(OrNode node, EntityManager entityManager) {
+		LOG.log(Level.FINE, "Creating projection CriteriaQuery for OrNode: {0}", node);
+		return createQuery(node, entityManager);
+	}
+
+	/* (non-Javadoc)
+	 * @see cz.jirutka.rsql.parser.ast.RSQLVisitor#visit(cz.jirutka.rsql.parser.ast.ComparisonNode, java.lang.Object)
+	 */
+	public CriteriaQuery<Tuple> visit(ComparisonNode node, EntityManager entityManager) {
+		LOG.log(Level.FINE, "Creating projection CriteriaQuery for ComparisonNode: {0}", node);
+		return createQuery(node, entityManager);
+	}
+
+	private CriteriaQuery<Tuple> createQuery(Node node, EntityManager entityManager) {
+		if (projection == null) {
+			throw new IllegalStateException("Projection was undefined.");
+		}
+		CriteriaQuery<Tuple> criteria = entityManager.getCriteriaBuilder().createTupleQuery();
+		Root<T> root = criteria.from(entityClass);
+		criteria.where(node.accept(this.getPredicateVisitor().defineRoot(root).defineQuery(criteria), entityManager));
+		// after the filter, so the projection and the sort reuse its joins
+		criteria.multiselect(projection.toSelections(root, entityManager, this.getBuilderTools()));
+		if (sortSpecification != null) {
+			criteria.orderBy(sortSpecification.toOrders(root, entityManager, this.getBuilderTools()));
+		}
+		return criteria;
+	}
+
+	/**
+	 * Get the projection of the created queries.
+	 *
+	 * @return The projection.
+	 */
+	public Projection getProjection() {
+		return projection;
+	}
+
+	/**
+	 * Set the projection of the created queries.
+	 *
+	 * @param projection Selectors of the attributes to read.
+	 */
+	public void setProjection(Projection projection) {
+		this.projection = projection;
+	}
+
+	/**
+	 * Get the sort specification of the created queries.
+	 *
+	 * @return The sort specification, may be <tt>null</tt>.
+	 */
+	public SortSpecification getSortSpecification() {
+		return sortSpecification;
+	}
+
+	/**
+	 * Set the sort specification of the created queries.
+	 *
+	 * @param sortSpecification Sort specification, <tt>null</tt> for no order.
+	 */
+	public void setSortSpecification(SortSpecification sortSpecification) {
+		this.sortSpecification = sortSpecification;
+	}
+}
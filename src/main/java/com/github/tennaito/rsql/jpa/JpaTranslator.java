@@ -0,0 +1,239 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2013 Jakub Jirutka <jakub@jirutka.cz>.
+ * Copyright 2015 Antonio Rabelo.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.tennaito.rsql.jpa;
+
+import java.util.List;
+
+import javax.persistence.EntityManager;
+import javax.persistence.Tuple;
+import javax.persistence.TypedQuery;
+import javax.persistence.criteria.AbstractQuery;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.From;
+import javax.persistence.criteria.Predicate;
+import javax.persistence.criteria.Root;
+import javax.persistence.criteria.Selection;
+
+import com.github.tennaito.rsql.builder.BuilderTools;
+import com.github.tennaito.rsql.builder.ImmutableBuilderTools;
+import com.github.tennaito.rsql.builder.SimpleBuilderTools;
+
+import cz.jirutka.rsql.parser.ast.Node;
+
+/**
+ * JpaTranslator
+ *
+ * Immutable translator of RSQL AST nodes into JPA criteria for one entity class.
+ *
+ * Unlike the visitors, which keep the root and their tools in mutable fields,
+ * a translator freezes its BuilderTools when it is built and keeps all per-call
+ * state on the stack. One instance per entity can be held in a singleton and
+ * used by any number of threads, each one with its own EntityManager.
+ *
+ * @author AntonioRabelo
+ *
+ * @param <T> Entity type
+ */
+public final class JpaTranslator<T> {
+
+    private final Class<T> entityClass;
+
+    private final BuilderTools builderTools;
+
+    /**
+     * Construct a translator with the default tools.
+     *
+     * @param entityClass  Entity class of the queries.
+     */
+    public JpaTranslator(Class<T> entityClass) {
+        this(entityClass, new SimpleBuilderTools());
+    }
+
+    /**
+     * Construct a translator with a frozen copy of the given tools.
+     *
+     * @param entityClass  Entity class of the queries.
+     * @param builderTools Tools to freeze, later changes on them are not seen.
+     */
+    public JpaTranslator(Class<T> entityClass, BuilderTools builderTools) {
+        if (entityClass == null) {
+            throw new IllegalArgumentException("Entity class was undefined.");
+        }
+        this.entityClass = entityClass;
+        this.builderTools = ImmutableBuilderTools.of(builderTools);
+    }
+
+    /**
+     * Create a Predicate from the RSQL AST node.
+     *
+     * @param node           RSQL AST node.
+     * @param root           From that predicate expression paths depends on.
+     * @param entityManager  JPA EntityManager.
+     * @return               Predicate a predicate representation of the Node.
+     */
+    public Predicate toPredicate(Node node, From<?, T> root, EntityManager entityManager) {
+        return PredicateBuilder.createPredicate(node, root, entityClass, entityManager, builderTools);
+    }
+
+    /**
+     * Create a Predicate from the RSQL AST node, as the where clause of a query.
+     * Needed for the exists subqueries of the {@link CollectionFilterMode#EXISTS} mode.
+     *
+     * @param node           RSQL AST node.
+     * @param root           From that predicate expression paths depends on.
+     * @param query          Query the predicate belongs to.
+     * @param entityManager  JPA EntityManager.
+     * @return               Predicate a predicate representation of the Node.
+     */
+    public Predicate toPredicate(Node node, From<?, T> root, AbstractQuery<?> query, EntityManager entityManager) {
+        return PredicateBuilder.createPredicate(node, root, entityClass, query, entityManager, builderTools);
+    }
+
+    /**
+     * Create a Criteria Query selecting the entities that match the RSQL AST node.
+     *
+     * @param node           RSQL AST node.
+     * @param entityManager  JPA EntityManager.
+     * @return               The criteria query.
+     */
+    public CriteriaQuery<T> toCriteriaQuery(Node node, EntityManager entityManager) {
+        CriteriaQuery<T> criteria = entityManager.getCriteriaBuilder().createQuery(entityClass);
+        Root<T> root = criteria.from(entityClass);
+        return criteria.where(toPredicate(node, root, criteria, entityManager));
+    }
+
+    /**
+     * Create a Criteria Query selecting the entities that match the RSQL AST node
+     * in the order of a sort specification.
+     *
+     * @param node           RSQL AST node.
+     * @param sort           Sort specification, resolved after the filter to reuse its joins.
+     * @param entityManager  JPA EntityManager.
+     * @return               The ordered criteria query.
+     */
+    public CriteriaQuery<T> toCriteriaQuery(Node node, SortSpecification sort, EntityManager entityManager) {
+        CriteriaQuery<T> criteria = entityManager.getCriteriaBuilder().createQuery(entityClass);
+        Root<T> root = criteria.from(entityClass);
+        criteria.where(toPredicate(node, root, criteria, entityManager));
+        return criteria.orderBy(sort.toOrders(root, entityManager, builderTools));
+    }
+
+    /**
+     * Create a query selecting the entities that match the RSQL AST node and
+     * loading the associations of a fetch plan with them.
+     *
+     * Single valued association paths are fetch joined, reusing the joins of
+     * the filter; when some path goes through a collection, the entity graph
+     * of the whole plan is set as the <tt>javax.persistence.fetchgraph</tt> hint.
+     *
+     * @param node           RSQL AST node.
+     * @param fetchPlan      Association paths to load.
+     * @param entityManager  JPA EntityManager.
+     * @return               The typed query, with the fetch graph hint when needed.
+     */
+    public TypedQuery<T> createQuery(Node node, FetchPlan fetchPlan, EntityManager entityManager) {
+        CriteriaQuery<T> criteria = entityManager.getCriteriaBuilder().createQuery(entityClass);
+        Root<T> root = criteria.from(entityClass);
+        // fetch joins first, so the filter reuses them
+        boolean fetched = fetchPlan.fetchJoins(root, node, entityManager, builderTools);
+        criteria.where(toPredicate(node, root, criteria, entityManager));
+        TypedQuery<T> query = entityManager.createQuery(criteria);
+        if (!fetched) {
+            query.setHint(FetchPlan.FETCH_GRAPH_HINT, fetchPlan.toEntityGraph(entityClass, entityManager, builderTools));
+        }
+        return query;
+    }
+
+    /**
+     * Create a Criteria Query selecting only some attributes of the entities
+     * that match the RSQL AST node, as tuples aliased with their selectors.
+     * A filter joining a collection repeats the rows of the entities matched by
+     * several elements; there is no distinct, which would also merge different
+     * entities with the same projected values, so use the
+     * {@link CollectionFilterMode#EXISTS} mode to select every entity once.
+     *
+     * @param node           RSQL AST node.
+     * @param projection     Selectors of the attributes to read.
+     * @param entityManager  JPA EntityManager.
+     * @return               The tuple criteria query.
+     */
+    public CriteriaQuery<Tuple> toProjectionQuery(Node node, Projection projection, EntityManager entityManager) {
+        CriteriaQuery<Tuple> criteria = entityManager.getCriteriaBuilder().createTupleQuery();
+        Root<T> root = criteria.from(entityClass);
+        criteria.where(toPredicate(node, root, criteria, entityManager));
+        return criteria.multiselect(projection.toSelections(root, entityManager, builderTools));
+    }
+
+    /**
+     * Create a Criteria Query building DTOs out of some attributes of the
+     * entities that match the RSQL AST node, through a constructor expression.
+     * Rows are repeated like in {@link #toProjectionQuery(Node, Projection, EntityManager)}.
+     *
+     * @param node           RSQL AST node.
+     * @param projection     Selectors of the attributes, in the order of the constructor parameters.
+     * @param resultClass    DTO class with a matching public constructor.
+     * @param entityManager  JPA EntityManager.
+     * @return               The DTO criteria query.
+     */
+    public <R> CriteriaQuery<R> toProjectionQuery(Node node, Projection projection, Class<R> resultClass, EntityManager entityManager) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<R> criteria = cb.createQuery(resultClass);
+        Root<T> root = criteria.from(entityClass);
+        criteria.where(toPredicate(node, root, criteria, entityManager));
+        List<Selection<?>> selections = projection.toSelections(root, entityManager, builderTools);
+        return criteria.select(cb.construct(resultClass, selections.toArray(new Selection<?>[selections.size()])));
+    }
+
+    /**
+     * Create a Criteria Query counting the entities that match the RSQL AST node,
+     * distinct entities only when the filter joins a collection.
+     *
+     * @param node           RSQL AST node.
+     * @param entityManager  JPA EntityManager.
+     * @return               The count criteria query.
+     */
+    public CriteriaQuery<Long> toCountQuery(Node node, EntityManager entityManager) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Long> cq = cb.createQuery(Long.class);
+        Root<T> root = cq.from(entityClass);
+        cq.where(toPredicate(node, root, cq, entityManager));
+        return cq.select(JpaCriteriaCountQueryVisitor.countOf(root, cb));
+    }
+
+    /**
+     * @return The entity class of the queries.
+     */
+    public Class<T> getEntityClass() {
+        return entityClass;
+    }
+
+    /**
+     * @return The frozen builder tools.
+     */
+    public BuilderTools getBuilderTools() {
+        return builderTools;
+    }
+}
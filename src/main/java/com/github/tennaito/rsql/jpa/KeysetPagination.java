@@ -0,0 +1,318 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2013 Jakub Jirutka <jakub@jirutka.cz>.
+ * Copyright 2015 Antonio Rabelo.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.tennaito.rsql.jpa;
+
+import java.nio.charset.Charset;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Date;
+import java.util.List;
+
+import javax.persistence.EntityManager;
+import javax.persistence.Tuple;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Expression;
+import javax.persistence.criteria.Order;
+import javax.persistence.criteria.Path;
+import javax.persistence.criteria.Predicate;
+import javax.persistence.criteria.Root;
+import javax.persistence.criteria.Selection;
+import javax.persistence.metamodel.EntityType;
+import javax.persistence.metamodel.SingularAttribute;
+
+import com.github.tennaito.rsql.builder.BuilderTools;
+
+import cz.jirutka.rsql.parser.ast.Node;
+
+/**
+ * KeysetPagination
+ *
+ * Immutable keyset (seek) pagination of the entities matching RSQL AST nodes.
+ * Instead of skipping the rows of the previous pages with an offset, a page
+ * starts after the sort key values of the last entity of the previous page,
+ * carried by an opaque cursor:
+ *
+ * <pre>
+ * k1 &gt;= v1 and (k1 &gt; v1 or (k1 = v1 and k2 &gt; v2) or ...)
+ * </pre>
+ *
+ * So with an index on the sort keys every page costs the same as the first
+ * one. The identifier of the entity is appended to the sort keys when it is
+ * missing, so the order is total and no entity is skipped or repeated.
+ *
+ * Sort keys must not be null, and sorting on an association only keeps the
+ * entities that have it, like filtering on it. Cursors keep dates with their
+ * nanoseconds and strings as they are, other keys are read back by the
+ * argument parser.
+ *
+ * @author AntonioRabelo
+ *
+ * @param <T> Entity type
+ */
+public final class KeysetPagination<T> {
+
+    /**
+     * Alias of the entity in the tuples of {@link #toCriteriaQuery(Node, SortSpecification, String, EntityManager)}.
+     */
+    public static final String ENTITY_ALIAS = "entity";
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final JpaTranslator<T> translator;
+
+    /**
+     * Construct a pagination with the default tools.
+     *
+     * @param entityClass  Entity class of the queries.
+     */
+    public KeysetPagination(Class<T> entityClass) {
+        this(new JpaTranslator<T>(entityClass));
+    }
+
+    /**
+     * Construct a pagination.
+     *
+     * @param translator  Translator of the filters.
+     */
+    public KeysetPagination(JpaTranslator<T> translator) {
+        if (translator == null) {
+            throw new IllegalArgumentException("Translator must be defined.");
+        }
+        this.translator = translator;
+    }
+
+    /**
+     * Read a page of entities.
+     *
+     * @param filter         RSQL AST node, <tt>null</tt> for all entities.
+     * @param sort           Sort specification.
+     * @param cursor         Cursor of the page, <tt>null</tt> for the first page.
+     * @param pageSize       Maximum number of entities of the page.
+     * @param entityManager  JPA EntityManager.
+     * @return               The page with the cursor of the next one.
+     */
+    public KeysetPage<T> findPage(Node filter, SortSpecification sort, String cursor, int pageSize, EntityManager entityManager) {
+        if (pageSize < 1 || pageSize == Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Invalid page size: " + pageSize);
+        }
+        List<Tuple> tuples = entityManager.createQuery(toCriteriaQuery(filter, sort, cursor, entityManager))
+                .setMaxResults(pageSize + 1).getResultList();
+        List<T> content = new ArrayList<T>(Math.min(pageSize, tuples.size()));
+        for (int i = 0; i < tuples.size() && i < pageSize; i++) {
+            content.add(tuples.get(i).get(ENTITY_ALIAS, translator.getEntityClass()));
+        }
+        return new KeysetPage<T>(content, tuples.size() > pageSize ? cursorOf(tuples.get(pageSize - 1)) : null);
+    }
+
+    /**
+     * Create the query of a page. Its tuples hold the entity, under the alias
+     * {@link #ENTITY_ALIAS}, followed by the values of the sort keys.
+     *
+     * @param filter         RSQL AST node, <tt>null</tt> for all entities.
+     * @param sort           Sort specification.
+     * @param cursor         Cursor of the page, <tt>null</tt> for the first page.
+     * @param entityManager  JPA EntityManager.
+     * @return               The ordered criteria query, without limit.
+     * @throws IllegalArgumentException When the cursor is invalid.
+     */
+    public CriteriaQuery<Tuple> toCriteriaQuery(Node filter, SortSpecification sort, String cursor, EntityManager entityManager) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Tuple> cq = cb.createTupleQuery();
+        Root<T> root = cq.from(translator.getEntityClass());
+        List<Predicate> predicates = new ArrayList<Predicate>();
+        if (filter != null) {
+            predicates.add(translator.toPredicate(filter, root, cq, entityManager));
+        }
+
+        // sort keys are resolved after the filter, so they reuse its joins
+        SortSpecification total = totalOrderOf(sort, entityManager);
+        List<SortSpecification.Key> keys = total.getKeys();
+        List<Path<?>> paths = total.toPaths(root, entityManager, translator.getBuilderTools());
+        List<Selection<?>> selections = new ArrayList<Selection<?>>(keys.size() + 1);
+        List<Order> orders = new ArrayList<Order>(keys.size());
+        selections.add(root.alias(ENTITY_ALIAS));
+        for (int i = 0; i < keys.size(); i++) {
+            selections.add(paths.get(i));
+            orders.add(keys.get(i).isAscending() ? cb.asc(paths.get(i)) : cb.desc(paths.get(i)));
+        }
+        if (cursor != null) {
+            predicates.add(seek(paths, keys, decode(cursor, paths), cb));
+        }
+
+        cq.multiselect(selections);
+        cq.where(predicates.toArray(new Predicate[predicates.size()]));
+        cq.distinct(JpaCriteriaCountQueryVisitor.hasCollectionJoin(root));
+        return cq.orderBy(orders);
+    }
+
+    /**
+     * Create the cursor of the page starting after a tuple of
+     * {@link #toCriteriaQuery(Node, SortSpecification, String, EntityManager)}.
+     *
+     * @param tuple  Last tuple of a page.
+     * @return       The opaque cursor.
+     * @throws IllegalStateException When a sort key is null.
+     */
+    public String cursorOf(Tuple tuple) {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 1; i < tuple.getElements().size(); i++) {
+            String value = stringOf(tuple.get(i));
+            builder.append(value.length()).append(':').append(value);
+        }
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(builder.toString().getBytes(UTF_8));
+    }
+
+    /**
+     * @return The translator of the filters.
+     */
+    public JpaTranslator<T> getTranslator() {
+        return translator;
+    }
+
+    private SortSpecification totalOrderOf(SortSpecification sort, EntityManager entityManager) {
+        if (sort == null) {
+            throw new IllegalArgumentException("Sort specification was undefined.");
+        }
+        String identifier = identifierOf(translator.getEntityClass(), entityManager);
+        return sort.contains(identifier) ? sort : sort.then(identifier, true);
+    }
+
+    private static String identifierOf(Class<?> entityClass, EntityManager entityManager) {
+        EntityType<?> type = entityManager.getMetamodel().entity(entityClass);
+        if (type.hasSingleIdAttribute()) {
+            for (SingularAttribute<?, ?> attribute : type.getSingularAttributes()) {
+                if (attribute.isId()) {
+                    return attribute.getName();
+                }
+            }
+        }
+        throw new IllegalArgumentException("Keyset pagination needs a single identifier attribute: " + entityClass.getName());
+    }
+
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private static Predicate seek(List<Path<?>> paths, List<SortSpecification.Key> keys, List<Object> values, CriteriaBuilder cb) {
+        List<Predicate> alternatives = new ArrayList<Predicate>(paths.size());
+        List<Predicate> equalities = new ArrayList<Predicate>(paths.size());
+        for (int i = 0; i < paths.size(); i++) {
+            Expression path = paths.get(i);
+            Comparable value = (Comparable) values.get(i);
+            List<Predicate> alternative = new ArrayList<Predicate>(equalities);
+            alternative.add(keys.get(i).isAscending() ? cb.greaterThan(path, value) : cb.lessThan(path, value));
+            alternatives.add(cb.and(alternative.toArray(new Predicate[alternative.size()])));
+            equalities.add(cb.equal(path, value));
+        }
+        Predicate seek = cb.or(alternatives.toArray(new Predicate[alternatives.size()]));
+        if (paths.size() == 1) {
+            return seek;
+        }
+        // redundant bound on the first key, so the database can seek its index
+        Expression first = paths.get(0);
+        Comparable value = (Comparable) values.get(0);
+        return cb.and(keys.get(0).isAscending() ? cb.greaterThanOrEqualTo(first, value) : cb.lessThanOrEqualTo(first, value), seek);
+    }
+
+    private List<Object> decode(String cursor, List<Path<?>> paths) {
+        String decoded;
+        try {
+            decoded = new String(Base64.getUrlDecoder().decode(cursor), UTF_8);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid cursor: " + cursor, e);
+        }
+        BuilderTools tools = translator.getBuilderTools();
+        List<Object> values = new ArrayList<Object>(paths.size());
+        int position = 0;
+        while (position < decoded.length()) {
+            int colon = decoded.indexOf(':', position);
+            if (colon < 0 || values.size() == paths.size()) {
+                throw new IllegalArgumentException("Invalid cursor: " + cursor);
+            }
+            int end;
+            try {
+                end = colon + 1 + Integer.parseInt(decoded.substring(position, colon));
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid cursor: " + cursor, e);
+            }
+            if (end > decoded.length() || end <= colon) {
+                throw new IllegalArgumentException("Invalid cursor: " + cursor);
+            }
+            Path<?> path = paths.get(values.size());
+            values.add(valueOf(decoded.substring(colon + 1, end), path.getJavaType(), tools, cursor));
+            position = end;
+        }
+        if (values.size() != paths.size()) {
+            throw new IllegalArgumentException("Invalid cursor: " + cursor);
+        }
+        return values;
+    }
+
+    /**
+     * Read a value of the cursor back. Strings are taken as they are, so a key
+     * reading "null" is not taken for a null, and dates keep their nanoseconds.
+     */
+    private static Object valueOf(String text, Class<?> type, BuilderTools tools, String cursor) {
+        if (String.class.equals(type)) {
+            return text;
+        }
+        if (Date.class.isAssignableFrom(type)) {
+            int dot = text.indexOf('.');
+            Timestamp timestamp;
+            try {
+                timestamp = new Timestamp(Long.parseLong(text.substring(0, dot)) * 1000L);
+                timestamp.setNanos(Integer.parseInt(text.substring(dot + 1)));
+            } catch (RuntimeException e) {
+                throw new IllegalArgumentException("Invalid cursor: " + cursor, e);
+            }
+            if (java.sql.Date.class.equals(type)) {
+                return new java.sql.Date(timestamp.getTime());
+            }
+            if (Time.class.equals(type)) {
+                return new Time(timestamp.getTime());
+            }
+            // a timestamp is a date, and does not truncate the keys stored with microseconds
+            return timestamp;
+        }
+        return tools.getArgumentParser().parse(text, type);
+    }
+
+    private static String stringOf(Object value) {
+        if (value == null) {
+            throw new IllegalStateException("Keyset pagination needs sort keys that are not null.");
+        }
+        if (value instanceof Date) {
+            // epoch seconds and nanoseconds, exact for timestamps
+            long time = ((Date) value).getTime();
+            long seconds = Math.floorDiv(time, 1000L);
+            int nanos = (value instanceof Timestamp) ? ((Timestamp) value).getNanos() : (int) Math.floorMod(time, 1000L) * 1000000;
+            return seconds + "." + nanos;
+        }
+        if (value instanceof Enum) {
+            return ((Enum<?>) value).name();
+        }
+        return value.toString();
+    }
+}
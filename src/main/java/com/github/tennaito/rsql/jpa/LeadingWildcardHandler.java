@@ -0,0 +1,53 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2013 Jakub Jirutka <jakub@jirutka.cz>.
+ * Copyright 2015 Antonio Rabelo.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.tennaito.rsql.jpa;
+
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.Expression;
+import javax.persistence.criteria.Predicate;
+
+/**
+ * LeadingWildcardHandler
+ *
+ * Called for string comparisons whose argument starts with the "*" wildcard,
+ * which no index on the column can serve. It can count or log them, reject
+ * them, or route them to an alternative such as a full-text search function.
+ *
+ * @author AntonioRabelo
+ */
+public interface LeadingWildcardHandler {
+
+    /**
+     * Create the predicate of a comparison with a leading wildcard.
+     *
+     * @param path      Property path that we want to compare.
+     * @param argument  Argument with its "*" wildcards.
+     * @param builder   CriteriaBuilder of the query.
+     * @return          Predicate a predicate representation, or <tt>null</tt>
+     *                  for the default case-insensitive "like".
+     * @throws IllegalArgumentException When the comparison is rejected.
+     */
+    public Predicate createLike(Expression<String> path, String argument, CriteriaBuilder builder) throws IllegalArgumentException;
+}
@@ -0,0 +1,610 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2013 Jakub Jirutka <jakub@jirutka.cz>.
+ * Copyright 2015 Antonio Rabelo.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.tennaito.rsql.jpa;
+
+import java.math.BigInteger;
+import java.time.temporal.Temporal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.persistence.EntityManager;
+
+import com.github.tennaito.rsql.builder.BuilderTools;
+import com.github.tennaito.rsql.builder.ImmutableBuilderTools;
+import com.github.tennaito.rsql.builder.SimpleBuilderTools;
+import com.github.tennaito.rsql.misc.ArgumentFormatException;
+import com.github.tennaito.rsql.parser.RSQLParserCache;
+import com.github.tennaito.rsql.parser.ast.ComparisonOperatorProxy;
+
+import cz.jirutka.rsql.parser.ast.AndNode;
+import cz.jirutka.rsql.parser.ast.ComparisonNode;
+import cz.jirutka.rsql.parser.ast.ComparisonOperator;
+import cz.jirutka.rsql.parser.ast.LogicalNode;
+import cz.jirutka.rsql.parser.ast.LogicalOperator;
+import cz.jirutka.rsql.parser.ast.Node;
+import cz.jirutka.rsql.parser.ast.OrNode;
+import cz.jirutka.rsql.parser.ast.RSQLOperators;
+
+/**
+ * NodeNormalizer
+ *
+ * Rewrites an RSQL AST into an equivalent and smaller one before it is
+ * translated:
+ *
+ * <ul>
+ * <li>nested AND/OR nodes with the same operator are flattened;</li>
+ * <li>duplicated children and IN/OUT values are removed;</li>
+ * <li>equalities on the same selector joined by OR are merged into one IN,
+ * inequalities joined by AND into one OUT;</li>
+ * <li>equalities, IN lists and range bounds on the same selector joined by
+ * AND are intersected: subsumed bounds are dropped and an inclusive lower
+ * and upper bound become one {@link ComparisonOperatorProxy#BETWEEN};</li>
+ * <li>children are sorted by their canonical fingerprint.</li>
+ * </ul>
+ *
+ * A filter that cannot match anything, such as <tt>status==A;status==B</tt>
+ * or <tt>x=gt=5;x=lt=3</tt>, is normalized into {@link #EMPTY}, so callers can
+ * skip the query with {@link #isEmpty(Node)}. Translating it gives a predicate
+ * that is always false.
+ *
+ * Equalities are only merged when it does not change the meaning of the
+ * filter: strings are compared with a case-insensitive like, null arguments
+ * become "is null" and each comparison on a collection has its own join, so
+ * those are kept apart. Operators with a registered handler are never merged.
+ *
+ * A normalizer is immutable and can be shared between threads.
+ *
+ * @author AntonioRabelo
+ *
+ * @param <T> Entity type
+ */
+public class NodeNormalizer<T> {
+
+    /**
+     * Filter that matches nothing: a disjunction without children.
+     */
+    public static final Node EMPTY = new OrNode(Collections.<Node>emptyList());
+
+    private final Class<T> entityClass;
+
+    private final BuilderTools builderTools;
+
+    /**
+     * Construct a normalizer with the default tools.
+     *
+     * @param entityClass  Entity class of the filters.
+     */
+    public NodeNormalizer(Class<T> entityClass) {
+        this(entityClass, new SimpleBuilderTools());
+    }
+
+    /**
+     * Construct a normalizer with a frozen copy of the given tools, which must
+     * be the tools used for the translation.
+     *
+     * @param entityClass  Entity class of the filters.
+     * @param builderTools Tools to freeze, later changes on them are not seen.
+     */
+    public NodeNormalizer(Class<T> entityClass, BuilderTools builderTools) {
+        if (entityClass == null) {
+            throw new IllegalArgumentException("Entity class was undefined.");
+        }
+        this.entityClass = entityClass;
+        this.builderTools = ImmutableBuilderTools.of(builderTools);
+    }
+
+    /**
+     * Normalize an RSQL AST.
+     *
+     * @param node           RSQL AST node.
+     * @param entityManager  JPA EntityManager, used to resolve the selector types.
+     * @return               An equivalent node, the same one when nothing changed.
+     */
+    public Node normalize(Node node, EntityManager entityManager) {
+        if (node instanceof LogicalNode) {
+            return normalize((LogicalNode) node, entityManager);
+        }
+        if (node instanceof ComparisonNode) {
+            return normalize((ComparisonNode) node);
+        }
+        throw new IllegalArgumentException("Unknown expression type: " + node.getClass());
+    }
+
+    /**
+     * Verify if a normalized filter matches nothing.
+     *
+     * @param node  Normalized RSQL AST node.
+     * @return      <tt>true</tt> if the query can be skipped.
+     */
+    public static boolean isEmpty(Node node) {
+        return node instanceof OrNode && ((OrNode) node).getChildren().isEmpty();
+    }
+
+    private Node normalize(ComparisonNode comparison) {
+        if (!isSetOperator(comparison.getOperator())) {
+            return comparison;
+        }
+        Set<String> arguments = new LinkedHashSet<String>(comparison.getArguments());
+        if (arguments.size() == comparison.getArguments().size()) {
+            return comparison;
+        }
+        return new ComparisonNode(comparison.getOperator(), comparison.getSelector(), new ArrayList<String>(arguments));
+    }
+
+    private Node normalize(LogicalNode logical, EntityManager entityManager) {
+        LogicalOperator operator = logical.getOperator();
+        List<Node> children = new ArrayList<Node>();
+        for (Node child : logical.getChildren()) {
+            Node normalized = normalize(child, entityManager);
+            if (isEmpty(normalized)) {
+                if (operator == LogicalOperator.AND) {
+                    return EMPTY;
+                }
+            } else if (normalized instanceof LogicalNode && ((LogicalNode) normalized).getOperator() == operator) {
+                children.addAll(((LogicalNode) normalized).getChildren());
+            } else {
+                children.add(normalized);
+            }
+        }
+        if (children.isEmpty()) {
+            return EMPTY;
+        }
+
+        if (operator == LogicalOperator.OR) {
+            children = merge(children, RSQLOperators.EQUAL, RSQLOperators.IN, entityManager);
+        } else {
+            children = merge(children, RSQLOperators.NOT_EQUAL, RSQLOperators.NOT_IN, entityManager);
+            children = intersect(children, entityManager);
+            if (children == null) {
+                return EMPTY;
+            }
+        }
+
+        // remove duplicates and sort by fingerprint
+        Map<String, Node> unique = new LinkedHashMap<String, Node>();
+        for (Node child : children) {
+            String fingerprint = RSQLParserCache.fingerprint(child);
+            if (!unique.containsKey(fingerprint)) {
+                unique.put(fingerprint, child);
+            }
+        }
+        List<String> fingerprints = new ArrayList<String>(unique.keySet());
+        Collections.sort(fingerprints);
+        List<Node> sorted = new ArrayList<Node>(fingerprints.size());
+        for (String fingerprint : fingerprints) {
+            sorted.add(unique.get(fingerprint));
+        }
+
+        if (sorted.size() == 1) {
+            return sorted.get(0);
+        }
+        if (sorted.equals(logical.getChildren())) {
+            return logical;
+        }
+        return operator == LogicalOperator.AND ? new AndNode(sorted) : new OrNode(sorted);
+    }
+
+    /**
+     * Merge the single and multi-value comparisons on the same selector into
+     * one multi-value comparison, at the position of the first one.
+     */
+    private List<Node> merge(List<Node> children, ComparisonOperator single, ComparisonOperator multi, EntityManager entityManager) {
+        Map<String, List<ComparisonNode>> groups = new LinkedHashMap<String, List<ComparisonNode>>();
+        for (Node child : children) {
+            if (child instanceof ComparisonNode && isMergeable((ComparisonNode) child, single, multi, entityManager)) {
+                ComparisonNode comparison = (ComparisonNode) child;
+                List<ComparisonNode> group = groups.get(comparison.getSelector());
+                if (group == null) {
+                    group = new ArrayList<ComparisonNode>();
+                    groups.put(comparison.getSelector(), group);
+                }
+                group.add(comparison);
+            }
+        }
+
+        List<Node> merged = new ArrayList<Node>(children.size());
+        for (Node child : children) {
+            List<ComparisonNode> group = (child instanceof ComparisonNode) ? groups.get(((ComparisonNode) child).getSelector()) : null;
+            if (group == null || !group.contains(child) || group.size() == 1) {
+                merged.add(child);
+            } else if (group.get(0) == child) {
+                Set<String> arguments = new LinkedHashSet<String>();
+                for (ComparisonNode comparison : group) {
+                    arguments.addAll(comparison.getArguments());
+                }
+                merged.add(new ComparisonNode(multi, ((ComparisonNode) child).getSelector(), new ArrayList<String>(arguments)));
+            }
+        }
+        return merged;
+    }
+
+    private boolean isMergeable(ComparisonNode comparison, ComparisonOperator single, ComparisonOperator multi, EntityManager entityManager) {
+        if (!comparison.getOperator().equals(single) && !comparison.getOperator().equals(multi)) {
+            return false;
+        }
+        Resolved resolved = resolve(comparison, entityManager);
+        return resolved != null && !resolved.values.contains(null)
+                && resolved.isBuiltIn(single, builderTools) && resolved.isBuiltIn(multi, builderTools);
+    }
+
+    /**
+     * Intersect the equalities, IN lists and bounds of each selector of an AND
+     * group.
+     *
+     * @return The new children, or <tt>null</tt> if the group matches nothing.
+     */
+    private List<Node> intersect(List<Node> children, EntityManager entityManager) {
+        Map<String, Interval> intervals = new LinkedHashMap<String, Interval>();
+        for (Node child : children) {
+            if (!(child instanceof ComparisonNode) || !isRangeOperator(((ComparisonNode) child).getOperator())) {
+                continue;
+            }
+            ComparisonNode comparison = (ComparisonNode) child;
+            Resolved resolved = resolve(comparison, entityManager);
+            if (resolved == null || !resolved.isBuiltIn(comparison.getOperator(), builderTools) || !isComparable(comparison, resolved.values)) {
+                continue;
+            }
+            Interval interval = intervals.get(comparison.getSelector());
+            if (interval == null) {
+                interval = new Interval(resolved.plan.getJavaType());
+                intervals.put(comparison.getSelector(), interval);
+            }
+            interval.add(comparison, resolved.values);
+        }
+
+        List<Node> intersected = new ArrayList<Node>(children.size());
+        for (Node child : children) {
+            Interval interval = (child instanceof ComparisonNode) ? intervals.get(((ComparisonNode) child).getSelector()) : null;
+            if (interval == null || !interval.contains(child)) {
+                intersected.add(child);
+            } else if (interval.isFirst(child)) {
+                List<ComparisonNode> nodes = interval.toNodes(builderTools);
+                if (nodes == null) {
+                    return null;
+                }
+                intersected.addAll(nodes);
+            }
+        }
+        return intersected;
+    }
+
+    /**
+     * Resolve the selector and arguments of a comparison that can be rewritten.
+     *
+     * @return The resolution, or <tt>null</tt> for strings, collections and
+     *         invalid arguments, which are left to the translation.
+     */
+    private Resolved resolve(ComparisonNode comparison, EntityManager entityManager) {
+        SelectorPlan plan;
+        List<Object> values;
+        try {
+            plan = PredicateBuilder.findSelectorPlan(comparison.getSelector(), entityClass, entityManager, builderTools);
+            values = builderTools.getArgumentParser().parse(comparison.getArguments(), (Class) plan.getJavaType());
+        } catch (ArgumentFormatException e) {
+            // reported by the translation
+            return null;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+        if (plan.getJavaType().equals(String.class)) {
+            return null;
+        }
+        for (SelectorPlan.Step step : plan.getSteps()) {
+            if (step.isCollection()) {
+                return null;
+            }
+        }
+        return new Resolved(plan, values);
+    }
+
+    private static boolean isRangeOperator(ComparisonOperator operator) {
+        return ComparisonOperatorProxy.asEnum(operator) != null;
+    }
+
+    /**
+     * Verify if the values of a comparison can be intersected: equalities need
+     * values that are not null (except a single null), bounds need values that
+     * are ordered the same way in Java and in the database.
+     */
+    private static boolean isComparable(ComparisonNode comparison, List<Object> values) {
+        ComparisonOperatorProxy proxy = ComparisonOperatorProxy.asEnum(comparison.getOperator());
+        if (proxy == ComparisonOperatorProxy.EQUAL && values.get(0) == null) {
+            return true;
+        }
+        if (proxy == ComparisonOperatorProxy.NOT_EQUAL || proxy == ComparisonOperatorProxy.NOT_IN) {
+            return !values.contains(null);
+        }
+        for (Object value : values) {
+            if (!(value instanceof Comparable)) {
+                return false;
+            }
+            if ((value instanceof Double && ((Double) value).isNaN()) || (value instanceof Float && ((Float) value).isNaN())) {
+                return false;
+            }
+            if (proxy != ComparisonOperatorProxy.EQUAL && proxy != ComparisonOperatorProxy.IN
+                    && !(value instanceof Number || value instanceof Date || value instanceof Temporal)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isSetOperator(ComparisonOperator operator) {
+        return RSQLOperators.IN.equals(operator) || RSQLOperators.NOT_IN.equals(operator);
+    }
+
+    /**
+     * Resolved selector and arguments of a comparison.
+     */
+    private static final class Resolved {
+
+        private final SelectorPlan plan;
+        private final List<Object> values;
+
+        Resolved(SelectorPlan plan, List<Object> values) {
+            this.plan = plan;
+            this.values = values;
+        }
+
+        boolean isBuiltIn(ComparisonOperator operator, BuilderTools tools) {
+            return PredicateBuilder.isBuiltIn(operator, plan.getJavaType(), tools);
+        }
+    }
+
+    /**
+     * Constraints of an AND group on one selector.
+     *
+     * Dates follow the translation of the PredicateBuilder, where a strict
+     * bound is an inclusive bound shifted by one day.
+     */
+    private static final class Interval {
+
+        private final Class<?> type;
+        private final List<ComparisonNode> nodes = new ArrayList<ComparisonNode>();
+        private final List<ComparisonNode> excluded = new ArrayList<ComparisonNode>();
+        private final List<Object> excludedValues = new ArrayList<Object>();
+
+        private String selector;
+        private boolean isNull;
+        private List<Object> allowed;
+        private List<String> allowedArguments;
+        private Bound lower;
+        private Bound upper;
+
+        Interval(Class<?> type) {
+            this.type = type;
+        }
+
+        boolean contains(Node node) {
+            return nodes.contains(node);
+        }
+
+        boolean isFirst(Node node) {
+            return nodes.get(0) == node;
+        }
+
+        void add(ComparisonNode comparison, List<Object> values) {
+            nodes.add(comparison);
+            selector = comparison.getSelector();
+            switch (ComparisonOperatorProxy.asEnum(comparison.getOperator())) {
+                case EQUAL :
+                case IN :
+                    restrict(comparison.getArguments(), values);
+                    break;
+                case NOT_EQUAL :
+                case NOT_IN :
+                    excluded.add(comparison);
+                    excludedValues.addAll(values);
+                    break;
+                case GREATER_THAN :
+                    lower = tighter(lower, bound(comparison, values.get(0), false, 1), true);
+                    break;
+                case GREATER_THAN_OR_EQUAL :
+                    lower = tighter(lower, bound(comparison, values.get(0), true, 0), true);
+                    break;
+                case LESS_THAN :
+                    upper = tighter(upper, bound(comparison, values.get(0), false, -1), false);
+                    break;
+                case LESS_THAN_OR_EQUAL :
+                    upper = tighter(upper, bound(comparison, values.get(0), true, 0), false);
+                    break;
+                case BETWEEN :
+                    lower = tighter(lower, new Bound(values.get(0), true, comparison.getArguments().get(0), null), true);
+                    upper = tighter(upper, new Bound(values.get(1), true, comparison.getArguments().get(1), null), false);
+                    break;
+                default :
+                    throw new IllegalArgumentException("Unknown operator: " + comparison.getOperator());
+            }
+        }
+
+        /**
+         * Build the nodes of the intersection.
+         *
+         * @return The nodes, or <tt>null</tt> if nothing matches.
+         */
+        List<ComparisonNode> toNodes(BuilderTools tools) {
+            List<ComparisonNode> result = new ArrayList<ComparisonNode>();
+            if (isNull) {
+                if (allowed != null || lower != null || upper != null || !excluded.isEmpty()) {
+                    return null;
+                }
+                result.add(new ComparisonNode(RSQLOperators.EQUAL, selector, Collections.singletonList("null")));
+                return result;
+            }
+            if (lower != null && upper != null && !lower.isBelow(upper)) {
+                return null;
+            }
+            if (allowed != null) {
+                List<String> arguments = new ArrayList<String>();
+                for (int i = 0; i < allowed.size(); i++) {
+                    if (lower != null && !lower.accepts(allowed.get(i), true)) continue;
+                    if (upper != null && !upper.accepts(allowed.get(i), false)) continue;
+                    if (indexOf(excludedValues, allowed.get(i)) >= 0) continue;
+                    arguments.add(allowedArguments.get(i));
+                }
+                if (arguments.isEmpty()) {
+                    return null;
+                }
+                result.add(new ComparisonNode(arguments.size() == 1 ? RSQLOperators.EQUAL : RSQLOperators.IN, selector, arguments));
+                return result;
+            }
+            if (lower != null && upper != null && lower.inclusive && upper.inclusive && lower.argument != null && upper.argument != null
+                    && PredicateBuilder.isBuiltIn(ComparisonOperatorProxy.BETWEEN.getOperator(), type, tools)) {
+                result.add(new ComparisonNode(ComparisonOperatorProxy.BETWEEN.getOperator(), selector, Arrays.asList(lower.argument, upper.argument)));
+                return result;
+            }
+            if (lower != null) result.add(lower.toNode(selector, true));
+            if (upper != null) result.add(upper.toNode(selector, false));
+            // exclusions are only absorbed by a list of allowed values
+            result.addAll(excluded);
+            return result;
+        }
+
+        private void restrict(List<String> arguments, List<Object> values) {
+            if (values.get(0) == null) {
+                isNull = true;
+                return;
+            }
+            if (allowed == null) {
+                allowed = new ArrayList<Object>();
+                allowedArguments = new ArrayList<String>();
+                for (int i = 0; i < values.size(); i++) {
+                    if (indexOf(allowed, values.get(i)) < 0) {
+                        allowed.add(values.get(i));
+                        allowedArguments.add(arguments.get(i));
+                    }
+                }
+                return;
+            }
+            for (int i = allowed.size() - 1; i >= 0; i--) {
+                if (indexOf(values, allowed.get(i)) < 0) {
+                    allowed.remove(i);
+                    allowedArguments.remove(i);
+                }
+            }
+        }
+
+        private Bound bound(ComparisonNode comparison, Object value, boolean inclusive, int days) {
+            String argument = comparison.getArguments().get(0);
+            if (value instanceof Date) {
+                // the translation turns strict date bounds into shifted inclusive ones
+                return new Bound(inclusive ? value : PredicateBuilder.modifyDate(value, days), true, inclusive ? argument : null, comparison);
+            }
+            if (!inclusive) {
+                // a strict bound on an integral type is the next inclusive one
+                Object next = next(value, days);
+                if (next != null) {
+                    return new Bound(next, true, next.toString(), null);
+                }
+            }
+            return new Bound(value, inclusive, inclusive ? argument : null, comparison);
+        }
+
+        private static Object next(Object value, int direction) {
+            if (value instanceof Integer) {
+                int i = (Integer) value;
+                return (direction > 0 ? i == Integer.MAX_VALUE : i == Integer.MIN_VALUE) ? null : Integer.valueOf(i + direction);
+            }
+            if (value instanceof Long) {
+                long l = (Long) value;
+                return (direction > 0 ? l == Long.MAX_VALUE : l == Long.MIN_VALUE) ? null : Long.valueOf(l + direction);
+            }
+            if (value instanceof BigInteger) {
+                return ((BigInteger) value).add(BigInteger.valueOf(direction));
+            }
+            return null;
+        }
+
+        private static Bound tighter(Bound current, Bound candidate, boolean lower) {
+            if (current == null) {
+                return candidate;
+            }
+            int order = compare(candidate.value, current.value);
+            if (order == 0) {
+                return candidate.inclusive ? current : candidate;
+            }
+            return (lower ? order > 0 : order < 0) ? candidate : current;
+        }
+
+        private static int indexOf(List<Object> values, Object value) {
+            for (int i = 0; i < values.size(); i++) {
+                if (values.get(i) != null && compare(values.get(i), value) == 0) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        @SuppressWarnings({ "unchecked", "rawtypes" })
+        private static int compare(Object a, Object b) {
+            return ((Comparable) a).compareTo(b);
+        }
+    }
+
+    /**
+     * Lower or upper bound with the argument and node it came from. The
+     * argument is <tt>null</tt> when the bound is not inclusive, since it
+     * cannot be used in a between.
+     */
+    private static final class Bound {
+
+        private final Object value;
+        private final boolean inclusive;
+        private final String argument;
+        private final ComparisonNode node;
+
+        Bound(Object value, boolean inclusive, String argument, ComparisonNode node) {
+            this.value = value;
+            this.inclusive = inclusive;
+            this.argument = argument;
+            this.node = node;
+        }
+
+        boolean accepts(Object candidate, boolean lower) {
+            int order = Interval.compare(candidate, value);
+            return inclusive ? (lower ? order >= 0 : order <= 0) : (lower ? order > 0 : order < 0);
+        }
+
+        boolean isBelow(Bound upper) {
+            int order = Interval.compare(value, upper.value);
+            return order < 0 || (order == 0 && inclusive && upper.inclusive);
+        }
+
+        ComparisonNode toNode(String selector, boolean lower) {
+            if (node != null) {
+                return node;
+            }
+            ComparisonOperator operator = lower ? RSQLOperators.GREATER_THAN_OR_EQUAL : RSQLOperators.LESS_THAN_OR_EQUAL;
+            return new ComparisonNode(operator, selector, Collections.singletonList(argument));
+        }
+    }
+}
@@ -0,0 +1,59 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2013 Jakub Jirutka <jakub@jirutka.cz>.
+ * Copyright 2015 Antonio Rabelo.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.tennaito.rsql.jpa;
+
+import java.util.List;
+
+import javax.persistence.EntityManager;
+import javax.persistence.criteria.Path;
+import javax.persistence.criteria.Predicate;
+
+import com.github.tennaito.rsql.builder.BuilderTools;
+
+import cz.jirutka.rsql.parser.ast.ComparisonNode;
+
+/**
+ * OperatorHandler
+ *
+ * Creates the predicate of one comparison operator, registered on the
+ * {@link OperatorRegistry} for all attribute types or for one of them.
+ *
+ * @author AntonioRabelo
+ */
+public interface OperatorHandler {
+
+    /**
+     * Create a Predicate for a comparison.
+     *
+     * @param comparison  RSQL AST comparison node.
+     * @param path        Resolved property path of the selector.
+     * @param arguments   Arguments already cast to the attribute type.
+     * @param manager     JPA EntityManager.
+     * @param tools       Builder tools facade.
+     * @return            Predicate a predicate representation of the comparison.
+     * @throws IllegalArgumentException When illegal arguments are found.
+     */
+    public Predicate createPredicate(ComparisonNode comparison, Path<?> path, List<Object> arguments, EntityManager manager, BuilderTools tools) throws IllegalArgumentException;
+}
@@ -0,0 +1,188 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2013 Jakub Jirutka <jakub@jirutka.cz>.
+ * Copyright 2015 Antonio Rabelo.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.tennaito.rsql.jpa;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.persistence.EntityManager;
+import javax.persistence.criteria.Path;
+import javax.persistence.criteria.Predicate;
+
+import com.github.tennaito.rsql.builder.BuilderTools;
+import com.github.tennaito.rsql.parser.ast.ComparisonOperatorProxy;
+
+import cz.jirutka.rsql.parser.ast.ComparisonNode;
+import cz.jirutka.rsql.parser.ast.ComparisonOperator;
+
+/**
+ * OperatorRegistry
+ *
+ * Thread-safe registry of the handlers of comparison operators. A handler is
+ * resolved once for each pair of operator and attribute java type, looking
+ * for a handler registered for that type, then for all types and finally
+ * for the built-in operators.
+ *
+ * New operators are registered here instead of being discovered when the
+ * built-in operators fail.
+ *
+ * @author AntonioRabelo
+ */
+public class OperatorRegistry {
+
+    private final boolean frozen;
+
+    private final ConcurrentMap<Key, OperatorHandler> registered = new ConcurrentHashMap<Key, OperatorHandler>();
+
+    private final ConcurrentMap<Key, OperatorHandler> resolved = new ConcurrentHashMap<Key, OperatorHandler>();
+
+    /**
+     * Construct an empty registry.
+     */
+    public OperatorRegistry() {
+        this.frozen = false;
+    }
+
+    private OperatorRegistry(OperatorRegistry registry) {
+        this.frozen = true;
+        this.registered.putAll(registry.registered);
+    }
+
+    /**
+     * Copy the registered handlers into a registry that rejects new handlers.
+     *
+     * @return A frozen copy of this registry.
+     */
+    public OperatorRegistry frozenCopy() {
+        return frozen ? this : new OperatorRegistry(this);
+    }
+
+    /**
+     * Register the handler of an operator for all attribute types.
+     *
+     * @param operator  Comparison operator.
+     * @param handler   Handler of the operator.
+     */
+    public void register(ComparisonOperator operator, OperatorHandler handler) {
+        register(operator, null, handler);
+    }
+
+    /**
+     * Register the handler of an operator for one attribute type.
+     *
+     * @param operator  Comparison operator.
+     * @param type      Attribute java type, null for all types.
+     * @param handler   Handler of the operator.
+     */
+    public void register(ComparisonOperator operator, Class<?> type, OperatorHandler handler) {
+        if (operator == null || handler == null) {
+            throw new IllegalArgumentException("Operator and handler must be defined.");
+        }
+        if (frozen) {
+            throw new UnsupportedOperationException("Operator registry is frozen.");
+        }
+        registered.put(new Key(operator, type), handler);
+        resolved.clear();
+    }
+
+    /**
+     * Get the handler of an operator.
+     *
+     * @param operator  Comparison operator.
+     * @param type      Attribute java type.
+     * @return          The handler or <tt>null</tt> when the operator is unknown.
+     */
+    public OperatorHandler resolve(ComparisonOperator operator, Class<?> type) {
+        Key key = new Key(operator, type);
+        OperatorHandler handler = resolved.get(key);
+        if (handler == null) {
+            handler = registered.get(key);
+            if (handler == null) {
+                handler = registered.get(new Key(operator, null));
+            }
+            if (handler == null) {
+                ComparisonOperatorProxy proxy = ComparisonOperatorProxy.asEnum(operator);
+                if (proxy == null) {
+                    return null;
+                }
+                handler = new BuiltInHandler(proxy);
+            }
+            resolved.putIfAbsent(key, handler);
+        }
+        return handler;
+    }
+
+    /**
+     * Verify if the built-in handler of an operator is used for a type.
+     *
+     * @param operator  Comparison operator.
+     * @param type      Attribute java type.
+     * @return          <tt>true</tt> if the predicate is created by this library.
+     */
+    public boolean isBuiltIn(ComparisonOperator operator, Class<?> type) {
+        return resolve(operator, type) instanceof BuiltInHandler;
+    }
+
+    /**
+     * Handler of the default RSQL operators.
+     */
+    private static final class BuiltInHandler implements OperatorHandler {
+
+        private final ComparisonOperatorProxy operator;
+
+        BuiltInHandler(ComparisonOperatorProxy operator) {
+            this.operator = operator;
+        }
+
+        public Predicate createPredicate(ComparisonNode comparison, Path<?> path, List<Object> arguments, EntityManager manager, BuilderTools tools) {
+            return PredicateBuilder.createPredicate(path, operator, arguments, manager, tools);
+        }
+    }
+
+    private static final class Key {
+
+        private final ComparisonOperator operator;
+        private final Class<?> type;
+
+        Key(ComparisonOperator operator, Class<?> type) {
+            this.operator = operator;
+            this.type = type;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * operator.hashCode() + (type == null ? 0 : type.hashCode());
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) return true;
+            if (!(obj instanceof Key)) return false;
+            Key other = (Key) obj;
+            return operator.equals(other.operator) && (type == null ? other.type == null : type.equals(other.type));
+        }
+    }
+}
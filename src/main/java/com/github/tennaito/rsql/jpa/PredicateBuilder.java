@@ -25,6 +25,7 @@
 package com.github.tennaito.rsql.jpa;
 
 import com.github.tennaito.rsql.builder.BuilderTools;
+import com.github.tennaito.rsql.misc.Mapper;
 import com.github.tennaito.rsql.parser.ast.ComparisonOperatorProxy;
 import cz.jirutka.rsql.parser.ast.ComparisonNode;
 import cz.jirutka.rsql.parser.ast.ComparisonOperator;
@@ -32,10 +33,10 @@ import cz.jirutka.rsql.parser.ast.LogicalNode;
 import cz.jirutka.rsql.parser.ast.Node;
 
 import javax.persistence.EntityManager;
+import javax.persistence.criteria.AbstractQuery;
 import javax.persistence.criteria.CriteriaBuilder;
 import javax.persistence.criteria.Expression;
 import javax.persistence.criteria.From;
-import javax.persistence.criteria.Join;
 import javax.persistence.criteria.Path;
 import javax.persistence.criteria.Predicate;
 import javax.persistence.metamodel.Attribute;
@@ -68,8 +69,12 @@ public final class PredicateBuilder {
 
     public static final Character LIKE_WILDCARD = '*';
 
-    private static final Date START_DATE;
-    private static final Date END_DATE;
+    private static final InListStrategy DEFAULT_IN_LIST_STRATEGY = new DefaultInListStrategy();
+
+    private static final CaseSensitivityPolicy DEFAULT_CASE_SENSITIVITY_POLICY = new CaseSensitivityPolicy();
+
+    static final Date START_DATE;
+    static final Date END_DATE;
 
     static {
         //
@@ -100,21 +105,53 @@ public final class PredicateBuilder {
      * @return 			Predicate a predicate representation of the Node.
      */
     public static <T> Predicate createPredicate(Node node, From root, Class<T> entity, EntityManager manager, BuilderTools misc) {
-        LOG.log(Level.INFO, "Creating Predicate for: {0}", node);
+        return createPredicate(node, root, entity, manager, misc, null);
+    }
+
+    private static <T> Predicate createPredicate(Node node, From root, Class<T> entity, EntityManager manager, BuilderTools misc, JoinScope scope) {
+        LOG.log(Level.FINE, "Creating Predicate for: {0}", node);
 
         if (node instanceof LogicalNode) {
-            return createPredicate((LogicalNode)node, root, entity, manager, misc);
+            return createPredicate((LogicalNode)node, root, entity, manager, misc, scope);
         }
         
         if (node instanceof ComparisonNode) {
-            return createPredicate((ComparisonNode)node, root, entity, manager, misc);
+            return createPredicate((ComparisonNode)node, root, root, 0, entity, manager, misc, scope);
         }
 
         throw new IllegalArgumentException("Unknown expression type: " + node.getClass());
     }
 
     /**
-     * Create a Predicate from the RSQL AST logical node.
+     * Create a Predicate from the RSQL AST node, as the where clause of a query.
+     *
+     * When the collection filter mode of the tools is
+     * {@link CollectionFilterMode#EXISTS}, comparisons on collections become
+     * <tt>exists</tt> subqueries of the query instead of joins.
+     *
+     * @param node      RSQL AST node.
+     * @param root      From that predicate expression paths depends on.
+     * @param entity    The main entity of the query.
+     * @param query     Query of the predicate, <tt>null</tt> to always join the collections.
+     * @param manager   JPA EntityManager.
+     * @param misc      Facade with all necessary tools for predicate creation.
+     * @return 			Predicate a predicate representation of the Node.
+     */
+    public static <T> Predicate createPredicate(Node node, From root, final Class<T> entity, AbstractQuery<?> query, final EntityManager manager, final BuilderTools misc) {
+        if (query == null || !ExistsSubqueries.isEnabled(misc)) {
+            return createPredicate(node, root, entity, manager, misc);
+        }
+        LOG.log(Level.FINE, "Creating Predicate with exists subqueries for: {0}", node);
+        return ExistsSubqueries.createPredicate(node, root, query, manager, misc, listenerOf(misc), new ExistsSubqueries.ComparisonCompiler() {
+            public Predicate compile(ComparisonNode comparison, SelectorPlan plan, From<?, ?> startRoot, From<?, ?> pathRoot, int firstStep) {
+                return createPredicate(comparison, startRoot, pathRoot, firstStep, entity, manager, misc);
+            }
+        });
+    }
+
+    /**
+     * Create a Predicate from the RSQL AST logical node. The comparisons of
+     * an OR node share their collection joins, see {@link JoinScope}.
      *
      * @param logical        RSQL AST logical node.
      * @param root           From that predicate expression paths depends on. 
@@ -124,23 +161,33 @@ public final class PredicateBuilder {
      * @return 				 Predicate a predicate representation of the Node.
      */
     public static <T> Predicate createPredicate(LogicalNode logical, From root, Class<T> entity, EntityManager entityManager, BuilderTools misc) {
-        LOG.log(Level.INFO, "Creating Predicate for logical node: {0}", logical);
+        return createPredicate(logical, root, entity, entityManager, misc, null);
+    }
+
+    private static <T> Predicate createPredicate(LogicalNode logical, From root, Class<T> entity, EntityManager entityManager, BuilderTools misc, JoinScope scope) {
+        LOG.log(Level.FINE, "Creating Predicate for logical node: {0}", logical);
+        TranslationListener listener = listenerOf(misc);
+        listener.nodeEntered(logical);
 
     	CriteriaBuilder builder = entityManager.getCriteriaBuilder();
 
     	List<Predicate> predicates = new ArrayList<Predicate>();
 
-    	LOG.log(Level.INFO, "Creating Predicates from all children nodes.");
+    	LOG.log(Level.FINE, "Creating Predicates from all children nodes.");
+    	JoinScope childScope = JoinScope.of(logical, scope);
     	for (Node node : logical.getChildren()) {
-    		predicates.add(createPredicate(node, root, entity, entityManager, misc));
+    		predicates.add(createPredicate(node, root, entity, entityManager, misc, childScope));
 		}
 
+        Predicate predicate;
         switch (logical.getOperator()) {
-            case AND : return builder.and(predicates.toArray(new Predicate[predicates.size()]));
-            case OR : return builder.or(predicates.toArray(new Predicate[predicates.size()]));
+            case AND : predicate = builder.and(predicates.toArray(new Predicate[predicates.size()])); break;
+            case OR : predicate = builder.or(predicates.toArray(new Predicate[predicates.size()])); break;
+            default : throw new IllegalArgumentException("Unknown operator: " + logical.getOperator());
         }
 
-        throw new IllegalArgumentException("Unknown operator: " + logical.getOperator());
+        listener.predicateCreated(logical, predicate);
+        return predicate;
     }
 
     /**
@@ -154,30 +201,82 @@ public final class PredicateBuilder {
      * @return 				 Predicate a predicate representation of the Node.
      */
     public static <T> Predicate createPredicate(ComparisonNode comparison, From startRoot, Class<T> entity, EntityManager entityManager, BuilderTools misc) {
+    	return createPredicate(comparison, startRoot, startRoot, 0, entity, entityManager, misc);
+    }
+
+    /**
+     * Create a Predicate from the RSQL AST comparison node, replaying the
+     * selector from a given step, such as inside an <tt>exists</tt> subquery.
+     *
+     * @param comparison	 RSQL AST comparison node.
+     * @param startRoot      From of the entity the selector depends on.
+     * @param pathRoot       From the remaining steps are replayed against.
+     * @param firstStep      Index of the first step to replay.
+     * @param entity  		 The main entity of the query.
+     * @param entityManager  JPA EntityManager.
+     * @param misc      	 Facade with all necessary tools for predicate creation.
+     * @return 				 Predicate a predicate representation of the Node.
+     */
+    static <T> Predicate createPredicate(ComparisonNode comparison, From startRoot, From pathRoot, int firstStep, Class<T> entity, EntityManager entityManager, BuilderTools misc) {
+    	return createPredicate(comparison, startRoot, pathRoot, firstStep, entity, entityManager, misc, null);
+    }
+
+    /**
+     * Create a Predicate from the RSQL AST comparison node, sharing the
+     * collection joins of a scope.
+     *
+     * @param comparison	 RSQL AST comparison node.
+     * @param startRoot      From of the entity the selector depends on.
+     * @param pathRoot       From the remaining steps are replayed against.
+     * @param firstStep      Index of the first step to replay.
+     * @param entity  		 The main entity of the query.
+     * @param entityManager  JPA EntityManager.
+     * @param misc      	 Facade with all necessary tools for predicate creation.
+     * @param scope          Scope of the shared collection joins, may be <tt>null</tt>.
+     * @return 				 Predicate a predicate representation of the Node.
+     */
+    static <T> Predicate createPredicate(ComparisonNode comparison, From startRoot, From pathRoot, int firstStep, Class<T> entity, EntityManager entityManager, BuilderTools misc, JoinScope scope) {
     	if (startRoot == null) {
     		String msg = "From root node was undefined.";
     		LOG.log(Level.SEVERE, msg);
     		throw new IllegalArgumentException(msg);
     	}
-    	LOG.log(Level.INFO, "Creating Predicate for comparison node: {0}", comparison);
+    	LOG.log(Level.FINE, "Creating Predicate for comparison node: {0}", comparison);
+    	TranslationListener listener = listenerOf(misc);
+    	listener.nodeEntered(comparison);
 
-        LOG.log(Level.INFO, "Property graph path : {0}", comparison.getSelector());
-        Expression propertyPath = findPropertyPath(comparison.getSelector(), startRoot, entityManager, misc);
+        LOG.log(Level.FINE, "Property graph path : {0}", comparison.getSelector());
+        SelectorPlan plan = findSelectorPlan(comparison.getSelector(), startRoot.getJavaType(), entityManager, misc);
 
-		LOG.log(Level.INFO, "Cast all arguments to type {0}.", propertyPath.getJavaType().getName());
-    	List<Object> castedArguments = misc.getArgumentParser().parse(comparison.getArguments(), propertyPath.getJavaType());
+		if (LOG.isLoggable(Level.FINE)) {
+			LOG.log(Level.FINE, "Cast all arguments to type {0}.", plan.getJavaType().getName());
+		}
+    	List<Object> castedArguments = misc.getArgumentParser().parse(comparison.getArguments(), (Class) plan.getJavaType());
+    	if (listener != TranslationListenerAdapter.NONE) {
+    		for (int i = 0; i < castedArguments.size(); i++) {
+    			listener.argumentParsed(comparison.getArguments().get(i), castedArguments.get(i));
+    		}
+    	}
 
-    	try {
-    		// try to create a predicate
-    		return PredicateBuilder.createPredicate(propertyPath, comparison.getOperator(), castedArguments, entityManager);
-    	} catch (IllegalArgumentException e) {
-    		// if operator dont exist try to delegate
-            if (misc.getPredicateBuilder() != null) {
-            	return misc.getPredicateBuilder().createPredicate(comparison, startRoot, entity, entityManager, misc);
+    	// joins are only created once the arguments are known to be valid
+    	Path<?> propertyPath = plan.replay(pathRoot, firstStep, scope);
+    	listener.pathResolved(comparison.getSelector(), propertyPath);
+
+    	Predicate predicate;
+    	OperatorHandler handler = resolveHandler(comparison.getOperator(), plan.getJavaType(), misc);
+    	if (handler == null) {
+    		// operators that are not registered are delegated to the strategy
+            if (misc.getPredicateBuilder() == null) {
+                // if no strategy was defined then there are no more operators.
+                throw new IllegalArgumentException("Unknown operator: " + comparison.getOperator());
             }
-            // if no strategy was defined then there are no more operators.
-            throw e;
+            predicate = misc.getPredicateBuilder().createPredicate(comparison, startRoot, entity, entityManager, misc);
+    	} else {
+    		predicate = handler.createPredicate(comparison, propertyPath, castedArguments, entityManager, misc);
     	}
+
+    	listener.predicateCreated(comparison, predicate);
+    	return predicate;
     }
 
     /**
@@ -191,46 +290,97 @@ public final class PredicateBuilder {
      * @throws               IllegalArgumentException if attribute of the given property name does not exist
      */
     public static <T> Path<?> findPropertyPath(String propertyPath, Path startRoot, EntityManager entityManager,  BuilderTools misc) {
-        String[] graph = propertyPath.split("\\.");
+        SelectorPlan plan = findSelectorPlan(propertyPath, startRoot.getJavaType(), entityManager, misc);
+        return plan.replay(startRoot);
+    }
 
+    /**
+     * Find the resolved plan of a selector, compiling it out of the metamodel
+     * on the first usage and taking it from the selector plan cache afterwards.
+     *
+     * @param selector       The property path to find.
+     * @param entityClass    Entity class that property path depends on.
+     * @param entityManager  JPA EntityManager.
+     * @param misc           Facade with all necessary tools for predicate creation.
+     * @return               The resolved selector plan.
+     * @throws               IllegalArgumentException if attribute of the given property name does not exist
+     */
+    public static SelectorPlan findSelectorPlan(String selector, Class<?> entityClass, EntityManager entityManager, BuilderTools misc) {
         Metamodel metaModel = entityManager.getMetamodel();
-        ManagedType<?> classMetadata = metaModel.managedType(startRoot.getJavaType());
-
-        Path<?> root = startRoot;
+        Mapper mapper = misc.getPropertiesMapper();
+        SelectorPlanCache cache = misc.getSelectorPlanCache();
+
+        SelectorPlan plan = cache.get(metaModel, entityClass, selector, mapper);
+        if (plan == null) {
+            List<SelectorPlan.Step> steps = new ArrayList<SelectorPlan.Step>();
+            compileSteps(selector, metaModel.managedType(entityClass), metaModel, mapper, steps);
+            plan = new SelectorPlan(entityClass, selector, steps);
+            cache.put(metaModel, mapper, plan);
+        }
+        return plan;
+    }
 
-        for (String property : graph) {
-            String mappedProperty = misc.getPropertiesMapper().translate(property, classMetadata.getJavaType());
+    /**
+     * Resolve the steps of a property path through the metamodel.
+     *
+     * @param propertyPath   The property path to resolve.
+     * @param classMetadata  Metamodel of the class the path starts from.
+     * @param metaModel      Metamodel.
+     * @param mapper         Properties mapper.
+     * @param steps          Resolved steps, appended in navigation order.
+     * @return               Metamodel of the class reached by the last step.
+     */
+    private static ManagedType<?> compileSteps(String propertyPath, ManagedType<?> classMetadata, Metamodel metaModel, Mapper mapper, List<SelectorPlan.Step> steps) {
+        for (String property : splitPath(propertyPath)) {
+            String mappedProperty = mapper.translate(property, classMetadata.getJavaType());
             if( !mappedProperty.equals( property) ) {
-                root = findPropertyPath( mappedProperty, root, entityManager, misc );
+                classMetadata = compileSteps( mappedProperty, classMetadata, metaModel, mapper, steps );
             } else {
                 if (!hasPropertyName(mappedProperty, classMetadata)) {
                     throw new IllegalArgumentException("Unknown property: " + mappedProperty + " from entity " + classMetadata.getJavaType().getName());
                 }
 
-                if (isAssociationType(mappedProperty, classMetadata)) {
+                Attribute<?, ?> attribute = classMetadata.getAttribute(mappedProperty);
+                if (attribute.isAssociation()) {
                     Class<?> associationType = findPropertyType(mappedProperty, classMetadata);
-                    String previousClass = classMetadata.getJavaType().getName();
-                    classMetadata = metaModel.managedType(associationType);
-                    LOG.log(Level.INFO, "Create a join between {0} and {1}.", new Object[]{previousClass, classMetadata.getJavaType().getName()});
-
-                    if (root instanceof Join) {
-                        root = root.get(mappedProperty);
-                    } else {
-                        root = ((From) root).join(mappedProperty);
+                    if (LOG.isLoggable(Level.FINE)) {
+                        LOG.log(Level.FINE, "Create a join between {0} and {1}.", new Object[]{classMetadata.getJavaType().getName(), associationType.getName()});
                     }
+                    steps.add(new SelectorPlan.Step(mappedProperty, SelectorPlan.Kind.ASSOCIATION, associationType, attribute.isCollection()));
+                    classMetadata = metaModel.managedType(associationType);
                 } else {
-                    LOG.log(Level.INFO, "Create property path for type {0} property {1}.", new Object[]{classMetadata.getJavaType().getName(), mappedProperty});
-                    root = root.get(mappedProperty);
-
+                    if (LOG.isLoggable(Level.FINE)) {
+                        LOG.log(Level.FINE, "Create property path for type {0} property {1}.", new Object[]{classMetadata.getJavaType().getName(), mappedProperty});
+                    }
+                    Class<?> propertyType = findPropertyType(mappedProperty, classMetadata);
                     if (isEmbeddedType(mappedProperty, classMetadata)) {
-                        Class<?> embeddedType = findPropertyType(mappedProperty, classMetadata);
-                        classMetadata = metaModel.managedType(embeddedType);
+                        steps.add(new SelectorPlan.Step(mappedProperty, SelectorPlan.Kind.EMBEDDED, propertyType, false));
+                        classMetadata = metaModel.managedType(propertyType);
+                    } else {
+                        steps.add(new SelectorPlan.Step(mappedProperty, SelectorPlan.Kind.BASIC, propertyType, attribute.isCollection()));
                     }
                 }
             }
         }
+        return classMetadata;
+    }
 
-        return root;
+    /**
+     * Split a dot-separated property path without using regular expressions.
+     *
+     * @param propertyPath  Dot-separated property path.
+     * @return              The path segments.
+     */
+    private static List<String> splitPath(String propertyPath) {
+        List<String> segments = new ArrayList<String>();
+        int start = 0;
+        int dot;
+        while ((dot = propertyPath.indexOf('.', start)) >= 0) {
+            segments.add(propertyPath.substring(start, dot));
+            start = dot + 1;
+        }
+        segments.add(propertyPath.substring(start));
+        return segments;
     }
 
     ///////////////  TEMPLATE METHODS  ///////////////
@@ -239,99 +389,112 @@ public final class PredicateBuilder {
      * Create Predicate for comparison operators.
      *
      * @param propertyPath  Property path that we want to compare.
-     * @param operator      Comparison operator.
+     * @param proxy         Comparison operator.
      * @param arguments     Arguments (1 for binary comparisons, n for multi-value comparisons [in, not in (out)])
      * @param manager       JPA EntityManager.
+     * @param misc          Facade with all necessary tools for predicate creation, may be <tt>null</tt>.
      * @return              Predicate a predicate representation.
      */
-    private static Predicate createPredicate(Expression propertyPath, ComparisonOperator operator, List<Object> arguments, EntityManager manager) {
-    	LOG.log(Level.INFO, "Creating predicate: propertyPath {0} {1}", new Object[]{operator, arguments});
-
-    	if (ComparisonOperatorProxy.asEnum(operator) != null) {
-    		switch (ComparisonOperatorProxy.asEnum(operator)) {
-	    		case EQUAL : {
-	    			Object argument = arguments.get(0);
-	    			if (argument instanceof String) {
-	    				return createLike(propertyPath, (String) argument, manager);
-	    			} else if (isNullArgument(argument)) {
-	    				return createIsNull(propertyPath, manager);
-	    			} else {
-	    				return createEqual(propertyPath, argument, manager);
-	    			}
+    static Predicate createPredicate(Expression propertyPath, ComparisonOperatorProxy proxy, List<Object> arguments, EntityManager manager, BuilderTools misc) {
+    	ComparisonOperator operator = proxy.getOperator();
+    	if (LOG.isLoggable(Level.FINE)) {
+    		LOG.log(Level.FINE, "Creating predicate: propertyPath {0} {1}", new Object[]{operator, arguments});
+    	}
+
+    	switch (proxy) {
+	    	case EQUAL : {
+	    		Object argument = arguments.get(0);
+	    		if (argument instanceof String) {
+	    			return createLike(propertyPath, (String) argument, manager, misc);
+	    		} else if (isNullArgument(argument)) {
+	    			return createIsNull(propertyPath, manager);
+	    		} else {
+	    			return createEqual(propertyPath, argument, manager);
 	    		}
-	    		case NOT_EQUAL : {
-	    			Object argument = arguments.get(0);
-	    			if (argument instanceof String) {
-	    				return createNotLike(propertyPath, (String) argument, manager);
-	    			} else if (isNullArgument(argument)) {
-	    				return createIsNotNull(propertyPath, manager);
-	    			} else {
-	    				return createNotEqual(propertyPath, argument, manager);
-	    			}
+	    	}
+	    	case NOT_EQUAL : {
+	    		Object argument = arguments.get(0);
+	    		if (argument instanceof String) {
+	    			return createNotLike(propertyPath, (String) argument, manager, misc);
+	    		} else if (isNullArgument(argument)) {
+	    			return createIsNotNull(propertyPath, manager);
+	    		} else {
+	    			return createNotEqual(propertyPath, argument, manager);
 	    		}
-	    		case GREATER_THAN : {
-	    			Object argument = arguments.get(0);
-                    Predicate predicate;
-                    if (argument instanceof Date) {
-                        int days = 1;
-                        predicate = createBetweenThan(propertyPath, modifyDate(argument, days), END_DATE, manager);
-                    } else if (argument instanceof Number || argument == null) {
-                        predicate = createGreaterThan(propertyPath, (Number) argument, manager);
-                    } else if (argument instanceof Comparable) {
-                        predicate = createGreaterThanComparable(propertyPath, (Comparable) argument, manager);
-                    } else {
-                        throw new IllegalArgumentException(buildNotComparableMessage(operator, argument));
-                    }
-                    return predicate;
+	    	}
+	    	case GREATER_THAN : {
+	    		Object argument = arguments.get(0);
+                Predicate predicate;
+                if (argument instanceof Date) {
+                    int days = 1;
+                    predicate = createBetweenThan(propertyPath, modifyDate(argument, days), END_DATE, manager);
+                } else if (argument instanceof Number || argument == null) {
+                    predicate = createGreaterThan(propertyPath, (Number) argument, manager);
+                } else if (argument instanceof Comparable) {
+                    predicate = createGreaterThanComparable(propertyPath, (Comparable) argument, manager);
+                } else {
+                    throw new IllegalArgumentException(buildNotComparableMessage(operator, argument));
                 }
-	    		case GREATER_THAN_OR_EQUAL : {
-	    			Object argument = arguments.get(0);
-                    Predicate predicate;
-                    if (argument instanceof Date){
-                        predicate = createBetweenThan(propertyPath, (Date)argument, END_DATE, manager);
-                    } else if (argument instanceof Number || argument == null) {
-                        predicate = createGreaterEqual(propertyPath, (Number)argument, manager);
-                    } else if (argument instanceof Comparable) {
-                        predicate = createGreaterEqualComparable(propertyPath, (Comparable) argument, manager);
-                    } else {
-                        throw new IllegalArgumentException(buildNotComparableMessage(operator, argument));
-                    }
-                    return predicate;
-
-	    		}
-	    		case LESS_THAN : {
-	    			Object argument = arguments.get(0);
-                    Predicate predicate;
-                    if (argument instanceof Date) {
-                        int days = -1;
-                        predicate = createBetweenThan(propertyPath, START_DATE, modifyDate(argument, days), manager);
-                    } else if (argument instanceof Number || argument == null) {
-                        predicate = createLessThan(propertyPath, (Number) argument, manager);
-                    } else if (argument instanceof Comparable) {
-                        predicate = createLessThanComparable(propertyPath, (Comparable) argument, manager);
-                    } else {
-                        throw new IllegalArgumentException(buildNotComparableMessage(operator, argument));
-                    }
-                    return predicate;
+                return predicate;
+            }
+	    	case GREATER_THAN_OR_EQUAL : {
+	    		Object argument = arguments.get(0);
+                Predicate predicate;
+                if (argument instanceof Date){
+                    predicate = createBetweenThan(propertyPath, (Date)argument, END_DATE, manager);
+                } else if (argument instanceof Number || argument == null) {
+                    predicate = createGreaterEqual(propertyPath, (Number)argument, manager);
+                } else if (argument instanceof Comparable) {
+                    predicate = createGreaterEqualComparable(propertyPath, (Comparable) argument, manager);
+                } else {
+                    throw new IllegalArgumentException(buildNotComparableMessage(operator, argument));
                 }
-	    		case LESS_THAN_OR_EQUAL : {
-	    			Object argument = arguments.get(0);
-
-                    Predicate predicate;
-                    if (argument instanceof Date){
-                        	predicate = createBetweenThan(propertyPath,START_DATE, (Date)argument, manager);
-                    } else if (argument instanceof Number || argument == null) {
-                        predicate = createLessEqual(propertyPath, (Number)argument, manager);
-                    } else if (argument instanceof Comparable) {
-                        predicate = createLessEqualComparable(propertyPath, (Comparable) argument, manager);
-                    } else {
-                        throw new IllegalArgumentException(buildNotComparableMessage(operator, argument));
-                    }
-                    return predicate;
+                return predicate;
+
+	    	}
+	    	case LESS_THAN : {
+	    		Object argument = arguments.get(0);
+                Predicate predicate;
+                if (argument instanceof Date) {
+                    int days = -1;
+                    predicate = createBetweenThan(propertyPath, START_DATE, modifyDate(argument, days), manager);
+                } else if (argument instanceof Number || argument == null) {
+                    predicate = createLessThan(propertyPath, (Number) argument, manager);
+                } else if (argument instanceof Comparable) {
+                    predicate = createLessThanComparable(propertyPath, (Comparable) argument, manager);
+                } else {
+                    throw new IllegalArgumentException(buildNotComparableMessage(operator, argument));
                 }
-	    		case IN : return createIn(propertyPath, arguments, manager);
-	    		case NOT_IN : return createNotIn(propertyPath, arguments, manager);
-    		}
+                return predicate;
+            }
+	    	case LESS_THAN_OR_EQUAL : {
+	    		Object argument = arguments.get(0);
+
+                Predicate predicate;
+                if (argument instanceof Date){
+                    	predicate = createBetweenThan(propertyPath,START_DATE, (Date)argument, manager);
+                } else if (argument instanceof Number || argument == null) {
+                    predicate = createLessEqual(propertyPath, (Number)argument, manager);
+                } else if (argument instanceof Comparable) {
+                    predicate = createLessEqualComparable(propertyPath, (Comparable) argument, manager);
+                } else {
+                    throw new IllegalArgumentException(buildNotComparableMessage(operator, argument));
+                }
+                return predicate;
+            }
+	    	case IN : return createIn(propertyPath, arguments, manager, misc);
+	    	case NOT_IN : return createNotIn(propertyPath, arguments, manager, misc);
+	    	case BETWEEN : {
+	    		if (arguments.size() != 2) {
+	    			throw new IllegalArgumentException("Operator " + operator + " requires two arguments: " + arguments);
+	    		}
+	    		for (Object argument : arguments) {
+	    			if (!(argument instanceof Comparable)) {
+	    				throw new IllegalArgumentException(argument == null ? "Operator " + operator + " does not accept null bounds." : buildNotComparableMessage(operator, argument));
+	    			}
+	    		}
+	    		return createBetween(propertyPath, (Comparable) arguments.get(0), (Comparable) arguments.get(1), manager);
+	    	}
     	}
         throw new IllegalArgumentException("Unknown operator: " + operator);
     }
@@ -351,18 +514,81 @@ public final class PredicateBuilder {
     }
 
     /**
-     * Apply a case-insensitive "like" constraint to the property path. Value
-     * should contains wildcards "*" (% in SQL) and "_".
+     * Apply an inclusive "between" constraint to the property path.
+     *
+     * @param propertyPath  Property path that we want to compare.
+     * @param lower         Lower bound.
+     * @param upper         Upper bound.
+     * @param manager       JPA EntityManager.
+     * @return              Predicate a predicate representation.
+     */
+    private static <Y extends Comparable<? super Y>> Predicate createBetween(Expression<? extends Y> propertyPath, Y lower, Y upper, EntityManager manager) {
+        CriteriaBuilder builder = manager.getCriteriaBuilder();
+        return builder.between(propertyPath, lower, upper);
+    }
+
+    /**
+     * Apply a "like" constraint to the property path, case-insensitive unless
+     * the CaseSensitivityPolicy tells otherwise. Value should contains
+     * wildcards "*" (% in SQL) and "_".
+     *
+     * Arguments without wildcards are compared with an equality, which unlike
+     * "like" can use an index, and arguments with a leading wildcard go to the
+     * LeadingWildcardHandler when there is one.
      *
      * @param propertyPath  Property path that we want to compare.
      * @param argument      Argument with/without wildcards
      * @param manager       JPA EntityManager.
+     * @param misc          Facade with all necessary tools for predicate creation, may be <tt>null</tt>.
      * @return              Predicate a predicate representation.
      */
-    private static Predicate createLike(Expression<String> propertyPath, String argument, EntityManager manager) {
-        String like = argument.replace(LIKE_WILDCARD, '%');
+    private static Predicate createLike(Expression<String> propertyPath, String argument, EntityManager manager, BuilderTools misc) {
         CriteriaBuilder builder = manager.getCriteriaBuilder();
-        return builder.like(builder.lower(propertyPath), like.toLowerCase());
+        CaseSensitivityPolicy policy = caseSensitivityPolicyOf(misc);
+        CaseSensitivity sensitivity = policy.sensitivityOf(propertyPath);
+        Expression<String> compared = policy.compared(propertyPath, sensitivity, builder);
+        if (!isPattern(argument)) {
+            return builder.equal(compared, sensitivity.isLowerCase() ? argument.toLowerCase() : argument);
+        }
+        LeadingWildcardHandler handler = misc == null ? null : misc.getLeadingWildcardHandler();
+        if (handler != null && hasLeadingWildcard(argument)) {
+            Predicate predicate = handler.createLike(propertyPath, argument, builder);
+            if (predicate != null) {
+                return predicate;
+            }
+        }
+        return builder.like(compared, toLikePattern(argument, sensitivity.isLowerCase()));
+    }
+
+    /**
+     * Check if an argument is a pattern, that is if it contains the "*"
+     * wildcard or the SQL wildcards "%" and "_".
+     *
+     * @param argument      String argument.
+     * @return              <tt>true</tt> if the argument can not be compared with an equality.
+     */
+    static boolean isPattern(String argument) {
+        return argument.indexOf(LIKE_WILDCARD) >= 0 || argument.indexOf('%') >= 0 || argument.indexOf('_') >= 0;
+    }
+
+    /**
+     * @param argument      String argument.
+     * @return              <tt>true</tt> if the argument starts with a wildcard.
+     */
+    static boolean hasLeadingWildcard(String argument) {
+        return !argument.isEmpty() && (argument.charAt(0) == LIKE_WILDCARD || argument.charAt(0) == '%' || argument.charAt(0) == '_');
+    }
+
+    /**
+     * Convert an argument with "*" wildcards into a like pattern.
+     *
+     * @param argument      Argument with/without wildcards
+     * @param lowerCase     <tt>true</tt> for a lower case pattern.
+     * @return              The like pattern.
+     */
+    static String toLikePattern(String argument, boolean lowerCase) {
+        String pattern = argument.replace(LIKE_WILDCARD, '%');
+        return lowerCase ? pattern.toLowerCase() : pattern;
     }
 
     /**
@@ -410,11 +636,12 @@ public final class PredicateBuilder {
      * @param propertyPath  Property path that we want to compare.
      * @param argument      Argument with/without wildcards
      * @param manager       JPA EntityManager.
+     * @param misc          Facade with all necessary tools for predicate creation, may be <tt>null</tt>.
      * @return              Predicate a predicate representation.
      */
-    private static Predicate createNotLike(Expression<String> propertyPath, String argument, EntityManager manager) {
+    private static Predicate createNotLike(Expression<String> propertyPath, String argument, EntityManager manager, BuilderTools misc) {
     	CriteriaBuilder builder = manager.getCriteriaBuilder();
-        return builder.not(createLike(propertyPath, argument, manager));
+        return builder.not(createLike(propertyPath, argument, manager, misc));
     }
 
     /**
@@ -539,10 +766,11 @@ public final class PredicateBuilder {
      * @param propertyPath  Property path that we want to compare.
      * @param arguments     List of arguments.
      * @param manager       JPA EntityManager.
+     * @param misc          Facade with the InListStrategy, may be <tt>null</tt>.
      * @return              Predicate a predicate representation.
      */
-    private static Predicate createIn(Expression<?> propertyPath, List<?> arguments, EntityManager manager) {
-    	return propertyPath.in(arguments);
+    private static Predicate createIn(Expression<?> propertyPath, List<?> arguments, EntityManager manager, BuilderTools misc) {
+    	return inListStrategyOf(misc).createIn(propertyPath, arguments, manager.getCriteriaBuilder());
     }
 
     /**
@@ -551,22 +779,12 @@ public final class PredicateBuilder {
      * @param propertyPath  Property path that we want to compare.
      * @param arguments     List of arguments.
      * @param manager       JPA EntityManager.
+     * @param misc          Facade with the InListStrategy, may be <tt>null</tt>.
      * @return              Predicate a predicate representation.
      */
-    private static Predicate createNotIn(Expression<?> propertyPath, List<?> arguments, EntityManager manager) {
+    private static Predicate createNotIn(Expression<?> propertyPath, List<?> arguments, EntityManager manager, BuilderTools misc) {
     	CriteriaBuilder builder = manager.getCriteriaBuilder();
-    	return builder.not(createIn(propertyPath,arguments, manager));
-    }
-
-    /**
-     * Verify if a property is an Association type.
-     *
-     * @param property       Property to verify.
-     * @param classMetadata  Metamodel of the class we want to check.
-     * @return               <tt>true</tt> if the property is an associantion, <tt>false</tt> otherwise.
-     */
-    private static <T> boolean isAssociationType(String property, ManagedType<T> classMetadata){
-    	return classMetadata.getAttribute(property).isAssociation();
+    	return builder.not(createIn(propertyPath, arguments, manager, misc));
     }
 
     /**
@@ -613,6 +831,69 @@ public final class PredicateBuilder {
         return propertyType;
     }
 
+    /**
+     * Get the translation listener of the builder tools.
+     *
+     * @param misc  Facade with all necessary tools for predicate creation, may be <tt>null</tt>.
+     * @return      The defined listener or a listener that does nothing.
+     */
+    private static TranslationListener listenerOf(BuilderTools misc) {
+        return misc == null ? TranslationListenerAdapter.NONE : misc.getTranslationListener();
+    }
+
+    /**
+     * Get the case sensitivity policy of the tools.
+     *
+     * @param misc  Facade with all necessary tools for predicate creation, may be <tt>null</tt>.
+     * @return      The defined policy or the default one.
+     */
+    static CaseSensitivityPolicy caseSensitivityPolicyOf(BuilderTools misc) {
+        return misc == null ? DEFAULT_CASE_SENSITIVITY_POLICY : misc.getCaseSensitivityPolicy();
+    }
+
+    /**
+     * Get the handler of an operator. The built-in =between= came after the
+     * PredicateBuilderStrategy, which may already define it, so a defined
+     * strategy takes precedence over that built-in handler; a handler
+     * registered for =between= still takes precedence over both.
+     *
+     * @param operator  Comparison operator.
+     * @param type      Attribute java type.
+     * @param misc      Facade with the OperatorRegistry and the strategy.
+     * @return          The handler or <tt>null</tt> when the strategy creates the predicate.
+     */
+    static OperatorHandler resolveHandler(ComparisonOperator operator, Class<?> type, BuilderTools misc) {
+        OperatorRegistry registry = misc.getOperatorRegistry();
+        if (misc.getPredicateBuilder() != null
+                && ComparisonOperatorProxy.BETWEEN.getOperator().equals(operator)
+                && registry.isBuiltIn(operator, type)) {
+            return null;
+        }
+        return registry.resolve(operator, type);
+    }
+
+    /**
+     * Verify if the predicate of an operator is created by this library.
+     *
+     * @param operator  Comparison operator.
+     * @param type      Attribute java type.
+     * @param misc      Facade with the OperatorRegistry and the strategy.
+     * @return          <tt>true</tt> if the built-in handler is used.
+     */
+    static boolean isBuiltIn(ComparisonOperator operator, Class<?> type, BuilderTools misc) {
+        return resolveHandler(operator, type, misc) != null && misc.getOperatorRegistry().isBuiltIn(operator, type);
+    }
+
+    /**
+     * Get the strategy for lists of values of the builder tools.
+     *
+     * @param misc  Facade with all necessary tools for predicate creation, may be <tt>null</tt>.
+     * @return      The defined strategy or the default one.
+     */
+    static InListStrategy inListStrategyOf(BuilderTools misc) {
+        return misc == null ? DEFAULT_IN_LIST_STRATEGY : misc.getInListStrategy();
+    }
+
     /**
      * Verifies if the argument is null.
      *
@@ -631,7 +912,7 @@ public final class PredicateBuilder {
       * @param days Days to be added or removed form argument;
       *@return Date modified date
       */
-    private static Date modifyDate(Object argument, int days) {
+    static Date modifyDate(Object argument, int days) {
         Date date = (Date) argument;
         Calendar c = Calendar.getInstance();
         c.setTime(date);
@@ -0,0 +1,123 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2013 Jakub Jirutka <jakub@jirutka.cz>.
+ * Copyright 2015 Antonio Rabelo.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.tennaito.rsql.jpa;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import javax.persistence.EntityManager;
+import javax.persistence.criteria.From;
+import javax.persistence.criteria.Path;
+import javax.persistence.criteria.Selection;
+
+import com.github.tennaito.rsql.builder.BuilderTools;
+
+/**
+ * Projection
+ *
+ * Immutable list of the selectors of the attributes to read instead of whole
+ * entities, e.g. <tt>id,name,department.code</tt>. Selectors are resolved like
+ * the selectors of the filter, through the Mapper and the metamodel, reusing
+ * the joins of the filter, and each selection is aliased with its selector.
+ *
+ * @author AntonioRabelo
+ */
+public final class Projection {
+
+    private final List<String> selectors;
+
+    private Projection(List<String> selectors) {
+        if (selectors.isEmpty()) {
+            throw new IllegalArgumentException("Projection must have at least one selector.");
+        }
+        this.selectors = Collections.unmodifiableList(selectors);
+    }
+
+    /**
+     * Create a projection.
+     *
+     * @param selectors  Selectors of the attributes, in selection order.
+     * @return           The projection.
+     */
+    public static Projection of(String... selectors) {
+        List<String> list = new ArrayList<String>(Arrays.asList(selectors));
+        return new Projection(SelectorLists.requireNonEmpty(list, "selector", "Projection"));
+    }
+
+    /**
+     * Parse a projection.
+     *
+     * @param projection  Comma separated selectors.
+     * @return            The projection.
+     */
+    public static Projection parse(String projection) {
+        List<String> selectors = SelectorLists.split(projection, "Projection");
+        return new Projection(SelectorLists.requireNonEmpty(selectors, "selector", "Projection"));
+    }
+
+    /**
+     * Create the selections of the attributes, resolved against a From node.
+     *
+     * @param root           From the selectors depend on, with the joins of the filter.
+     * @param entityManager  JPA EntityManager.
+     * @param misc           Facade with all necessary tools.
+     * @return               The selections, aliased with their selectors.
+     * @throws IllegalArgumentException When a selector is unknown or goes through a collection.
+     */
+    public List<Selection<?>> toSelections(From<?, ?> root, EntityManager entityManager, BuilderTools misc) {
+        List<Selection<?>> selections = new ArrayList<Selection<?>>(selectors.size());
+        for (String selector : selectors) {
+            SelectorPlan plan = PredicateBuilder.findSelectorPlan(selector, root.getJavaType(), entityManager, misc);
+            SelectorLists.rejectCollection(plan, selector, "project");
+            Path<?> path = plan.replay(root);
+            selections.add(path.alias(selector));
+        }
+        return selections;
+    }
+
+    /**
+     * @return Selectors of the attributes, in selection order.
+     */
+    public List<String> getSelectors() {
+        return selectors;
+    }
+
+    @Override
+    public int hashCode() {
+        return selectors.hashCode();
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        return obj instanceof Projection && selectors.equals(((Projection) obj).selectors);
+    }
+
+    @Override
+    public String toString() {
+        return SelectorLists.join(selectors);
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2013 Jakub Jirutka <jakub@jirutka.cz>.
+ * Copyright 2015 Antonio Rabelo.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.tennaito.rsql.jpa;
+
+import javax.persistence.EntityManager;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+
+import cz.jirutka.rsql.parser.ast.Node;
+
+/**
+ * SelectivityCountEstimator
+ *
+ * Estimates counts as the number of rows of the entity times the selectivity
+ * of the filter given by a {@link SelectivityReorderer}. The number of rows is
+ * counted once, when it was not set before, and can be sampled again at any
+ * time, e.g. by a scheduled task.
+ *
+ * @author AntonioRabelo
+ *
+ * @param <T> Entity type
+ */
+public class SelectivityCountEstimator<T> implements CountEstimator<T> {
+
+    private final SelectivityReorderer<T> reorderer;
+
+    private volatile long rowCount = -1;
+
+    /**
+     * Construct an estimator.
+     *
+     * @param reorderer  Reorderer that estimates the selectivity of the filters.
+     */
+    public SelectivityCountEstimator(SelectivityReorderer<T> reorderer) {
+        if (reorderer == null) {
+            throw new IllegalArgumentException("Reorderer must be defined.");
+        }
+        this.reorderer = reorderer;
+    }
+
+    /* (non-Javadoc)
+     * @see com.github.tennaito.rsql.jpa.CountEstimator#estimate(cz.jirutka.rsql.parser.ast.Node, javax.persistence.EntityManager)
+     */
+    public long estimate(Node node, EntityManager entityManager) {
+        long rows = rowCount;
+        if (rows < 0) {
+            rows = sample(entityManager);
+        }
+        return Math.round(rows * reorderer.selectivity(node, entityManager));
+    }
+
+    /**
+     * Count the rows of the entity.
+     *
+     * @param entityManager  JPA EntityManager.
+     * @return               The number of rows.
+     */
+    public long sample(EntityManager entityManager) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Long> cq = cb.createQuery(Long.class);
+        cq.select(cb.count(cq.from(reorderer.getEntityClass())));
+        long rows = entityManager.createQuery(cq).getSingleResult();
+        this.rowCount = rows;
+        return rows;
+    }
+
+    /**
+     * Set the number of rows, e.g. from the statistics of the database.
+     *
+     * @param rowCount  Number of rows of the entity.
+     */
+    public void setRowCount(long rowCount) {
+        this.rowCount = rowCount;
+    }
+
+    /**
+     * @return The number of rows of the entity, negative until known.
+     */
+    public long getRowCount() {
+        return rowCount;
+    }
+}
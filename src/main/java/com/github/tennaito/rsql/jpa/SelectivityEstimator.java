@@ -0,0 +1,53 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2013 Jakub Jirutka <jakub@jirutka.cz>.
+ * Copyright 2015 Antonio Rabelo.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.tennaito.rsql.jpa;
+
+import java.util.List;
+
+import javax.persistence.EntityManager;
+
+import cz.jirutka.rsql.parser.ast.ComparisonNode;
+
+/**
+ * SelectivityEstimator
+ *
+ * Estimates the fraction of rows a comparison matches, used by the
+ * {@link SelectivityReorderer} to put the most selective predicates first.
+ *
+ * @author AntonioRabelo
+ */
+public interface SelectivityEstimator {
+
+    /**
+     * Estimate the selectivity of a comparison.
+     *
+     * @param comparison     RSQL AST comparison node.
+     * @param plan           Resolved selector of the comparison.
+     * @param arguments      Arguments already cast to the attribute type.
+     * @param entityManager  JPA EntityManager.
+     * @return               Fraction of rows that match, between 0 and 1.
+     */
+    public double estimate(ComparisonNode comparison, SelectorPlan plan, List<Object> arguments, EntityManager entityManager);
+}
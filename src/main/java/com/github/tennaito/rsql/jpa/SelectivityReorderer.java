@@ -0,0 +1,208 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2013 Jakub Jirutka <jakub@jirutka.cz>.
+ * Copyright 2015 Antonio Rabelo.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.tennaito.rsql.jpa;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import javax.persistence.EntityManager;
+
+import com.github.tennaito.rsql.builder.BuilderTools;
+import com.github.tennaito.rsql.builder.ImmutableBuilderTools;
+import com.github.tennaito.rsql.builder.SimpleBuilderTools;
+
+import cz.jirutka.rsql.parser.ast.AndNode;
+import cz.jirutka.rsql.parser.ast.ComparisonNode;
+import cz.jirutka.rsql.parser.ast.LogicalNode;
+import cz.jirutka.rsql.parser.ast.LogicalOperator;
+import cz.jirutka.rsql.parser.ast.Node;
+import cz.jirutka.rsql.parser.ast.OrNode;
+
+/**
+ * SelectivityReorderer
+ *
+ * Reorders the children of AND/OR nodes, so databases that evaluate predicates
+ * in the written order evaluate the cheapest and most decisive ones first:
+ * in an AND group the predicates that match the fewest rows, in an OR group
+ * those that match the most. String patterns, translated into
+ * <tt>lower(...) like</tt>, cost more than the others and go after them.
+ *
+ * Selectivities come from a pluggable {@link SelectivityEstimator}. A reorderer
+ * is immutable and can be shared between threads.
+ *
+ * @author AntonioRabelo
+ *
+ * @param <T> Entity type
+ */
+public class SelectivityReorderer<T> {
+
+    /**
+     * Relative cost of a string pattern comparison.
+     */
+    public static final double LIKE_COST = 4;
+
+    private final Class<T> entityClass;
+
+    private final BuilderTools builderTools;
+
+    private final SelectivityEstimator estimator;
+
+    /**
+     * Construct a reorderer with the default tools and estimator.
+     *
+     * @param entityClass  Entity class of the filters.
+     */
+    public SelectivityReorderer(Class<T> entityClass) {
+        this(entityClass, new SimpleBuilderTools(), new DefaultSelectivityEstimator());
+    }
+
+    /**
+     * Construct a reorderer.
+     *
+     * @param entityClass   Entity class of the filters.
+     * @param builderTools  Tools to freeze, later changes on them are not seen.
+     * @param estimator     Estimator of the comparison selectivities.
+     */
+    public SelectivityReorderer(Class<T> entityClass, BuilderTools builderTools, SelectivityEstimator estimator) {
+        if (entityClass == null || estimator == null) {
+            throw new IllegalArgumentException("Entity class and estimator must be defined.");
+        }
+        this.entityClass = entityClass;
+        this.builderTools = ImmutableBuilderTools.of(builderTools);
+        this.estimator = estimator;
+    }
+
+    /**
+     * Reorder an RSQL AST.
+     *
+     * @param node           RSQL AST node.
+     * @param entityManager  JPA EntityManager.
+     * @return               The reordered node, the same one when nothing changed.
+     */
+    public Node reorder(Node node, EntityManager entityManager) {
+        return estimate(node, entityManager).node;
+    }
+
+    /**
+     * Estimate the fraction of the entities an RSQL AST matches.
+     *
+     * @param node           RSQL AST node.
+     * @param entityManager  JPA EntityManager.
+     * @return               The selectivity, between 0 and 1.
+     */
+    public double selectivity(Node node, EntityManager entityManager) {
+        return estimate(node, entityManager).selectivity;
+    }
+
+    /**
+     * @return Entity class of the filters.
+     */
+    public Class<T> getEntityClass() {
+        return entityClass;
+    }
+
+    private Estimate estimate(Node node, EntityManager entityManager) {
+        if (node instanceof ComparisonNode) {
+            return estimate((ComparisonNode) node, entityManager);
+        }
+        if (!(node instanceof LogicalNode)) {
+            throw new IllegalArgumentException("Unknown expression type: " + node.getClass());
+        }
+        final LogicalNode logical = (LogicalNode) node;
+        List<Estimate> children = new ArrayList<Estimate>();
+        boolean changed = false;
+        for (Node child : logical.getChildren()) {
+            Estimate estimate = estimate(child, entityManager);
+            changed |= estimate.node != child;
+            children.add(estimate);
+        }
+
+        final boolean and = logical.getOperator() == LogicalOperator.AND;
+        // stable sort, equivalent children keep the written order
+        Collections.sort(children, new Comparator<Estimate>() {
+            public int compare(Estimate a, Estimate b) {
+                return Double.compare(a.rank(and), b.rank(and));
+            }
+        });
+
+        List<Node> nodes = new ArrayList<Node>(children.size());
+        double selectivity = and ? 1 : 0;
+        double cost = 0;
+        for (int i = 0; i < children.size(); i++) {
+            Estimate child = children.get(i);
+            nodes.add(child.node);
+            changed |= child.node != logical.getChildren().get(i);
+            selectivity = and ? selectivity * child.selectivity : 1 - (1 - selectivity) * (1 - child.selectivity);
+            cost += child.cost;
+        }
+        if (!changed) {
+            return new Estimate(logical, selectivity, cost);
+        }
+        return new Estimate(and ? new AndNode(nodes) : new OrNode(nodes), selectivity, cost);
+    }
+
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private Estimate estimate(ComparisonNode comparison, EntityManager entityManager) {
+        SelectorPlan plan;
+        List<Object> arguments;
+        try {
+            plan = PredicateBuilder.findSelectorPlan(comparison.getSelector(), entityClass, entityManager, builderTools);
+            arguments = builderTools.getArgumentParser().parse(comparison.getArguments(), (Class) plan.getJavaType());
+        } catch (RuntimeException e) {
+            // invalid comparisons are reported by the translation
+            return new Estimate(comparison, DefaultSelectivityEstimator.UNKNOWN_SELECTIVITY, 1);
+        }
+        double selectivity = Math.max(0, Math.min(1, estimator.estimate(comparison, plan, arguments, entityManager)));
+        boolean pattern = !arguments.isEmpty() && arguments.get(0) instanceof String && PredicateBuilder.isPattern((String) arguments.get(0));
+        double cost = pattern ? LIKE_COST : 1;
+        return new Estimate(comparison, selectivity, cost);
+    }
+
+    /**
+     * Node with its estimated selectivity and evaluation cost.
+     */
+    private static final class Estimate {
+
+        private final Node node;
+        private final double selectivity;
+        private final double cost;
+
+        Estimate(Node node, double selectivity, double cost) {
+            this.node = node;
+            this.selectivity = selectivity;
+            this.cost = cost;
+        }
+
+        /**
+         * Rank of the node in its group, the lowest goes first: the cost paid
+         * for each row the predicate lets through (AND) or does not decide (OR).
+         */
+        double rank(boolean and) {
+            return cost * (and ? selectivity : 1 - selectivity);
+        }
+    }
+}
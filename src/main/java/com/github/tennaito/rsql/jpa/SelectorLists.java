@@ -0,0 +1,136 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2013 Jakub Jirutka <jakub@jirutka.cz>.
+ * Copyright 2015 Antonio Rabelo.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.tennaito.rsql.jpa;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * SelectorLists
+ *
+ * Parsing and checks shared by the comma separated selector lists: the
+ * projection, the fetch plan and the sort specification.
+ *
+ * @author AntonioRabelo
+ */
+final class SelectorLists {
+
+    private SelectorLists() {
+    }
+
+    /**
+     * Split a comma separated list, trimming each element.
+     *
+     * @param text  Comma separated elements.
+     * @param name  Name of the list in the messages, e.g. <tt>Fetch plan</tt>.
+     * @return      The trimmed elements, empty ones included.
+     * @throws IllegalArgumentException When the text is undefined.
+     */
+    static List<String> split(String text, String name) {
+        if (text == null) {
+            throw new IllegalArgumentException(name + " was undefined.");
+        }
+        String[] parts = text.split(",");
+        List<String> elements = new ArrayList<String>(parts.length);
+        for (String part : parts) {
+            elements.add(part.trim());
+        }
+        return elements;
+    }
+
+    /**
+     * Check that no element of a list is empty.
+     *
+     * @param elements  Elements of the list.
+     * @param element   Name of an element in the messages, e.g. <tt>path</tt>.
+     * @param name      Name of the list in the messages.
+     * @return          The elements.
+     * @throws IllegalArgumentException When an element is empty.
+     */
+    static List<String> requireNonEmpty(List<String> elements, String element, String name) {
+        for (String selector : elements) {
+            requireNonEmpty(selector, element, name, elements);
+        }
+        return elements;
+    }
+
+    /**
+     * Check that one element of a list is not empty.
+     *
+     * @param selector  Element to check.
+     * @param element   Name of an element in the messages.
+     * @param name      Name of the list in the messages.
+     * @param source    The whole list, shown in the message.
+     * @throws IllegalArgumentException When the element is empty.
+     */
+    static void requireNonEmpty(String selector, String element, String name, Object source) {
+        if (selector == null || selector.trim().length() == 0) {
+            throw new IllegalArgumentException("Empty " + element + " in " + name.toLowerCase() + ": " + source);
+        }
+    }
+
+    /**
+     * @param plan  Resolved plan of a selector.
+     * @return      <tt>true</tt> if the selector goes through a collection.
+     */
+    static boolean hasCollection(SelectorPlan plan) {
+        for (SelectorPlan.Step step : plan.getSteps()) {
+            if (step.isCollection()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Reject a selector through a collection, whose one row per element
+     * would repeat the entities.
+     *
+     * @param plan      Resolved plan of the selector.
+     * @param selector  The selector, shown in the message.
+     * @param action    What the selector is used for, e.g. <tt>sort on</tt>.
+     * @throws IllegalArgumentException When the selector goes through a collection.
+     */
+    static void rejectCollection(SelectorPlan plan, String selector, String action) {
+        if (hasCollection(plan)) {
+            throw new IllegalArgumentException("Can not " + action + " a collection: " + selector);
+        }
+    }
+
+    /**
+     * @param elements  Elements of a list.
+     * @return          The elements joined by commas.
+     */
+    static String join(List<?> elements) {
+        StringBuilder builder = new StringBuilder();
+        for (Object element : elements) {
+            if (builder.length() > 0) {
+                builder.append(',');
+            }
+            builder.append(element);
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,220 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2013 Jakub Jirutka <jakub@jirutka.cz>.
+ * Copyright 2015 Antonio Rabelo.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.tennaito.rsql.jpa;
+
+import java.util.Collections;
+import java.util.List;
+
+import javax.persistence.criteria.Fetch;
+import javax.persistence.criteria.From;
+import javax.persistence.criteria.Join;
+import javax.persistence.criteria.JoinType;
+import javax.persistence.criteria.Path;
+
+/**
+ * SelectorPlan
+ *
+ * Resolved attribute chain of a selector for a given entity. A plan is computed
+ * once out of the metamodel and the properties mapper, and then replayed against
+ * the From node of every new query.
+ *
+ * @author AntonioRabelo
+ */
+public final class SelectorPlan {
+
+    /**
+     * Kind of attribute a step navigates through.
+     */
+    public enum Kind {
+        ASSOCIATION, EMBEDDED, BASIC
+    }
+
+    /**
+     * One resolved segment of the selector.
+     */
+    public static final class Step {
+
+        private final String attribute;
+        private final Kind kind;
+        private final Class<?> javaType;
+        private final boolean collection;
+
+        Step(String attribute, Kind kind, Class<?> javaType, boolean collection) {
+            this.attribute = attribute;
+            this.kind = kind;
+            this.javaType = javaType;
+            this.collection = collection;
+        }
+
+        /**
+         * @return Name of the attribute in the metamodel.
+         */
+        public String getAttribute() {
+            return attribute;
+        }
+
+        /**
+         * @return Kind of the attribute.
+         */
+        public Kind getKind() {
+            return kind;
+        }
+
+        /**
+         * @return Java type reached by this step, for collections the element type.
+         */
+        public Class<?> getJavaType() {
+            return javaType;
+        }
+
+        /**
+         * @return <tt>true</tt> if the attribute is a plural attribute.
+         */
+        public boolean isCollection() {
+            return collection;
+        }
+    }
+
+    private final Class<?> entityClass;
+    private final String selector;
+    private final List<Step> steps;
+
+    SelectorPlan(Class<?> entityClass, String selector, List<Step> steps) {
+        this.entityClass = entityClass;
+        this.selector = selector;
+        this.steps = Collections.unmodifiableList(steps);
+    }
+
+    /**
+     * Replay the plan against a new From node, creating the needed joins.
+     *
+     * Inner joins and inner fetch joins (when the provider implements them as
+     * joins) of single valued associations already present in the From node
+     * are reused, so selectors sharing an association prefix share the join.
+     * Joins of collections are only shared inside one disjunction, see
+     * {@link JoinScope}: <tt>titles.name==A;titles.name==B</tt> must be able to
+     * match two different elements.
+     *
+     * @param startRoot  From that property path depends on.
+     * @return           The Path for the selector.
+     */
+    public Path<?> replay(Path<?> startRoot) {
+        return replay(startRoot, 0);
+    }
+
+    /**
+     * Replay the steps of the plan from a given one against a From node, such
+     * as the join of a collection inside a subquery.
+     *
+     * @param startRoot  Path the first replayed step depends on.
+     * @param firstStep  Index of the first step to replay.
+     * @return           The Path for the selector.
+     */
+    Path<?> replay(Path<?> startRoot, int firstStep) {
+        return replay(startRoot, firstStep, null);
+    }
+
+    /**
+     * Replay the steps of the plan from a given one, sharing the collection
+     * joins of a scope.
+     *
+     * @param startRoot  Path the first replayed step depends on.
+     * @param firstStep  Index of the first step to replay.
+     * @param scope      Scope of the shared collection joins, may be <tt>null</tt>.
+     * @return           The Path for the selector.
+     */
+    Path<?> replay(Path<?> startRoot, int firstStep, JoinScope scope) {
+        Path<?> root = startRoot;
+        for (Step step : steps.subList(firstStep, steps.size())) {
+            if (step.getKind() == Kind.ASSOCIATION && !(root instanceof Join)) {
+                root = join((From<?, ?>) root, step, scope);
+            } else {
+                root = root.get(step.getAttribute());
+            }
+        }
+        return root;
+    }
+
+    /**
+     * Get or create the inner join of an association step.
+     *
+     * @param from   From node that owns the join.
+     * @param step   Association step.
+     * @param scope  Scope of the shared collection joins, may be <tt>null</tt>.
+     * @return       The existing join or fetch join for single valued associations
+     *               or collections of the scope, a new one otherwise.
+     */
+    private static Join<?, ?> join(From<?, ?> from, Step step, JoinScope scope) {
+        if (step.isCollection()) {
+            Join<?, ?> join = scope == null ? null : scope.find(from, step.getAttribute());
+            if (join == null) {
+                join = from.join(step.getAttribute());
+                if (scope != null) {
+                    scope.add(join);
+                }
+            }
+            return join;
+        }
+        for (Join<?, ?> join : from.getJoins()) {
+            if (join.getJoinType() == JoinType.INNER && join.getAttribute().getName().equals(step.getAttribute())) {
+                return join;
+            }
+        }
+        for (Fetch<?, ?> fetch : from.getFetches()) {
+            if (fetch instanceof Join && fetch.getJoinType() == JoinType.INNER && fetch.getAttribute().getName().equals(step.getAttribute())) {
+                return (Join<?, ?>) fetch;
+            }
+        }
+        return from.join(step.getAttribute());
+    }
+
+    /**
+     * @return Entity class the selector was resolved from.
+     */
+    public Class<?> getEntityClass() {
+        return entityClass;
+    }
+
+    /**
+     * @return The original selector.
+     */
+    public String getSelector() {
+        return selector;
+    }
+
+    /**
+     * @return Resolved steps in navigation order.
+     */
+    public List<Step> getSteps() {
+        return steps;
+    }
+
+    /**
+     * @return Java type of the last step, used for casting arguments.
+     */
+    public Class<?> getJavaType() {
+        return steps.get(steps.size() - 1).getJavaType();
+    }
+}
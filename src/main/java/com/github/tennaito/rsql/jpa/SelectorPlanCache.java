@@ -0,0 +1,157 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2013 Jakub Jirutka <jakub@jirutka.cz>.
+ * Copyright 2015 Antonio Rabelo.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.tennaito.rsql.jpa;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.persistence.metamodel.Metamodel;
+
+import com.github.tennaito.rsql.misc.Mapper;
+import com.github.tennaito.rsql.misc.SimpleMapper;
+
+/**
+ * SelectorPlanCache
+ *
+ * Thread-safe cache of selector plans keyed by metamodel, entity class, selector
+ * and properties mapper (with its version when it is a SimpleMapper).
+ *
+ * The cache is bounded: when it reaches its maximum size it is cleared, so keys
+ * from short-lived mappers cannot make it grow forever.
+ *
+ * @author AntonioRabelo
+ */
+public class SelectorPlanCache {
+
+    public static final int DEFAULT_MAXIMUM_SIZE = 1024;
+
+    private final ConcurrentMap<Key, SelectorPlan> plans = new ConcurrentHashMap<Key, SelectorPlan>();
+
+    private final int maximumSize;
+
+    /**
+     * Construct a cache with the default maximum size.
+     */
+    public SelectorPlanCache() {
+        this(DEFAULT_MAXIMUM_SIZE);
+    }
+
+    /**
+     * Construct a cache with the given maximum size.
+     *
+     * @param maximumSize Maximum number of plans kept.
+     */
+    public SelectorPlanCache(int maximumSize) {
+        if (maximumSize < 1) {
+            throw new IllegalArgumentException("Maximum size must be positive: " + maximumSize);
+        }
+        this.maximumSize = maximumSize;
+    }
+
+    /**
+     * Get a cached plan.
+     *
+     * @param metamodel    Metamodel the plan was resolved against.
+     * @param entityClass  Entity class the selector starts from.
+     * @param selector     RSQL selector.
+     * @param mapper       Properties mapper used for the resolution.
+     * @return             The cached plan or <tt>null</tt>.
+     */
+    public SelectorPlan get(Metamodel metamodel, Class<?> entityClass, String selector, Mapper mapper) {
+        return plans.get(new Key(metamodel, entityClass, selector, mapper));
+    }
+
+    /**
+     * Store a plan.
+     *
+     * @param metamodel    Metamodel the plan was resolved against.
+     * @param mapper       Properties mapper used for the resolution.
+     * @param plan         Resolved plan.
+     */
+    public void put(Metamodel metamodel, Mapper mapper, SelectorPlan plan) {
+        if (plans.size() >= maximumSize) {
+            plans.clear();
+        }
+        plans.put(new Key(metamodel, plan.getEntityClass(), plan.getSelector(), mapper), plan);
+    }
+
+    /**
+     * Remove all cached plans.
+     */
+    public void clear() {
+        plans.clear();
+    }
+
+    /**
+     * @return Number of cached plans.
+     */
+    public int size() {
+        return plans.size();
+    }
+
+    static long versionOf(Mapper mapper) {
+        return (mapper instanceof SimpleMapper) ? ((SimpleMapper) mapper).getVersion() : 0L;
+    }
+
+    private static final class Key {
+
+        private final Metamodel metamodel;
+        private final Class<?> entityClass;
+        private final String selector;
+        private final Mapper mapper;
+        private final long mapperVersion;
+        private final int hash;
+
+        Key(Metamodel metamodel, Class<?> entityClass, String selector, Mapper mapper) {
+            this.metamodel = metamodel;
+            this.entityClass = entityClass;
+            this.selector = selector;
+            this.mapper = mapper;
+            this.mapperVersion = versionOf(mapper);
+            int h = System.identityHashCode(metamodel);
+            h = 31 * h + entityClass.hashCode();
+            h = 31 * h + selector.hashCode();
+            h = 31 * h + System.identityHashCode(mapper);
+            this.hash = 31 * h + (int) (mapperVersion ^ (mapperVersion >>> 32));
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) return true;
+            if (!(obj instanceof Key)) return false;
+            Key other = (Key) obj;
+            return metamodel == other.metamodel
+                    && mapper == other.mapper
+                    && mapperVersion == other.mapperVersion
+                    && entityClass.equals(other.entityClass)
+                    && selector.equals(other.selector);
+        }
+    }
+}
@@ -0,0 +1,217 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2013 Jakub Jirutka <jakub@jirutka.cz>.
+ * Copyright 2015 Antonio Rabelo.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.tennaito.rsql.jpa;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import javax.persistence.EntityManager;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.From;
+import javax.persistence.criteria.Order;
+import javax.persistence.criteria.Path;
+
+import com.github.tennaito.rsql.builder.BuilderTools;
+
+/**
+ * SortSpecification
+ *
+ * Immutable list of sort keys written as comma separated selectors, each one
+ * optionally prefixed by <tt>+</tt> (ascending, the default) or <tt>-</tt>
+ * (descending), e.g. <tt>name,-department.code</tt>. Selectors are resolved
+ * like the selectors of the filter, through the Mapper and the metamodel, and
+ * their plans are kept in the same SelectorPlanCache. Resolved after the
+ * filter, they reuse the joins it created instead of joining the same table
+ * again.
+ *
+ * @author AntonioRabelo
+ */
+public final class SortSpecification {
+
+    private final List<Key> keys;
+
+    private SortSpecification(List<Key> keys) {
+        this.keys = Collections.unmodifiableList(keys);
+    }
+
+    /**
+     * Parse a sort specification.
+     *
+     * @param specification  Comma separated selectors with optional direction prefix.
+     * @return               The sort specification.
+     * @throws IllegalArgumentException When a selector is empty.
+     */
+    public static SortSpecification parse(String specification) {
+        List<String> selectors = SelectorLists.split(specification, "Sort specification");
+        List<Key> keys = new ArrayList<Key>();
+        if (specification.trim().length() > 0) {
+            for (String selector : selectors) {
+                boolean ascending = true;
+                if (selector.startsWith("+") || selector.startsWith("-")) {
+                    ascending = selector.charAt(0) == '+';
+                    selector = selector.substring(1).trim();
+                }
+                SelectorLists.requireNonEmpty(selector, "selector", "Sort specification", specification);
+                keys.add(new Key(selector, ascending));
+            }
+        }
+        return new SortSpecification(keys);
+    }
+
+    /**
+     * Create a sort specification with one more key.
+     *
+     * @param selector   Selector of the key.
+     * @param ascending  <tt>true</tt> for an ascending order.
+     * @return           A new sort specification.
+     */
+    public SortSpecification then(String selector, boolean ascending) {
+        List<Key> list = new ArrayList<Key>(keys);
+        list.add(new Key(selector, ascending));
+        return new SortSpecification(list);
+    }
+
+    /**
+     * Create the orders of the keys, resolved against a From node.
+     *
+     * @param root           From the selectors depend on, with the joins of the filter.
+     * @param entityManager  JPA EntityManager.
+     * @param misc           Facade with all necessary tools.
+     * @return               The orders to give to CriteriaQuery.orderBy.
+     * @throws IllegalArgumentException When a selector is unknown or goes through a collection.
+     */
+    public List<Order> toOrders(From<?, ?> root, EntityManager entityManager, BuilderTools misc) {
+        CriteriaBuilder builder = entityManager.getCriteriaBuilder();
+        List<Path<?>> paths = toPaths(root, entityManager, misc);
+        List<Order> orders = new ArrayList<Order>(paths.size());
+        for (int i = 0; i < paths.size(); i++) {
+            orders.add(keys.get(i).ascending ? builder.asc(paths.get(i)) : builder.desc(paths.get(i)));
+        }
+        return orders;
+    }
+
+    /**
+     * Resolve the selectors of the keys against a From node.
+     *
+     * @param root           From the selectors depend on.
+     * @param entityManager  JPA EntityManager.
+     * @param misc           Facade with all necessary tools.
+     * @return               The paths of the keys, in sort order.
+     */
+    List<Path<?>> toPaths(From<?, ?> root, EntityManager entityManager, BuilderTools misc) {
+        List<Path<?>> paths = new ArrayList<Path<?>>(keys.size());
+        for (Key key : keys) {
+            SelectorPlan plan = PredicateBuilder.findSelectorPlan(key.selector, root.getJavaType(), entityManager, misc);
+            SelectorLists.rejectCollection(plan, key.selector, "sort on");
+            paths.add(plan.replay(root));
+        }
+        return paths;
+    }
+
+    /**
+     * @param selector  Selector of a key.
+     * @return          <tt>true</tt> if the specification sorts on the selector.
+     */
+    public boolean contains(String selector) {
+        for (Key key : keys) {
+            if (key.selector.equals(selector)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return Keys in sort order.
+     */
+    public List<Key> getKeys() {
+        return keys;
+    }
+
+    @Override
+    public int hashCode() {
+        return keys.hashCode();
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        return obj instanceof SortSpecification && keys.equals(((SortSpecification) obj).keys);
+    }
+
+    @Override
+    public String toString() {
+        return SelectorLists.join(keys);
+    }
+
+    /**
+     * Sort key: a selector and its direction.
+     */
+    public static final class Key {
+
+        private final String selector;
+        private final boolean ascending;
+
+        Key(String selector, boolean ascending) {
+            if (selector == null) {
+                throw new IllegalArgumentException("Selector was undefined.");
+            }
+            this.selector = selector;
+            this.ascending = ascending;
+        }
+
+        /**
+         * @return The selector.
+         */
+        public String getSelector() {
+            return selector;
+        }
+
+        /**
+         * @return <tt>true</tt> for an ascending order.
+         */
+        public boolean isAscending() {
+            return ascending;
+        }
+
+        @Override
+        public int hashCode() {
+            return selector.hashCode() * 2 + (ascending ? 1 : 0);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) return true;
+            if (!(obj instanceof Key)) return false;
+            Key other = (Key) obj;
+            return selector.equals(other.selector) && ascending == other.ascending;
+        }
+
+        @Override
+        public String toString() {
+            return ascending ? selector : "-" + selector;
+        }
+    }
+}
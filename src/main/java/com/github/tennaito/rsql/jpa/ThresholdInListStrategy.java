@@ -0,0 +1,79 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2013 Jakub Jirutka <jakub@jirutka.cz>.
+ * Copyright 2015 Antonio Rabelo.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.tennaito.rsql.jpa;
+
+import java.util.List;
+
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.Expression;
+import javax.persistence.criteria.Predicate;
+
+/**
+ * ThresholdInListStrategy
+ *
+ * Switches between two strategies depending on the number of values, e.g. a
+ * plain IN for short lists and a provider specific function or chunks for
+ * the large ones.
+ *
+ * @author AntonioRabelo
+ */
+public class ThresholdInListStrategy implements InListStrategy {
+
+    private final int threshold;
+
+    private final InListStrategy small;
+
+    private final InListStrategy large;
+
+    /**
+     * Construct a strategy.
+     *
+     * @param threshold  Lists with more values than this use the large strategy.
+     * @param small      Strategy for lists up to the threshold.
+     * @param large      Strategy for lists above the threshold.
+     */
+    public ThresholdInListStrategy(int threshold, InListStrategy small, InListStrategy large) {
+        if (small == null || large == null) {
+            throw new IllegalArgumentException("Strategies must be defined.");
+        }
+        this.threshold = threshold;
+        this.small = small;
+        this.large = large;
+    }
+
+    /* (non-Javadoc)
+     * @see com.github.tennaito.rsql.jpa.InListStrategy#createIn(javax.persistence.criteria.Expression, java.util.List, javax.persistence.criteria.CriteriaBuilder)
+     */
+    public Predicate createIn(Expression<?> path, List<?> values, CriteriaBuilder builder) {
+        return values.size() > threshold ? large.createIn(path, values, builder) : small.createIn(path, values, builder);
+    }
+
+    /* (non-Javadoc)
+     * @see com.github.tennaito.rsql.jpa.InListStrategy#paddedSize(int)
+     */
+    public int paddedSize(int size) {
+        return size > threshold ? large.paddedSize(size) : small.paddedSize(size);
+    }
+}
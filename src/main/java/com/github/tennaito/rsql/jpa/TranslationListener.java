@@ -0,0 +1,74 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2013 Jakub Jirutka <jakub@jirutka.cz>.
+ * Copyright 2015 Antonio Rabelo.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.tennaito.rsql.jpa;
+
+import javax.persistence.criteria.Path;
+import javax.persistence.criteria.Predicate;
+
+import cz.jirutka.rsql.parser.ast.Node;
+
+/**
+ * TranslationListener
+ *
+ * Hooks called by the PredicateBuilder while a RSQL AST is translated into a
+ * Predicate, for tracing and metrics. Implementations are called on the
+ * translation hot path and must be cheap and thread-safe.
+ *
+ * @author AntonioRabelo
+ * @see TranslationListenerAdapter
+ */
+public interface TranslationListener {
+
+    /**
+     * A node is about to be translated.
+     *
+     * @param node  RSQL AST node.
+     */
+    public void nodeEntered(Node node);
+
+    /**
+     * The selector of a comparison was resolved into a property path.
+     *
+     * @param selector  RSQL selector.
+     * @param path      Resolved property path.
+     */
+    public void pathResolved(String selector, Path<?> path);
+
+    /**
+     * An argument of a comparison was casted to the property type.
+     *
+     * @param argument  Argument as written in the RSQL expression.
+     * @param value     Casted argument.
+     */
+    public void argumentParsed(String argument, Object value);
+
+    /**
+     * A node was translated.
+     *
+     * @param node       RSQL AST node.
+     * @param predicate  Predicate created for the node.
+     */
+    public void predicateCreated(Node node, Predicate predicate);
+}
@@ -0,0 +1,70 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2013 Jakub Jirutka <jakub@jirutka.cz>.
+ * Copyright 2015 Antonio Rabelo.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.tennaito.rsql.jpa;
+
+import javax.persistence.criteria.Path;
+import javax.persistence.criteria.Predicate;
+
+import cz.jirutka.rsql.parser.ast.Node;
+
+/**
+ * TranslationListenerAdapter
+ *
+ * Translation listener with empty methods, to be extended by listeners
+ * interested only in some of the events.
+ *
+ * @author AntonioRabelo
+ */
+public class TranslationListenerAdapter implements TranslationListener {
+
+    /**
+     * Listener that does nothing, used when no listener is defined.
+     */
+    public static final TranslationListener NONE = new TranslationListenerAdapter();
+
+    /* (non-Javadoc)
+     * @see com.github.tennaito.rsql.jpa.TranslationListener#nodeEntered(cz.jirutka.rsql.parser.ast.Node)
+     */
+    public void nodeEntered(Node node) {
+    }
+
+    /* (non-Javadoc)
+     * @see com.github.tennaito.rsql.jpa.TranslationListener#pathResolved(java.lang.String, javax.persistence.criteria.Path)
+     */
+    public void pathResolved(String selector, Path<?> path) {
+    }
+
+    /* (non-Javadoc)
+     * @see com.github.tennaito.rsql.jpa.TranslationListener#argumentParsed(java.lang.String, java.lang.Object)
+     */
+    public void argumentParsed(String argument, Object value) {
+    }
+
+    /* (non-Javadoc)
+     * @see com.github.tennaito.rsql.jpa.TranslationListener#predicateCreated(cz.jirutka.rsql.parser.ast.Node, javax.persistence.criteria.Predicate)
+     */
+    public void predicateCreated(Node node, Predicate predicate) {
+    }
+}
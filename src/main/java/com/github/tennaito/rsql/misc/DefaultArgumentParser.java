@@ -24,22 +24,34 @@
  */
 package com.github.tennaito.rsql.misc;
 
-import java.lang.reflect.InvocationTargetException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
 import java.math.BigDecimal;
-import java.text.ParseException;
-import java.text.SimpleDateFormat;
+import java.math.BigInteger;
+import java.time.ZoneId;
 import java.util.ArrayList;
-import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 /**
  * Default implementation of {@linkplain ArgumentParser}. Supported types
- * are String, Integer, Long, Float, Boolean, Enum and Date. If neither one
- * of them match, it tries to invoke valueOf(String s) method via reflection on
- * the type's class.
+ * are String, Integer, Long, Short, Byte, Float, Double, BigDecimal, BigInteger,
+ * Boolean, Character, UUID, Enum, Date, LocalDate, LocalDateTime, Instant,
+ * OffsetDateTime and ZonedDateTime (ISO 8601 arguments), plus the types with
+ * a registered {@linkplain ArgumentConverter}. If neither one of them match, it tries to
+ * invoke the static valueOf(String s) method of the type's class.
+ *
+ * The converter of each type is resolved once and then shared by all the
+ * parsers, the valueOf(String s) method is called through a MethodHandle.
  *
  * @author Jakub Jirutka <jakub@jirutka.cz>
  * @author AntonioRabelo
@@ -48,64 +60,284 @@ public class DefaultArgumentParser implements ArgumentParser {
 
 	private static final Logger LOG = Logger.getLogger(DefaultArgumentParser.class.getName());
 
-    private static final String DATE_PATTERN = "yyyy-MM-dd"; //ISO 8601
-    private static final String DATE_TIME_PATTERN = "yyyy-MM-dd'T'HH:mm:ss"; //ISO 8601
+    private static final MethodType VALUE_OF_TYPE = MethodType.methodType(Object.class, String.class);
+
+    private static final Map<Class<?>, ArgumentConverter<?>> BUILT_IN = new HashMap<Class<?>, ArgumentConverter<?>>();
+
+    /**
+     * Marker for types that cannot be parsed.
+     */
+    private static final ArgumentConverter<Object> UNSUPPORTED = new ArgumentConverter<Object>() {
+        public Object convert(String argument) {
+            throw new UnsupportedOperationException();
+        }
+    };
+
+    static {
+        builtIn(new ArgumentConverter<String>() {
+            public String convert(String argument) { return argument; }
+        }, String.class);
+        builtIn(new ArgumentConverter<Integer>() {
+            public Integer convert(String argument) { return Integer.valueOf(argument); }
+        }, Integer.class, int.class);
+        builtIn(new ArgumentConverter<Boolean>() {
+            public Boolean convert(String argument) { return Boolean.valueOf(argument); }
+        }, Boolean.class, boolean.class);
+        builtIn(new ArgumentConverter<Float>() {
+            public Float convert(String argument) { return Float.valueOf(argument); }
+        }, Float.class, float.class);
+        builtIn(new ArgumentConverter<Double>() {
+            public Double convert(String argument) { return Double.valueOf(argument); }
+        }, Double.class, double.class);
+        builtIn(new ArgumentConverter<Long>() {
+            public Long convert(String argument) { return Long.valueOf(argument); }
+        }, Long.class, long.class);
+        builtIn(new ArgumentConverter<Short>() {
+            public Short convert(String argument) { return Short.valueOf(argument); }
+        }, Short.class, short.class);
+        builtIn(new ArgumentConverter<Byte>() {
+            public Byte convert(String argument) { return Byte.valueOf(argument); }
+        }, Byte.class, byte.class);
+        builtIn(new ArgumentConverter<Character>() {
+            public Character convert(String argument) {
+                if (argument.length() != 1) {
+                    throw new IllegalArgumentException("Not a single character: " + argument);
+                }
+                return Character.valueOf(argument.charAt(0));
+            }
+        }, Character.class, char.class);
+        builtIn(new ArgumentConverter<BigDecimal>() {
+            public BigDecimal convert(String argument) { return new BigDecimal(argument); }
+        }, BigDecimal.class);
+        builtIn(new ArgumentConverter<BigInteger>() {
+            public BigInteger convert(String argument) { return new BigInteger(argument); }
+        }, BigInteger.class);
+        builtIn(new ArgumentConverter<UUID>() {
+            public UUID convert(String argument) { return UUID.fromString(argument); }
+        }, UUID.class);
+    }
+
+    /**
+     * Converters of the types without registered converter, shared by all the
+     * parsers: they must not reference any parser, or the parsers would be
+     * kept alive by the classes holding the values.
+     */
+    private static final ClassValue<ArgumentConverter<?>> SHARED = new ClassValue<ArgumentConverter<?>>() {
+        @Override
+        protected ArgumentConverter<?> computeValue(Class<?> type) {
+            return resolveConverter(type);
+        }
+    };
+
+    private final ZoneId zone;
+
+    private final boolean frozen;
+
+    private final ConcurrentMap<Class<?>, ArgumentConverter<?>> registered = new ConcurrentHashMap<Class<?>, ArgumentConverter<?>>();
+
+    /**
+     * Temporal converters of the zone of this parser, when it has one.
+     */
+    private final ConcurrentMap<Class<?>, ArgumentConverter<?>> zoned = new ConcurrentHashMap<Class<?>, ArgumentConverter<?>>();
+
+    /**
+     * Construct a parser that reads dates without offset in the system zone.
+     */
+    public DefaultArgumentParser() {
+        this((ZoneId) null);
+    }
+
+    /**
+     * Construct a parser that reads dates without offset in the given zone.
+     *
+     * @param zone  Zone of the dates without offset, null for the system zone.
+     */
+    public DefaultArgumentParser(ZoneId zone) {
+        this.zone = zone;
+        this.frozen = false;
+    }
+
+    private DefaultArgumentParser(DefaultArgumentParser parser) {
+        this.zone = parser.zone;
+        this.frozen = true;
+        this.registered.putAll(parser.registered);
+    }
+
+    /**
+     * Copy the zone and the registered converters into a parser that rejects
+     * new converters.
+     *
+     * @return A frozen copy of this parser.
+     */
+    public DefaultArgumentParser frozenCopy() {
+        return frozen ? this : new DefaultArgumentParser(this);
+    }
+
+    /**
+     * @return Zone of the dates without offset, null for the system zone.
+     */
+    public ZoneId getZone() {
+        return zone;
+    }
+
+    /**
+     * Register the converter of a type, it takes precedence over the built-in
+     * converters.
+     *
+     * @param type       Property type.
+     * @param converter  Converter of the arguments.
+     */
+    public <T> void registerConverter(Class<T> type, ArgumentConverter<? extends T> converter) {
+        if (type == null || converter == null) {
+            throw new IllegalArgumentException("Type and converter must be defined.");
+        }
+        if (frozen) {
+            throw new UnsupportedOperationException("Argument parser is frozen.");
+        }
+        registered.put(type, converter);
+    }
 
     /* (non-Javadoc)
      * @see br.tennaito.rsql.misc.ArgumentParser#parse(java.lang.String, java.lang.Class)
      */
+    @SuppressWarnings("unchecked")
     public <T> T parse(String argument, Class<T> type)
             throws ArgumentFormatException, IllegalArgumentException {
 
-    	LOG.log(Level.INFO, "Parsing argument ''{0}'' as type {1}, thread {2}", new Object[] {argument, type.getSimpleName(), Thread.currentThread().getName()});
+    	if (LOG.isLoggable(Level.FINE)) {
+    		LOG.log(Level.FINE, "Parsing argument ''{0}'' as type {1}, thread {2}", new Object[] {argument, type.getSimpleName(), Thread.currentThread().getName()});
+    	}
 
         // Nullable object
-        if (argument == null || "null".equals(argument.trim().toLowerCase())) {
+        if (argument == null || "null".equalsIgnoreCase(argument.trim())) {
         	return (T) null;
         }
 
-        // common types
+        ArgumentConverter<?> converter = converterOf(type);
+        if (converter == UNSUPPORTED) {
+        	throw new IllegalArgumentException("Cannot parse argument type " + type);
+        }
         try {
-            if (type.equals(String.class)) return (T) argument;
-            if (type.equals(Integer.class) || type.equals(int.class)) return (T) Integer.valueOf(argument);
-            if (type.equals(Boolean.class) || type.equals(boolean.class)) return (T) Boolean.valueOf(argument);
-            if (type.isEnum()) return (T) Enum.valueOf((Class<Enum>)type, argument);
-            if (type.equals(Float.class)   || type.equals(float.class)) return (T) Float.valueOf(argument);
-            if (type.equals(Double.class)  || type.equals(double.class)) return (T) Double.valueOf(argument);
-            if (type.equals(Long.class)    || type.equals(long.class)) return (T) Long.valueOf(argument);
-            if (type.equals(BigDecimal.class) ) return (T) new BigDecimal(argument);
+            return (T) converter.convert(argument);
+        } catch (ArgumentFormatException ex) {
+            throw ex;
         } catch (IllegalArgumentException ex) {
             throw new ArgumentFormatException(argument, type);
         }
+    }
 
-        // date
-        if (type.equals(Date.class)) {
-            return (T) parseDate(argument, type);
+    /**
+     * Get the converter of a type: the registered one, the temporal one of the
+     * zone of this parser or the shared one.
+     *
+     * @param type  Property type.
+     * @return      The converter or UNSUPPORTED.
+     */
+    private ArgumentConverter<?> converterOf(Class<?> type) {
+        ArgumentConverter<?> converter;
+        if (!registered.isEmpty()) {
+            converter = registered.get(type);
+            if (converter != null) {
+                return converter;
+            }
         }
+        if (zone != null) {
+            converter = zoned.get(type);
+            if (converter == null) {
+                converter = TemporalArgumentConverter.of(type, zone);
+                if (converter != null) {
+                    zoned.putIfAbsent(type, converter);
+                }
+            }
+            if (converter != null) {
+                return converter;
+            }
+        }
+        return SHARED.get(type);
+    }
 
-        // try to parse via valueOf(String s) method
+    /**
+     * Resolve the shared converter of a type, called once per type.
+     *
+     * @param type  Property type.
+     * @return      The converter or UNSUPPORTED.
+     */
+    private static ArgumentConverter<?> resolveConverter(Class<?> type) {
+        ArgumentConverter<?> converter = BUILT_IN.get(type);
+        if (converter != null) {
+            return converter;
+        }
+        if (type.isEnum()) {
+            return new EnumConverter(type);
+        }
+        converter = TemporalArgumentConverter.of(type, null);
+        if (converter != null) {
+            return converter;
+        }
+        return valueOfConverter(type);
+    }
+
+    /**
+     * Look the valueOf(String s) method up, only once per type.
+     */
+    private static ArgumentConverter<?> valueOfConverter(Class<?> type) {
+        LOG.log(Level.FINE, "Trying to get valueOf(String s) method on {0}", type);
+        final MethodHandle valueOf;
         try {
-        	LOG.log(Level.INFO, "Trying to get and invoke valueOf(String s) method on {0}", type);
             Method method = type.getMethod("valueOf", String.class);
-            return (T) method.invoke(type, argument);
-        } catch (InvocationTargetException ex) {
-        	throw new ArgumentFormatException(argument, type);
+            if (!Modifier.isStatic(method.getModifiers())) {
+                throw new NoSuchMethodException(type.getName() + ".valueOf(String) is not static");
+            }
+            valueOf = MethodHandles.lookup().unreflect(method).asType(VALUE_OF_TYPE);
         } catch (ReflectiveOperationException ex) {
         	LOG.log(Level.WARNING, "{0} does not have method valueOf(String s) or method is inaccessible", type);
-        	throw new IllegalArgumentException("Cannot parse argument type " + type);
+        	return UNSUPPORTED;
         }
+        return new ValueOfConverter(valueOf);
     }
 
-    private <T> Date parseDate(String argument, Class<T> type) {
-        try {
-            return new SimpleDateFormat(DATE_TIME_PATTERN).parse(argument);
-        } catch (ParseException ex) {
-            LOG.log(Level.INFO, "Not a date time format, lets try with date format.");
+    /**
+     * Converter of an enum type.
+     */
+    private static final class EnumConverter implements ArgumentConverter<Object> {
+
+        private final Class<?> type;
+
+        EnumConverter(Class<?> type) {
+            this.type = type;
         }
-        try {
-            return new SimpleDateFormat(DATE_PATTERN).parse(argument);
-        } catch (ParseException ex1) {
-            throw new ArgumentFormatException(argument, type);
+
+        @SuppressWarnings({ "unchecked", "rawtypes" })
+        public Object convert(String argument) {
+            return Enum.valueOf((Class<Enum>) type, argument);
+        }
+    }
+
+    /**
+     * Converter calling the static valueOf(String s) method of a type.
+     */
+    private static final class ValueOfConverter implements ArgumentConverter<Object> {
+
+        private final MethodHandle valueOf;
+
+        ValueOfConverter(MethodHandle valueOf) {
+            this.valueOf = valueOf;
+        }
+
+        public Object convert(String argument) {
+            try {
+                return (Object) valueOf.invokeExact(argument);
+            } catch (Error ex) {
+                throw ex;
+            } catch (Throwable ex) {
+                throw new IllegalArgumentException(ex);
+            }
+        }
+    }
+
+    private static void builtIn(ArgumentConverter<?> converter, Class<?>... types) {
+        for (Class<?> type : types) {
+            BUILT_IN.put(type, converter);
         }
     }
 
@@ -23,6 +23,7 @@
  */
 package com.github.tennaito.rsql.misc;
 
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.logging.Level;
@@ -39,6 +40,9 @@ public class SimpleMapper implements Mapper {
 
     private Map<Class<?>, Map<String, String>> mapping;
 
+    private volatile long version;
+
+    private final boolean frozen;
 
     /**
      * Construct new <tt>SimpleMapper</tt> with zero initial capacity of the
@@ -55,6 +59,32 @@ public class SimpleMapper implements Mapper {
      */
     public SimpleMapper(int initialCapacity) {
         mapping = new HashMap<Class<?>, Map<String, String>>(initialCapacity);
+        frozen = false;
+    }
+
+    private SimpleMapper(SimpleMapper mapper) {
+        Map<Class<?>, Map<String, String>> copy = null;
+        if (mapper.mapping != null) {
+            copy = new HashMap<Class<?>, Map<String, String>>(mapper.mapping.size());
+            for (Map.Entry<Class<?>, Map<String, String>> entry : mapper.mapping.entrySet()) {
+                Map<String, String> selectors = entry.getValue() == null ? null
+                        : Collections.unmodifiableMap(new HashMap<String, String>(entry.getValue()));
+                copy.put(entry.getKey(), selectors);
+            }
+            copy = Collections.unmodifiableMap(copy);
+        }
+        this.mapping = copy;
+        this.version = mapper.version;
+        this.frozen = true;
+    }
+
+    /**
+     * Copy the mapping into a mapper that rejects changes.
+     *
+     * @return A frozen copy of this mapper.
+     */
+    public SimpleMapper frozenCopy() {
+        return frozen ? this : new SimpleMapper(this);
     }
 
     public String translate(String selector, Class<?> entityClass) {
@@ -64,7 +94,9 @@ public class SimpleMapper implements Mapper {
         String property = (map != null) ? map.get(selector) : null;
 
         if (property != null) {
-        	LOG.log(Level.INFO, "Found mapping {0} -> {1}" , new Object[] {selector, property});
+        	if (LOG.isLoggable(Level.FINE)) {
+        		LOG.log(Level.FINE, "Found mapping {0} -> {1}" , new Object[] {selector, property});
+        	}
             return property;
         }
 
@@ -79,7 +111,9 @@ public class SimpleMapper implements Mapper {
      * @param mapping mapping of selectors to property names
      */
     public void addMapping(Class<?> entityClass, Map<String, String> mapping) {
+        checkNotFrozen();
         this.mapping.put(entityClass, mapping);
+        version++;
     }
 
     /**
@@ -90,7 +124,9 @@ public class SimpleMapper implements Mapper {
      * @param property Name of corresponding entity's property.
      */
     public void addMapping(Class<?> entityClass, String selector, String property) {
+        checkNotFrozen();
         mapping.get(entityClass).put(selector, property);
+        version++;
     }
 
     /**
@@ -107,7 +143,27 @@ public class SimpleMapper implements Mapper {
      * @param Mapping {entity class -> {selector -> property}}
      */
     public void setMapping(Map<Class<?>, Map<String, String>> mapping) {
+        checkNotFrozen();
         this.mapping = mapping;
+        version++;
+    }
+
+    /**
+     * Version of the mapping, incremented on every change made through this
+     * mapper. Caches of resolved selectors use it to detect stale entries;
+     * changes made directly on the map returned by {@link #getMapping()} are
+     * not tracked.
+     *
+     * @return The current mapping version.
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    private void checkNotFrozen() {
+        if (frozen) {
+            throw new UnsupportedOperationException("Mapping is frozen.");
+        }
     }
 
 }
\ No newline at end of file
@@ -0,0 +1,165 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2013 Jakub Jirutka <jakub@jirutka.cz>.
+ * Copyright 2015 Antonio Rabelo.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.tennaito.rsql.misc;
+
+import java.text.ParsePosition;
+import java.time.DateTimeException;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeFormatterBuilder;
+import java.time.temporal.ChronoField;
+import java.time.temporal.TemporalAccessor;
+import java.time.temporal.TemporalQueries;
+import java.util.Date;
+
+/**
+ * Converter of ISO 8601 arguments into dates and times.
+ *
+ * One immutable formatter accepts a date with optional time, offset and zone
+ * (e.g. 2011-08-26, 2011-08-26T14:15:30, 2011-08-26T14:15:30.5+02:00[Europe/Paris]).
+ * Arguments are parsed without resolving and without exceptions, so
+ * the format is detected from the parsed fields. Arguments without offset nor
+ * zone are read in the configured zone when the target is an instant.
+ *
+ * Supported targets are java.util.Date, LocalDate, LocalDateTime, Instant,
+ * OffsetDateTime and ZonedDateTime.
+ *
+ * @author AntonioRabelo
+ */
+final class TemporalArgumentConverter implements ArgumentConverter<Object> {
+
+    private static final DateTimeFormatter FORMATTER = new DateTimeFormatterBuilder()
+            .append(DateTimeFormatter.ISO_LOCAL_DATE)
+            .optionalStart()
+            .appendLiteral('T')
+            .append(DateTimeFormatter.ISO_LOCAL_TIME)
+            .optionalStart()
+            .appendOffsetId()
+            .optionalEnd()
+            .optionalStart()
+            .appendLiteral('[')
+            .parseCaseSensitive()
+            .appendZoneRegionId()
+            .appendLiteral(']')
+            .optionalEnd()
+            .optionalEnd()
+            .toFormatter();
+
+    private final Class<?> type;
+
+    private final ZoneId zone;
+
+    private TemporalArgumentConverter(Class<?> type, ZoneId zone) {
+        this.type = type;
+        this.zone = zone;
+    }
+
+    /**
+     * Create the converter of a type.
+     *
+     * @param type  Property type.
+     * @param zone  Zone of the arguments without offset, null for the system zone.
+     * @return      The converter or null when the type is not a supported date or time.
+     */
+    static TemporalArgumentConverter of(Class<?> type, ZoneId zone) {
+        if (type.equals(Date.class) || type.equals(LocalDate.class) || type.equals(LocalDateTime.class)
+                || type.equals(Instant.class) || type.equals(OffsetDateTime.class) || type.equals(ZonedDateTime.class)) {
+            return new TemporalArgumentConverter(type, zone);
+        }
+        return null;
+    }
+
+    /* (non-Javadoc)
+     * @see com.github.tennaito.rsql.misc.ArgumentConverter#convert(java.lang.String)
+     */
+    public Object convert(String argument) {
+        ParsePosition position = new ParsePosition(0);
+        TemporalAccessor parsed = FORMATTER.parseUnresolved(argument, position);
+        if (parsed == null || position.getErrorIndex() >= 0 || position.getIndex() != argument.length()) {
+            throw new IllegalArgumentException("Not an ISO 8601 date: " + argument);
+        }
+        try {
+            return toType(parsed);
+        } catch (DateTimeException ex) {
+            throw new IllegalArgumentException(ex);
+        }
+    }
+
+    private Object toType(TemporalAccessor parsed) {
+        LocalDate date = LocalDate.of(
+                (int) parsed.getLong(ChronoField.YEAR),
+                (int) parsed.getLong(ChronoField.MONTH_OF_YEAR),
+                (int) parsed.getLong(ChronoField.DAY_OF_MONTH));
+        if (type.equals(LocalDate.class)) {
+            return date;
+        }
+        LocalDateTime dateTime = date.atTime(timeOf(parsed));
+        if (type.equals(LocalDateTime.class)) {
+            return dateTime;
+        }
+        ZonedDateTime zoned = zonedOf(dateTime, parsed);
+        if (type.equals(ZonedDateTime.class)) {
+            return zoned;
+        }
+        if (type.equals(OffsetDateTime.class)) {
+            return zoned.toOffsetDateTime();
+        }
+        if (type.equals(Instant.class)) {
+            return zoned.toInstant();
+        }
+        return new Date(zoned.toInstant().toEpochMilli());
+    }
+
+    private static LocalTime timeOf(TemporalAccessor parsed) {
+        if (!parsed.isSupported(ChronoField.HOUR_OF_DAY)) {
+            return LocalTime.MIDNIGHT;
+        }
+        return LocalTime.of(
+                (int) parsed.getLong(ChronoField.HOUR_OF_DAY),
+                (int) parsed.getLong(ChronoField.MINUTE_OF_HOUR),
+                parsed.isSupported(ChronoField.SECOND_OF_MINUTE) ? (int) parsed.getLong(ChronoField.SECOND_OF_MINUTE) : 0,
+                parsed.isSupported(ChronoField.NANO_OF_SECOND) ? (int) parsed.getLong(ChronoField.NANO_OF_SECOND) : 0);
+    }
+
+    private ZonedDateTime zonedOf(LocalDateTime dateTime, TemporalAccessor parsed) {
+        ZoneOffset offset = parsed.isSupported(ChronoField.OFFSET_SECONDS)
+                ? ZoneOffset.ofTotalSeconds((int) parsed.getLong(ChronoField.OFFSET_SECONDS)) : null;
+        ZoneId parsedZone = parsed.query(TemporalQueries.zoneId());
+        if (parsedZone != null && !(parsedZone instanceof ZoneOffset)) {
+            return ZonedDateTime.ofLocal(dateTime, parsedZone, offset);
+        }
+        if (offset != null) {
+            return ZonedDateTime.of(dateTime, offset);
+        }
+        return ZonedDateTime.of(dateTime, zone != null ? zone : ZoneId.systemDefault());
+    }
+}
@@ -0,0 +1,330 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2013 Jakub Jirutka <jakub@jirutka.cz>.
+ * Copyright 2015 Antonio Rabelo.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.tennaito.rsql.parser;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import cz.jirutka.rsql.parser.RSQLParser;
+import cz.jirutka.rsql.parser.ast.ComparisonNode;
+import cz.jirutka.rsql.parser.ast.LogicalNode;
+import cz.jirutka.rsql.parser.ast.LogicalOperator;
+import cz.jirutka.rsql.parser.ast.Node;
+import cz.jirutka.rsql.parser.ast.RSQLOperators;
+
+/**
+ * RSQLParserCache
+ *
+ * Thread-safe cache in front of the RSQLParser. Filters are looked up by their
+ * trimmed text, so a filter sent again is not parsed again. Parsed trees are
+ * interned by a canonical fingerprint, which ignores the order of the children
+ * of AND/OR nodes and of the values of IN/OUT lists: equivalent filters written
+ * differently share the same tree instance, for as long as one of them is
+ * cached.
+ *
+ * The cache is bounded both by number of filters and by their total length in
+ * characters, the oldest filters are evicted first. RSQL AST nodes are immutable,
+ * so cached trees can be shared between threads.
+ *
+ * @author AntonioRabelo
+ */
+public class RSQLParserCache {
+
+    public static final int DEFAULT_MAXIMUM_SIZE = 1024;
+
+    public static final long DEFAULT_MAXIMUM_WEIGHT = 1024 * 1024;
+
+    private final RSQLParser parser;
+
+    private final int maximumSize;
+
+    private final long maximumWeight;
+
+    private final ConcurrentMap<String, Entry> entries = new ConcurrentHashMap<String, Entry>();
+
+    /**
+     * Interned trees by fingerprint, with the number of cached filters that
+     * refer to them; guarded by itself.
+     */
+    private final Map<String, Canonical> canonical = new HashMap<String, Canonical>();
+
+    private final Queue<String> insertionOrder = new ConcurrentLinkedQueue<String>();
+
+    private final AtomicLong weight = new AtomicLong();
+
+    private final AtomicLong hits = new AtomicLong();
+
+    private final AtomicLong misses = new AtomicLong();
+
+    private final AtomicLong evictions = new AtomicLong();
+
+    /**
+     * Construct a cache for the default RSQL operators with default bounds.
+     */
+    public RSQLParserCache() {
+        this(new RSQLParser(), DEFAULT_MAXIMUM_SIZE, DEFAULT_MAXIMUM_WEIGHT);
+    }
+
+    /**
+     * Construct a cache.
+     *
+     * @param parser         Parser used on cache misses.
+     * @param maximumSize    Maximum number of filters kept.
+     * @param maximumWeight  Maximum total length of the filters kept.
+     */
+    public RSQLParserCache(RSQLParser parser, int maximumSize, long maximumWeight) {
+        if (parser == null) {
+            throw new IllegalArgumentException("Parser was undefined.");
+        }
+        if (maximumSize < 1 || maximumWeight < 1) {
+            throw new IllegalArgumentException("Maximum size and weight must be positive: " + maximumSize + ", " + maximumWeight);
+        }
+        this.parser = parser;
+        this.maximumSize = maximumSize;
+        this.maximumWeight = maximumWeight;
+    }
+
+    /**
+     * Parse a filter, or get its tree from the cache.
+     *
+     * @param filter  RSQL filter.
+     * @return        The root node of the filter.
+     * @throws cz.jirutka.rsql.parser.RSQLParserException when the filter is invalid, such filters are not cached.
+     */
+    public Node parse(String filter) {
+        if (filter == null) {
+            throw new IllegalArgumentException("Filter was undefined.");
+        }
+        String key = filter.trim();
+        Entry entry = entries.get(key);
+        if (entry != null) {
+            hits.incrementAndGet();
+            return entry.node;
+        }
+        misses.incrementAndGet();
+        Node parsed = parser.parse(key);
+        String fingerprint = fingerprint(parsed);
+        if (key.length() > maximumWeight) {
+            return lookup(fingerprint, parsed);
+        }
+        Node node = acquire(fingerprint, parsed);
+        if (entries.putIfAbsent(key, new Entry(node, fingerprint, key.length())) == null) {
+            insertionOrder.add(key);
+            weight.addAndGet(key.length());
+            evict();
+        } else {
+            release(fingerprint);
+        }
+        return node;
+    }
+
+    /**
+     * @return Number of filters found in the cache.
+     */
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    /**
+     * @return Number of filters that had to be parsed.
+     */
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    /**
+     * @return Number of filters evicted to respect the bounds.
+     */
+    public long getEvictionCount() {
+        return evictions.get();
+    }
+
+    /**
+     * @return Number of cached filters.
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * @return Total length of the cached filters.
+     */
+    public long weight() {
+        return weight.get();
+    }
+
+    /**
+     * Remove all cached filters, statistics are kept.
+     */
+    public void clear() {
+        String key;
+        while ((key = insertionOrder.poll()) != null) {
+            remove(key);
+        }
+    }
+
+    /**
+     * Build the canonical fingerprint of a tree: children of logical nodes with
+     * the same operator are flattened and, like the values of IN/OUT lists, sorted.
+     *
+     * @param node  RSQL AST node.
+     * @return      The fingerprint, equal for equivalent trees.
+     */
+    public static String fingerprint(Node node) {
+        StringBuilder fingerprint = new StringBuilder();
+        appendFingerprint(node, fingerprint);
+        return fingerprint.toString();
+    }
+
+    /**
+     * Get the interned tree equivalent to a parsed one, without interning it.
+     */
+    private Node lookup(String fingerprint, Node node) {
+        synchronized (canonical) {
+            Canonical interned = canonical.get(fingerprint);
+            return interned == null ? node : interned.node;
+        }
+    }
+
+    /**
+     * Intern a parsed tree for one more cached filter.
+     */
+    private Node acquire(String fingerprint, Node node) {
+        synchronized (canonical) {
+            Canonical interned = canonical.get(fingerprint);
+            if (interned == null) {
+                interned = new Canonical(node);
+                canonical.put(fingerprint, interned);
+            }
+            interned.references++;
+            return interned.node;
+        }
+    }
+
+    /**
+     * Drop the interned tree once no cached filter refers to it.
+     */
+    private void release(String fingerprint) {
+        synchronized (canonical) {
+            Canonical interned = canonical.get(fingerprint);
+            if (interned != null && --interned.references == 0) {
+                canonical.remove(fingerprint);
+            }
+        }
+    }
+
+    private void evict() {
+        while (entries.size() > maximumSize || weight.get() > maximumWeight) {
+            String key = insertionOrder.poll();
+            if (key == null) {
+                return;
+            }
+            if (remove(key)) {
+                evictions.incrementAndGet();
+            }
+        }
+    }
+
+    private boolean remove(String key) {
+        Entry removed = entries.remove(key);
+        if (removed != null) {
+            weight.addAndGet(-removed.weight);
+            release(removed.fingerprint);
+            return true;
+        }
+        return false;
+    }
+
+    private static void appendFingerprint(Node node, StringBuilder fingerprint) {
+        if (node instanceof LogicalNode) {
+            LogicalNode logical = (LogicalNode) node;
+            List<String> children = new ArrayList<String>();
+            collectChildren(logical.getOperator(), logical, children);
+            Collections.sort(children);
+            fingerprint.append(logical.getOperator()).append('(');
+            for (String child : children) {
+                fingerprint.append(child).append(';');
+            }
+            fingerprint.append(')');
+        } else if (node instanceof ComparisonNode) {
+            ComparisonNode comparison = (ComparisonNode) node;
+            List<String> arguments = comparison.getArguments();
+            if (RSQLOperators.IN.equals(comparison.getOperator()) || RSQLOperators.NOT_IN.equals(comparison.getOperator())) {
+                arguments = new ArrayList<String>(arguments);
+                Collections.sort(arguments);
+            }
+            fingerprint.append(comparison.getSelector()).append(comparison.getOperator().getSymbol()).append('[');
+            for (String argument : arguments) {
+                fingerprint.append(argument.length()).append(':').append(argument);
+            }
+            fingerprint.append(']');
+        } else {
+            throw new IllegalArgumentException("Unknown expression type: " + node.getClass());
+        }
+    }
+
+    private static void collectChildren(LogicalOperator operator, LogicalNode node, List<String> children) {
+        for (Node child : node.getChildren()) {
+            if (child instanceof LogicalNode && ((LogicalNode) child).getOperator() == operator) {
+                collectChildren(operator, (LogicalNode) child, children);
+            } else {
+                StringBuilder fingerprint = new StringBuilder();
+                appendFingerprint(child, fingerprint);
+                children.add(fingerprint.toString());
+            }
+        }
+    }
+
+    private static final class Entry {
+
+        private final Node node;
+        private final String fingerprint;
+        private final int weight;
+
+        Entry(Node node, String fingerprint, int weight) {
+            this.node = node;
+            this.fingerprint = fingerprint;
+            this.weight = weight;
+        }
+    }
+
+    private static final class Canonical {
+
+        private final Node node;
+        private int references;
+
+        Canonical(Node node) {
+            this.node = node;
+        }
+    }
+}
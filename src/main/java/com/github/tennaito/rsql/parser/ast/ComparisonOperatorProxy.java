@@ -46,17 +46,25 @@ public enum ComparisonOperatorProxy {
 	LESS_THAN(RSQLOperators.LESS_THAN),
 	LESS_THAN_OR_EQUAL(RSQLOperators.LESS_THAN_OR_EQUAL),
 	IN(RSQLOperators.IN),
-	NOT_IN(RSQLOperators.NOT_IN);
+	NOT_IN(RSQLOperators.NOT_IN),
+	/**
+	 * Inclusive range with two arguments (lower and upper bound). It is not
+	 * one of the default RSQL operators: the parser only accepts it when it
+	 * is added to its operators, it is mostly created by the normalization.
+	 */
+	BETWEEN(new ComparisonOperator("=between=", true));
 
 	private ComparisonOperator operator;
 	
-	private final static Map<ComparisonOperator, ComparisonOperatorProxy> CACHE = 
-			Collections.synchronizedMap(new HashMap<ComparisonOperator, ComparisonOperatorProxy>());
+	// read-only after initialization, so lookups need no locking
+	private final static Map<ComparisonOperator, ComparisonOperatorProxy> CACHE;
 	
 	static {
+		Map<ComparisonOperator, ComparisonOperatorProxy> cache = new HashMap<ComparisonOperator, ComparisonOperatorProxy>();
 		for (ComparisonOperatorProxy proxy : values()) {
-			CACHE.put(proxy.getOperator(), proxy);
+			cache.put(proxy.getOperator(), proxy);
 		}
+		CACHE = Collections.unmodifiableMap(cache);
 	}
 
     private ComparisonOperatorProxy(ComparisonOperator operator) {
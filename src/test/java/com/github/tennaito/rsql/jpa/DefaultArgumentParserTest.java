@@ -27,12 +27,23 @@ import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.Arrays;
 import java.util.Date;
 import java.util.GregorianCalendar;
+import java.util.UUID;
 
 import org.junit.Test;
 
 import com.github.tennaito.rsql.jpa.entity.Course;
+import com.github.tennaito.rsql.misc.ArgumentConverter;
 import com.github.tennaito.rsql.misc.ArgumentFormatException;
 import com.github.tennaito.rsql.misc.ArgumentParser;
 import com.github.tennaito.rsql.misc.DefaultArgumentParser;
@@ -180,7 +191,63 @@ public class DefaultArgumentParserTest {
         	assertEquals("Cannot parse argument type " + Course.class, e.getMessage());
         }
     }    
+
+    @Test
+    public void testParseBuiltInAndRegisteredTypes() throws Exception {
+        assertEquals(Short.valueOf((short) 12), instance.parse("12", short.class));
+        assertEquals(Byte.valueOf((byte) 7), instance.parse("7", Byte.class));
+        assertEquals(new BigInteger("123456789123456789123456789"), instance.parse("123456789123456789123456789", BigInteger.class));
+        assertEquals(Character.valueOf('x'), instance.parse("x", char.class));
+        assertEquals(UUID.fromString("1b4e28ba-2fa1-11d2-883f-0016d3cca427"), instance.parse("1b4e28ba-2fa1-11d2-883f-0016d3cca427", UUID.class));
+        assertEquals(Arrays.asList(1L, null, 3L), instance.parse(Arrays.asList("1", "NULL", "3"), Long.class));
+
+        try {
+            instance.parse("xy", Character.class);
+            fail();
+        } catch (ArgumentFormatException e) {
+            assertEquals("Cannot cast 'xy' to type " + Character.class, e.getMessage());
+        }
+
+        DefaultArgumentParser parser = new DefaultArgumentParser();
+        assertTrue(parser.parse("foo", MockValueOfType.class) instanceof MockValueOfType);
+        parser.registerConverter(MockValueOfType.class, new ArgumentConverter<MockValueOfType>() {
+            public MockValueOfType convert(String argument) {
+                throw new IllegalArgumentException(argument);
+            }
+        });
+        try {
+            parser.parse("foo", MockValueOfType.class);
+            fail();
+        } catch (ArgumentFormatException e) {
+            assertEquals(MockValueOfType.class, e.getPropertyType());
+        }
+        // registered converters do not leak into the shared ones
+        assertTrue(new DefaultArgumentParser().parse("foo", MockValueOfType.class) instanceof MockValueOfType);
+    }
     
+    @Test
+    public void testParseTemporalTypes() throws Exception {
+        DefaultArgumentParser parser = new DefaultArgumentParser(ZoneId.of("America/Sao_Paulo"));
+        assertEquals(LocalDate.of(2011, 8, 26), parser.parse("2011-08-26", LocalDate.class));
+        assertEquals(LocalDateTime.of(2011, 8, 26, 14, 15, 30, 500000000), parser.parse("2011-08-26T14:15:30.5", LocalDateTime.class));
+        assertEquals(LocalDateTime.of(2011, 8, 26, 0, 0), parser.parse("2011-08-26", LocalDateTime.class));
+        assertEquals(Instant.parse("2011-08-26T17:15:30Z"), parser.parse("2011-08-26T14:15:30", Instant.class));
+        assertEquals(Instant.parse("2011-08-26T12:15:30Z"), parser.parse("2011-08-26T14:15:30+02:00", Instant.class));
+        assertEquals(OffsetDateTime.of(2011, 8, 26, 14, 15, 30, 0, ZoneOffset.UTC), parser.parse("2011-08-26T14:15:30Z", OffsetDateTime.class));
+        assertEquals(ZonedDateTime.of(2011, 8, 26, 14, 15, 30, 0, ZoneId.of("Europe/Paris")),
+                parser.parse("2011-08-26T14:15:30+02:00[Europe/Paris]", ZonedDateTime.class));
+        assertEquals(new Date(Instant.parse("2011-08-26T03:00:00Z").toEpochMilli()), parser.parse("2011-08-26", Date.class));
+
+        for (String argument : Arrays.asList("2011-08", "2011-13-01", "2011-08-26T", "2011-08-26x")) {
+            try {
+                parser.parse(argument, LocalDate.class);
+                fail(argument);
+            } catch (ArgumentFormatException e) {
+                assertEquals(LocalDate.class, e.getPropertyType());
+            }
+        }
+    }
+
     ////////////////////////// Mocks //////////////////////////
     
     protected enum MockEnum {
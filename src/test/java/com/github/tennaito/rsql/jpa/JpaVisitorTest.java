@@ -28,21 +28,38 @@ import static junit.framework.Assert.assertEquals;
 import static junit.framework.Assert.assertFalse;
 import static junit.framework.Assert.assertNotNull;
 import static junit.framework.Assert.assertNull;
+import static junit.framework.Assert.assertTrue;
 import static junit.framework.Assert.fail;
 
 import java.lang.reflect.Constructor;
 import java.lang.reflect.Field;
 import java.lang.reflect.Modifier;
+import java.sql.Timestamp;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
-
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import javax.persistence.AttributeNode;
+import javax.persistence.EntityGraph;
 import javax.persistence.EntityManager;
+import javax.persistence.Subgraph;
+import javax.persistence.Tuple;
+import javax.persistence.TypedQuery;
+import javax.persistence.criteria.CriteriaBuilder;
 import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Expression;
+import javax.persistence.criteria.Fetch;
 import javax.persistence.criteria.From;
+import javax.persistence.criteria.JoinType;
+import javax.persistence.criteria.Path;
 import javax.persistence.criteria.Predicate;
 import javax.persistence.criteria.Root;
 
@@ -50,17 +67,29 @@ import org.junit.Before;
 import org.junit.Test;
 
 import com.github.tennaito.rsql.builder.BuilderTools;
+import com.github.tennaito.rsql.builder.SimpleBuilderTools;
 import com.github.tennaito.rsql.jpa.entity.Course;
+import com.github.tennaito.rsql.jpa.entity.Department;
+import com.github.tennaito.rsql.jpa.entity.Person;
+import com.github.tennaito.rsql.jpa.entity.Title;
+import com.github.tennaito.rsql.misc.ArgumentConverter;
+import com.github.tennaito.rsql.misc.ArgumentFormatException;
+import com.github.tennaito.rsql.misc.ArgumentParser;
+import com.github.tennaito.rsql.misc.DefaultArgumentParser;
+import com.github.tennaito.rsql.misc.Mapper;
 import com.github.tennaito.rsql.misc.SimpleMapper;
+import com.github.tennaito.rsql.parser.RSQLParserCache;
 import com.github.tennaito.rsql.parser.ast.ComparisonOperatorProxy;
 
 import cz.jirutka.rsql.parser.RSQLParser;
 import cz.jirutka.rsql.parser.ast.AbstractNode;
+import cz.jirutka.rsql.parser.ast.AndNode;
 import cz.jirutka.rsql.parser.ast.ComparisonNode;
 import cz.jirutka.rsql.parser.ast.ComparisonOperator;
 import cz.jirutka.rsql.parser.ast.LogicalNode;
 import cz.jirutka.rsql.parser.ast.LogicalOperator;
 import cz.jirutka.rsql.parser.ast.Node;
+import cz.jirutka.rsql.parser.ast.RSQLOperators;
 import cz.jirutka.rsql.parser.ast.RSQLVisitor;
 
 /**
@@ -395,6 +424,58 @@ public class JpaVisitorTest extends AbstractVisitorTest<Course> {
 		assertEquals("Testing Course", courses.get(0).getName());
     }
 
+    @Test
+    public void testRegisteredComparisonOperator() {
+    	ComparisonOperator newOp = new ComparisonOperator("=def=");
+    	Set<ComparisonOperator> set = new HashSet<ComparisonOperator>(RSQLOperators.defaultOperators());
+    	set.add(newOp);
+    	Node rootNode = new RSQLParser(set).parse("id=def=1;name==Testing*");
+
+    	final List<String> handled = new ArrayList<String>();
+    	JpaCriteriaQueryVisitor<Course> visitor = new JpaCriteriaQueryVisitor<Course>();
+    	visitor.getBuilderTools().getOperatorRegistry().register(newOp, new OperatorHandler() {
+    		public Predicate createPredicate(ComparisonNode comparison, Path<?> path, List<Object> arguments, EntityManager manager, BuilderTools tools) {
+    			handled.add(comparison.getSelector());
+    			return manager.getCriteriaBuilder().equal(path, arguments.get(0));
+    		}
+    	});
+    	// registered only for strings, other types keep the built-in operator
+    	visitor.getBuilderTools().getOperatorRegistry().register(RSQLOperators.EQUAL, String.class, new OperatorHandler() {
+    		public Predicate createPredicate(ComparisonNode comparison, Path<?> path, List<Object> arguments, EntityManager manager, BuilderTools tools) {
+    			handled.add(comparison.getSelector());
+    			return manager.getCriteriaBuilder().like((Path<String>) path, ((String) arguments.get(0)).replace('*', '%'));
+    		}
+    	});
+    	assertTrue(visitor.getBuilderTools().getOperatorRegistry().isBuiltIn(RSQLOperators.EQUAL, Long.class));
+    	assertFalse(visitor.getBuilderTools().getOperatorRegistry().isBuiltIn(RSQLOperators.EQUAL, String.class));
+
+    	List<Course> courses = entityManager.createQuery(rootNode.accept(visitor, entityManager)).getResultList();
+    	assertEquals("Testing Course", courses.get(0).getName());
+    	assertEquals(Arrays.asList("id", "name"), handled);
+    }
+
+    @Test
+    public void testStrategyBetweenOperator() {
+        // a strategy that already defined =between= as a list of values
+        Set<ComparisonOperator> set = new HashSet<ComparisonOperator>();
+        set.add(new ComparisonOperator("=between=", true));
+        Node rootNode = new RSQLParser(set).parse("id=between=(0,5)");
+
+        JpaCriteriaQueryVisitor<Course> visitor = new JpaCriteriaQueryVisitor<Course>();
+        assertEquals(1, entityManager.createQuery(rootNode.accept(visitor, entityManager)).getResultList().size());
+
+        visitor = new JpaCriteriaQueryVisitor<Course>();
+        visitor.getBuilderTools().setPredicateBuilder(new PredicateBuilderStrategy() {
+            public <T> Predicate createPredicate(Node node, From root, Class<T> entity,
+                    EntityManager manager, BuilderTools tools) throws IllegalArgumentException {
+                ComparisonNode comp = (ComparisonNode) node;
+                ComparisonNode in = new ComparisonNode(RSQLOperators.IN, comp.getSelector(), comp.getArguments());
+                return PredicateBuilder.createPredicate(in, root, entity, manager, tools);
+            }
+        });
+        assertTrue(entityManager.createQuery(rootNode.accept(visitor, entityManager)).getResultList().isEmpty());
+    }
+
 	private void createDefOperator(JpaCriteriaQueryVisitor<Course> visitor) {
 		// define new operator resolver
     	PredicateBuilderStrategy predicateStrategy = new PredicateBuilderStrategy() {
@@ -453,6 +534,41 @@ public class JpaVisitorTest extends AbstractVisitorTest<Course> {
 		assertNull(((SimpleMapper)visitor.getBuilderTools().getPropertiesMapper()).getMapping());
 	}
 
+	@Test
+	public void testAssociationAliasFollowedByProperty() throws Exception {
+		Node rootNode = new RSQLParser().parse("dept.head.name==Some");
+		JpaCriteriaQueryVisitor<Course> visitor = new JpaCriteriaQueryVisitor<Course>();
+		((SimpleMapper)visitor.getBuilderTools().getPropertiesMapper()).addMapping(Course.class, new HashMap<String, String>());
+		((SimpleMapper)visitor.getBuilderTools().getPropertiesMapper()).addMapping(Course.class, "dept", "department");
+
+		CriteriaQuery<Course> query = rootNode.accept(visitor, entityManager);
+		List<Course> courses = entityManager.createQuery(query).getResultList();
+		assertEquals("Testing Course", courses.get(0).getName());
+	}
+
+	@Test
+	public void testSelectorPlanIsCached() throws Exception {
+		BuilderTools tools = new JpaCriteriaQueryVisitor<Course>().getBuilderTools();
+		SelectorPlan plan = PredicateBuilder.findSelectorPlan("department.head.name", Course.class, entityManager, tools);
+		assertEquals(3, plan.getSteps().size());
+		assertEquals(SelectorPlan.Kind.ASSOCIATION, plan.getSteps().get(0).getKind());
+		assertEquals(String.class, plan.getJavaType());
+		assertTrue(plan == PredicateBuilder.findSelectorPlan("department.head.name", Course.class, entityManager, tools));
+		assertEquals(1, tools.getSelectorPlanCache().size());
+	}
+
+	@Test
+	public void testSelectorPlanFollowsMapperChanges() throws Exception {
+		BuilderTools tools = new JpaCriteriaQueryVisitor<Course>().getBuilderTools();
+		SimpleMapper mapper = (SimpleMapper) tools.getPropertiesMapper();
+		mapper.addMapping(Course.class, new HashMap<String, String>());
+		mapper.addMapping(Course.class, "alias", "name");
+		assertEquals("name", PredicateBuilder.findSelectorPlan("alias", Course.class, entityManager, tools).getSteps().get(0).getAttribute());
+
+		mapper.addMapping(Course.class, "alias", "code");
+		assertEquals("code", PredicateBuilder.findSelectorPlan("alias", Course.class, entityManager, tools).getSteps().get(0).getAttribute());
+	}
+
 	@Test
     public void testAndSelection() throws Exception {
         Node rootNode = new RSQLParser().parse("department.id==1;id==2");
@@ -504,6 +620,335 @@ public class JpaVisitorTest extends AbstractVisitorTest<Course> {
 
         Long courseCount = entityManager.createQuery(query).getSingleResult();
         assertEquals((Long)1l, courseCount);
+        assertEquals(1, query.getRoots().size());
+    }
+
+    @Test
+    public void testCollectionJoinCount() throws Exception {
+        Node rootNode = new RSQLParser().parse("department.head.titles.name=in=(Phd,Consultant)");
+        JpaCriteriaCountQueryVisitor<Course> visitor = new JpaCriteriaCountQueryVisitor<Course>();
+        assertEquals((Long) 1L, entityManager.createQuery(rootNode.accept(visitor, entityManager)).getSingleResult());
+
+        JpaTranslator<Course> translator = new JpaTranslator<Course>(Course.class);
+        assertEquals((Long) 1L, entityManager.createQuery(translator.toCountQuery(rootNode, entityManager)).getSingleResult());
+        assertEquals((Long) 1L, entityManager.createQuery(translator.toCountQuery(new RSQLParser().parse("department.code==MI-MDW"), entityManager)).getSingleResult());
+    }
+
+    @Test
+    public void testCappedAndEstimatedCount() throws Exception {
+        RSQLParser parser = new RSQLParser();
+        JpaCounter<Course> counter = new JpaCounter<Course>(Course.class);
+        assertEquals(1, counter.count(parser.parse("id==1"), entityManager));
+        assertEquals(1, counter.countCapped(parser.parse("id==1"), entityManager, 10));
+        assertEquals(1, counter.countCapped(parser.parse("id==1"), entityManager, 0));
+        assertEquals(0, counter.countCapped(parser.parse("id==2"), entityManager, 0));
+        assertEquals(1, counter.countCapped(parser.parse("department.head.titles.name=in=(Phd,Consultant)"), entityManager, 5));
+        try {
+            counter.estimate(parser.parse("id==1"), entityManager);
+            fail();
+        } catch (IllegalStateException e) {
+            // no estimator
+        }
+
+        SelectivityCountEstimator<Course> estimator = new SelectivityCountEstimator<Course>(new SelectivityReorderer<Course>(Course.class));
+        counter = new JpaCounter<Course>(new JpaTranslator<Course>(Course.class), estimator);
+        assertEquals(0, counter.estimate(parser.parse("id==1"), entityManager));
+        assertEquals(1, estimator.getRowCount());
+        estimator.setRowCount(1000000);
+        assertEquals(100, counter.estimate(parser.parse("id==1"), entityManager));
+        assertEquals(250000, counter.estimate(parser.parse("name==*Course"), entityManager));
+    }
+
+    @Test
+    public void testCountCache() throws Exception {
+        RSQLParser parser = new RSQLParser();
+        CountCache cache = new CountCache(1, TimeUnit.MINUTES).register();
+        JpaCounter<Title> counter = new JpaCounter<Title>(new JpaTranslator<Title>(Title.class), null, cache);
+        assertEquals(2, counter.count(parser.parse("id=gt=0;name!=Nobody"), entityManager));
+        assertEquals(2, counter.count(parser.parse("name!=Nobody;id=gt=0"), entityManager));
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1, cache.size());
+
+        Title title = new Title();
+        title.setId(99L);
+        title.setName("Professor");
+        entityManager.getTransaction().begin();
+        entityManager.persist(title);
+        entityManager.getTransaction().commit();
+        try {
+            assertEquals(0, cache.size());
+            assertEquals(3, counter.count(parser.parse("id=gt=0;name!=Nobody"), entityManager));
+        } finally {
+            entityManager.getTransaction().begin();
+            entityManager.remove(title);
+            entityManager.getTransaction().commit();
+        }
+        assertEquals(2, counter.count(parser.parse("id=gt=0;name!=Nobody"), entityManager));
+
+        cache.invalidateAll();
+        assertNull(cache.get(Title.class, parser.parse("id=gt=0;name!=Nobody")));
+    }
+
+    @Test
+    public void testCountCacheKeys() throws Exception {
+        RSQLParser parser = new RSQLParser();
+        Node first = parser.parse("id==1");
+        Node second = parser.parse("id==2");
+        CountCache cache = new CountCache(1, TimeUnit.MINUTES, 2);
+        cache.count(Title.class, first, new FixedCount(1));
+        cache.invalidate(Title.class);
+        cache.count(Title.class, first, new FixedCount(1));
+        cache.count(Title.class, second, new FixedCount(2));
+        // the item left by the invalidated count does not evict the fresh one
+        assertEquals(Long.valueOf(1), cache.get(Title.class, first));
+        assertEquals(Long.valueOf(2), cache.get(Title.class, second));
+        assertEquals(2, cache.size());
+
+        SimpleMapper mapper = new SimpleMapper();
+        SimpleBuilderTools tools = new SimpleBuilderTools();
+        tools.setPropertiesMapper(mapper);
+        cache.invalidateAll();
+        cache.count(Title.class, first, tools, new FixedCount(3));
+        assertEquals(Long.valueOf(3), cache.get(Title.class, first, tools));
+        assertNull(cache.get(Title.class, first));
+        assertNull(cache.get(Title.class, first, new SimpleBuilderTools()));
+        mapper.addMapping(Title.class, new HashMap<String, String>());
+        assertNull(cache.get(Title.class, first, tools));
+    }
+
+    private static final class FixedCount implements CountCache.Loader {
+
+        private final long count;
+
+        FixedCount(long count) {
+            this.count = count;
+        }
+
+        @Override
+        public long load() {
+            return count;
+        }
+    }
+
+    @Test
+    public void testKeysetPagination() throws Exception {
+        KeysetPagination<Title> titles = new KeysetPagination<Title>(Title.class);
+        SortSpecification sort = SortSpecification.parse("name");
+        KeysetPage<Title> page = titles.findPage(null, sort, null, 1, entityManager);
+        assertEquals("Consultant", page.getContent().get(0).getName());
+        assertTrue(page.hasNext());
+        page = titles.findPage(null, sort, page.getNextCursor(), 1, entityManager);
+        assertEquals("Phd", page.getContent().get(0).getName());
+        assertFalse(page.hasNext());
+
+        page = titles.findPage(new RSQLParser().parse("id=gt=0"), SortSpecification.parse("-name, -id"), null, 5, entityManager);
+        assertEquals(2, page.getContent().size());
+        assertEquals("Phd", page.getContent().get(0).getName());
+        assertNull(page.getNextCursor());
+
+        KeysetPagination<Course> courses = new KeysetPagination<Course>(Course.class);
+        sort = SortSpecification.parse("department.code,-startDate");
+        assertEquals("department.code,-startDate", sort.toString());
+        CriteriaQuery<Tuple> query = courses.toCriteriaQuery(new RSQLParser().parse("department.name==Testing"), sort, null, entityManager);
+        assertEquals(1, query.getRoots().iterator().next().getJoins().size());
+        Tuple last = entityManager.createQuery(query).getResultList().get(0);
+        assertEquals(0, entityManager.createQuery(courses.toCriteriaQuery(null, sort, courses.cursorOf(last), entityManager)).getResultList().size());
+
+        try {
+            titles.findPage(null, SortSpecification.parse("name"), "invalid", 1, entityManager);
+            fail();
+        } catch (IllegalArgumentException e) {
+            // not a cursor of the sort keys
+        }
+    }
+
+    @Test
+    public void testKeysetCursorExactValues() throws Exception {
+        KeysetPagination<Title> titles = new KeysetPagination<Title>(Title.class);
+        Title title = new Title();
+        title.setId(98L);
+        title.setName("null");
+        entityManager.getTransaction().begin();
+        entityManager.persist(title);
+        entityManager.getTransaction().commit();
+        try {
+            // the cursor after "null" must not read as a null key
+            KeysetPage<Title> page = titles.findPage(null, SortSpecification.parse("-name"), null, 1, entityManager);
+            assertEquals("null", page.getContent().get(0).getName());
+            page = titles.findPage(null, SortSpecification.parse("-name"), page.getNextCursor(), 5, entityManager);
+            assertEquals(2, page.getContent().size());
+            assertEquals("Phd", page.getContent().get(0).getName());
+        } finally {
+            entityManager.getTransaction().begin();
+            entityManager.remove(title);
+            entityManager.getTransaction().commit();
+        }
+
+        Timestamp awarded = new Timestamp(1314368130000L);
+        awarded.setNanos(123456000);
+        entityManager.getTransaction().begin();
+        entityManager.createQuery("update Title t set t.awarded = :awarded").setParameter("awarded", awarded).executeUpdate();
+        awarded.setNanos(123457000);
+        entityManager.createQuery("update Title t set t.awarded = :awarded where t.id = 2").setParameter("awarded", awarded).executeUpdate();
+        entityManager.getTransaction().commit();
+        entityManager.clear();
+        try {
+            // both keys are in the same millisecond, the cursor keeps the microseconds
+            KeysetPage<Title> page = titles.findPage(null, SortSpecification.parse("awarded"), null, 1, entityManager);
+            assertEquals(Long.valueOf(1), page.getContent().get(0).getId());
+            assertEquals(123456000, page.getContent().get(0).getAwarded().getNanos());
+            page = titles.findPage(null, SortSpecification.parse("awarded"), page.getNextCursor(), 5, entityManager);
+            assertEquals(1, page.getContent().size());
+            assertEquals(Long.valueOf(2), page.getContent().get(0).getId());
+        } finally {
+            entityManager.getTransaction().begin();
+            entityManager.createQuery("update Title t set t.awarded = null").executeUpdate();
+            entityManager.getTransaction().commit();
+            entityManager.clear();
+        }
+    }
+
+    @Test
+    public void testSortSpecification() throws Exception {
+        JpaCriteriaQueryVisitor<Course> visitor = new JpaCriteriaQueryVisitor<Course>();
+        ((SimpleMapper) visitor.getBuilderTools().getPropertiesMapper()).addMapping(Course.class, new HashMap<String, String>());
+        ((SimpleMapper) visitor.getBuilderTools().getPropertiesMapper()).addMapping(Course.class, "dept", "department");
+        visitor.setSortSpecification(SortSpecification.parse("-dept.code, name"));
+        CriteriaQuery<Course> query = new RSQLParser().parse("department.name==Testing").accept(visitor, entityManager);
+        assertEquals(2, query.getOrderList().size());
+        assertFalse(query.getOrderList().get(0).isAscending());
+        assertEquals(1, visitor.getRoot().getJoins().size());
+        assertEquals("Testing Course", entityManager.createQuery(query).getResultList().get(0).getName());
+
+        JpaTranslator<Course> translator = new JpaTranslator<Course>(Course.class);
+        query = translator.toCriteriaQuery(new RSQLParser().parse("id==1"), SortSpecification.parse("department.head.name,+code"), entityManager);
+        assertEquals(1, entityManager.createQuery(query).getResultList().size());
+        try {
+            translator.toCriteriaQuery(new RSQLParser().parse("id==1"), SortSpecification.parse("department.head.titles.name"), entityManager);
+            fail();
+        } catch (IllegalArgumentException e) {
+            // sorting on a collection repeats the entities
+        }
+    }
+
+    @Test
+    public void testProjection() throws Exception {
+        JpaProjectionQueryVisitor<Course> visitor = new JpaProjectionQueryVisitor<Course>();
+        visitor.setProjection(Projection.parse("name, department.code"));
+        visitor.setSortSpecification(SortSpecification.parse("-department.code"));
+        CriteriaQuery<Tuple> query = new RSQLParser().parse("department.name==Testing").accept(visitor, entityManager);
+        assertEquals(1, query.getRoots().iterator().next().getJoins().size());
+        Tuple tuple = entityManager.createQuery(query).getResultList().get(0);
+        assertEquals("Testing Course", tuple.get("name"));
+        assertEquals("MI-MDW", tuple.get("department.code"));
+        assertEquals("name,department.code", visitor.getProjection().toString());
+
+        JpaTranslator<Course> translator = new JpaTranslator<Course>(Course.class);
+        CriteriaQuery<CourseSummary> summaries = translator.toProjectionQuery(new RSQLParser().parse("id==1"), Projection.of("name", "department.code"), CourseSummary.class, entityManager);
+        CourseSummary summary = entityManager.createQuery(summaries).getSingleResult();
+        assertEquals("Testing Course", summary.name);
+        assertEquals("MI-MDW", summary.departmentCode);
+        assertEquals(1, entityManager.createQuery(translator.toProjectionQuery(new RSQLParser().parse("id==1"), Projection.parse("code"), entityManager)).getResultList().size());
+
+        // one row per matching element, like the entity query, never merged on the projected values
+        Node titles = new RSQLParser().parse("department.head.titles.name=in=(Phd,Consultant)");
+        assertEquals(2, entityManager.createQuery(translator.toProjectionQuery(titles, Projection.parse("name"), entityManager)).getResultList().size());
+        assertEquals(2, entityManager.createQuery(translator.toCriteriaQuery(titles, entityManager)).getResultList().size());
+        BuilderTools tools = new SimpleBuilderTools();
+        tools.setCollectionFilterMode(CollectionFilterMode.EXISTS);
+        translator = new JpaTranslator<Course>(Course.class, tools);
+        assertEquals(1, entityManager.createQuery(translator.toProjectionQuery(titles, Projection.parse("name"), entityManager)).getResultList().size());
+
+        try {
+            translator.toProjectionQuery(new RSQLParser().parse("id==1"), Projection.parse("department.head.titles.name"), entityManager);
+            fail();
+        } catch (IllegalArgumentException e) {
+            // projecting a collection repeats the entities
+        }
+        try {
+            new RSQLParser().parse("id==1").accept(new JpaProjectionQueryVisitor<Course>(), entityManager);
+            fail();
+        } catch (IllegalStateException e) {
+            // no projection
+        }
+    }
+
+    @Test
+    public void testFetchPlan() throws Exception {
+        JpaTranslator<Course> translator = new JpaTranslator<Course>(Course.class);
+        FetchPlan plan = FetchPlan.parse("department.head, department");
+        CriteriaQuery<Course> query = entityManager.getCriteriaBuilder().createQuery(Course.class);
+        Root<Course> root = query.from(Course.class);
+        assertTrue(plan.fetchJoins(root, new RSQLParser().parse("department.name==Testing"), entityManager, translator.getBuilderTools()));
+        Fetch<?, ?> department = root.getFetches().iterator().next();
+        assertEquals(1, root.getFetches().size());
+        assertEquals(JoinType.INNER, department.getJoinType());
+        assertEquals(JoinType.LEFT, department.getFetches().iterator().next().getJoinType());
+        query.where(translator.toPredicate(new RSQLParser().parse("department.name==Testing"), root, entityManager));
+        // the filter reused the fetch join
+        assertEquals(0, root.getJoins().size());
+        assertEquals(1, entityManager.createQuery(query).getResultList().size());
+
+        TypedQuery<Course> courses = translator.createQuery(new RSQLParser().parse("id==1"), plan, entityManager);
+        assertTrue(courses.getHints() == null || !courses.getHints().containsKey(FetchPlan.FETCH_GRAPH_HINT));
+        assertEquals("MI-MDW", courses.getSingleResult().getDepartment().getCode());
+
+        courses = translator.createQuery(new RSQLParser().parse("id==1"), FetchPlan.parse("department.head.titles,department"), entityManager);
+        EntityGraph<?> graph = (EntityGraph<?>) courses.getHints().get(FetchPlan.FETCH_GRAPH_HINT);
+        assertEquals(1, graph.getAttributeNodes().size());
+        AttributeNode<?> node = graph.getAttributeNodes().get(0);
+        assertEquals("department", node.getAttributeName());
+        Subgraph<?> subgraph = (Subgraph<?>) node.getSubgraphs().values().iterator().next();
+        node = subgraph.getAttributeNodes().get(0);
+        assertEquals("head", node.getAttributeName());
+        subgraph = (Subgraph<?>) node.getSubgraphs().values().iterator().next();
+        assertEquals("titles", subgraph.getAttributeNodes().get(0).getAttributeName());
+
+        try {
+            FetchPlan.parse("department,,code");
+            fail();
+        } catch (IllegalArgumentException e) {
+            // empty path
+        }
+    }
+
+    @Test
+    public void testExistsCollectionFilterMode() throws Exception {
+        RSQLParser parser = new RSQLParser();
+        JpaCriteriaQueryVisitor<Course> visitor = new JpaCriteriaQueryVisitor<Course>();
+        CriteriaQuery<Course> query = parser.parse("department.head.titles.name=in=(Phd,Consultant)").accept(visitor, entityManager);
+        assertEquals(2, entityManager.createQuery(query).getResultList().size());
+
+        visitor.getBuilderTools().setCollectionFilterMode(CollectionFilterMode.EXISTS);
+        query = parser.parse("department.head.titles.name=in=(Phd,Consultant)").accept(visitor, entityManager);
+        assertEquals(0, visitor.getRoot().getJoins().size());
+        assertEquals(1, entityManager.createQuery(query).getResultList().size());
+
+        // same element for different selectors, another element for a repeated selector
+        assertEquals(1, entityManager.createQuery(parser.parse("department.head.titles.name==Phd;department.head.titles.id==1;name==Testing*").accept(visitor, entityManager)).getResultList().size());
+        assertEquals(0, entityManager.createQuery(parser.parse("department.head.titles.name==Phd;department.head.titles.id==2").accept(visitor, entityManager)).getResultList().size());
+        assertEquals(1, entityManager.createQuery(parser.parse("department.head.titles.name==Phd;department.head.titles.name==Consultant").accept(visitor, entityManager)).getResultList().size());
+        assertEquals(1, entityManager.createQuery(parser.parse("department.head.titles.name==Other,id==1").accept(visitor, entityManager)).getResultList().size());
+
+        JpaTranslator<Course> translator = new JpaTranslator<Course>(Course.class, visitor.getBuilderTools());
+        CriteriaQuery<Long> count = translator.toCountQuery(parser.parse("department.head.titles.name=in=(Phd,Consultant)"), entityManager);
+        assertFalse(count.isDistinct());
+        assertEquals(Long.valueOf(1), entityManager.createQuery(count).getSingleResult());
+
+        CriteriaQueryTemplateCache<Course> templates = new CriteriaQueryTemplateCache<Course>(Course.class, visitor.getBuilderTools(), 16);
+        assertEquals(1, templates.createQuery(parser.parse("department.head.titles.name==Phd;department.head.titles.id==1"), entityManager).getResultList().size());
+        assertEquals(0, templates.createQuery(parser.parse("department.head.titles.name==Consultant;department.head.titles.id==1"), entityManager).getResultList().size());
+        assertEquals(1, templates.size(entityManager.getEntityManagerFactory()));
+    }
+
+    public static class CourseSummary {
+        private final String name;
+        private final String departmentCode;
+
+        public CourseSummary(String name, String departmentCode) {
+            this.name = name;
+            this.departmentCode = departmentCode;
+        }
     }
 
     @Test
@@ -516,6 +961,49 @@ public class JpaVisitorTest extends AbstractVisitorTest<Course> {
     	assertEquals("Testing Course", courses.get(0).getName());
     }
     
+    @Test
+    public void testRepeatedAssociationPrefixReusesJoin() throws Exception {
+    	Node rootNode = new RSQLParser().parse("department.code==MI-MDW;(department.head.name==Some,department.id==2)");
+    	CriteriaQuery<Course> query = entityManager.getCriteriaBuilder().createQuery(Course.class);
+    	Root<Course> root = query.from(Course.class);
+    	JpaPredicateVisitor<Course> visitor = new JpaPredicateVisitor<Course>().defineRoot(root);
+    	query.where(rootNode.accept(visitor, entityManager));
+
+    	assertEquals(1, root.getJoins().size());
+    	List<Course> courses = entityManager.createQuery(query).getResultList();
+    	assertEquals("Testing Course", courses.get(0).getName());
+    }
+
+    @Test
+    public void testDisjunctionSharesCollectionJoin() throws Exception {
+    	Node rootNode = new RSQLParser().parse("titles.name==Phd,titles.name==Consultant,(titles.name==Nobody,titles.id==3)");
+    	CriteriaQuery<Person> query = entityManager.getCriteriaBuilder().createQuery(Person.class);
+    	Root<Person> root = query.from(Person.class);
+    	query.where(rootNode.accept(new JpaPredicateVisitor<Person>().defineRoot(root), entityManager));
+    	assertEquals(1, root.getJoins().size());
+    	assertFalse(entityManager.createQuery(query).getResultList().isEmpty());
+
+    	// comparisons of a conjunction may match different elements
+    	rootNode = new RSQLParser().parse("titles.name==Phd,(titles.name==Phd;titles.name==Consultant)");
+    	query = entityManager.getCriteriaBuilder().createQuery(Person.class);
+    	root = query.from(Person.class);
+    	query.where(rootNode.accept(new JpaPredicateVisitor<Person>().defineRoot(root), entityManager));
+    	assertEquals(3, root.getJoins().size());
+    	assertFalse(entityManager.createQuery(query).getResultList().isEmpty());
+    }
+
+    @Test
+    public void testInvalidArgumentDoesNotCreateJoin() throws Exception {
+    	CriteriaQuery<Course> query = entityManager.getCriteriaBuilder().createQuery(Course.class);
+    	Root<Course> root = query.from(Course.class);
+    	try {
+    		new RSQLParser().parse("department.id==abc").accept(new JpaPredicateVisitor<Course>().defineRoot(root), entityManager);
+    		fail();
+    	} catch (ArgumentFormatException e) {
+    		assertEquals(0, root.getJoins().size());
+    	}
+    }
+
     @Test
     public void testNavigateThroughCollectionSelection() throws Exception {
     	Node rootNode = new RSQLParser().parse("department.head.titles.name==Phd");
@@ -526,6 +1014,452 @@ public class JpaVisitorTest extends AbstractVisitorTest<Course> {
     	assertEquals("Testing Course", courses.get(0).getName());
     }
     
+    @Test
+    public void testTranslationListener() throws Exception {
+    	final List<String> events = new ArrayList<String>();
+    	Node rootNode = new RSQLParser().parse("department.id==1;id=in=(1,2)");
+    	JpaCriteriaQueryVisitor<Course> visitor = new JpaCriteriaQueryVisitor<Course>();
+    	visitor.getBuilderTools().setTranslationListener(new TranslationListenerAdapter() {
+    		@Override
+    		public void pathResolved(String selector, Path<?> path) {
+    			events.add("path:" + selector);
+    		}
+    		@Override
+    		public void argumentParsed(String argument, Object value) {
+    			events.add("arg:" + value);
+    		}
+    		@Override
+    		public void predicateCreated(Node node, Predicate predicate) {
+    			events.add("predicate:" + node.getClass().getSimpleName());
+    		}
+    	});
+    	rootNode.accept(visitor, entityManager);
+
+    	assertEquals(Arrays.asList("arg:1", "path:department.id", "predicate:ComparisonNode",
+    			"arg:1", "arg:2", "path:id", "predicate:ComparisonNode", "predicate:AndNode"), events);
+    }
+
+    @Test
+    public void testTranslator() throws Exception {
+    	Node rootNode = new RSQLParser().parse("department.id==1;name==*Course");
+    	JpaTranslator<Course> translator = new JpaTranslator<Course>(Course.class);
+
+    	List<Course> courses = entityManager.createQuery(translator.toCriteriaQuery(rootNode, entityManager)).getResultList();
+    	assertEquals("Testing Course", courses.get(0).getName());
+    	assertEquals((Long) 1L, entityManager.createQuery(translator.toCountQuery(rootNode, entityManager)).getSingleResult());
+    }
+
+    @Test
+    public void testTranslatorToolsAreFrozen() throws Exception {
+    	JpaCriteriaQueryVisitor<Course> visitor = new JpaCriteriaQueryVisitor<Course>();
+    	JpaTranslator<Course> translator = new JpaTranslator<Course>(Course.class, visitor.getBuilderTools());
+    	visitor.getBuilderTools().setPropertiesMapper(new SimpleMapper());
+    	assertFalse(visitor.getBuilderTools().getPropertiesMapper() == translator.getBuilderTools().getPropertiesMapper());
+    	try {
+    		translator.getBuilderTools().setPredicateBuilder(null);
+    		fail();
+    	} catch (UnsupportedOperationException e) {
+    		assertEquals("Builder tools are immutable.", e.getMessage());
+    	}
+    }
+
+    @Test
+    public void testTranslatorToolsAreCopied() throws Exception {
+    	SimpleBuilderTools tools = new SimpleBuilderTools();
+    	SimpleMapper mapper = (SimpleMapper) tools.getPropertiesMapper();
+    	mapper.addMapping(Course.class, new HashMap<String, String>());
+    	mapper.addMapping(Course.class, "dept", "department");
+    	JpaTranslator<Course> translator = new JpaTranslator<Course>(Course.class, tools);
+
+    	// changes on the original tools are not seen by the translator
+    	mapper.addMapping(Course.class, "code", "name");
+    	tools.getOperatorRegistry().register(new ComparisonOperator("=def="), new OperatorHandler() {
+    		public Predicate createPredicate(ComparisonNode comparison, Path<?> path, List<Object> arguments, EntityManager manager, BuilderTools tools) {
+    			return manager.getCriteriaBuilder().equal(path, arguments.get(0));
+    		}
+    	});
+    	tools.getCaseSensitivityPolicy().register(Course.class, CaseSensitivity.SENSITIVE);
+    	BuilderTools frozen = translator.getBuilderTools();
+    	Node testing = new RSQLParser().parse("name==testing*");
+    	assertEquals(1, entityManager.createQuery(translator.toCriteriaQuery(testing, entityManager)).getResultList().size());
+    	try {
+    		frozen.getCaseSensitivityPolicy().register(Course.class, CaseSensitivity.LOWER);
+    		fail();
+    	} catch (UnsupportedOperationException e) {
+    		assertEquals("Case sensitivity policy is frozen.", e.getMessage());
+    	}
+    	assertEquals("department", frozen.getPropertiesMapper().translate("dept", Course.class));
+    	assertEquals("code", frozen.getPropertiesMapper().translate("code", Course.class));
+    	assertNull(frozen.getOperatorRegistry().resolve(new ComparisonOperator("=def="), Long.class));
+    	try {
+    		((SimpleMapper) frozen.getPropertiesMapper()).addMapping(Course.class, "code", "name");
+    		fail();
+    	} catch (UnsupportedOperationException e) {
+    		assertEquals("Mapping is frozen.", e.getMessage());
+    	}
+    	try {
+    		frozen.getOperatorRegistry().register(RSQLOperators.EQUAL, new OperatorHandler() {
+    			public Predicate createPredicate(ComparisonNode comparison, Path<?> path, List<Object> arguments, EntityManager manager, BuilderTools tools) {
+    				return null;
+    			}
+    		});
+    		fail();
+    	} catch (UnsupportedOperationException e) {
+    		assertEquals("Operator registry is frozen.", e.getMessage());
+    	}
+    	try {
+    		((DefaultArgumentParser) frozen.getArgumentParser()).registerConverter(String.class, new ArgumentConverter<String>() {
+    			public String convert(String argument) {
+    				return argument;
+    			}
+    		});
+    		fail();
+    	} catch (UnsupportedOperationException e) {
+    		assertEquals("Argument parser is frozen.", e.getMessage());
+    	}
+
+    	// tools written against the first versions of the interface
+    	BuilderTools legacy = new BuilderTools() {
+    		private final Mapper legacyMapper = new SimpleMapper();
+    		private final ArgumentParser legacyParser = new DefaultArgumentParser();
+    		public Mapper getPropertiesMapper() { return legacyMapper; }
+    		public void setPropertiesMapper(Mapper mapper) { }
+    		public ArgumentParser getArgumentParser() { return legacyParser; }
+    		public void setArgumentParser(ArgumentParser argumentParser) { }
+    		public PredicateBuilderStrategy getPredicateBuilder() { return null; }
+    		public void setPredicateBuilder(PredicateBuilderStrategy predicateStrategy) { }
+    	};
+    	assertEquals(CollectionFilterMode.JOIN, legacy.getCollectionFilterMode());
+    	try {
+    		legacy.setCollectionFilterMode(CollectionFilterMode.EXISTS);
+    		fail();
+    	} catch (UnsupportedOperationException e) {
+    		assertEquals("CollectionFilterMode can not be set on these builder tools.", e.getMessage());
+    	}
+    	Node rootNode = new RSQLParser().parse("department.id==1");
+    	List<Course> courses = entityManager.createQuery(new JpaTranslator<Course>(Course.class, legacy).toCriteriaQuery(rootNode, entityManager)).getResultList();
+    	assertEquals("Testing Course", courses.get(0).getName());
+    }
+
+    @Test
+    public void testTranslatorSharedBetweenThreads() throws Exception {
+    	final JpaTranslator<Course> translator = new JpaTranslator<Course>(Course.class);
+    	final Node rootNode = new RSQLParser().parse("department.head.name==Some,id=in=(1,2)");
+    	List<Future<Integer>> results = new ArrayList<Future<Integer>>();
+    	ExecutorService executor = Executors.newFixedThreadPool(4);
+    	try {
+    		for (int i = 0; i < 16; i++) {
+    			results.add(executor.submit(new Callable<Integer>() {
+    				public Integer call() throws Exception {
+    					EntityManager manager = EntityManagerFactoryInitializer.getEntityManagerFactory().createEntityManager();
+    					try {
+    						return manager.createQuery(translator.toCriteriaQuery(rootNode, manager)).getResultList().size();
+    					} finally {
+    						manager.close();
+    					}
+    				}
+    			}));
+    		}
+    		for (Future<Integer> result : results) {
+    			assertEquals((Integer) 1, result.get());
+    		}
+    	} finally {
+    		executor.shutdown();
+    	}
+    }
+
+    @Test
+    public void testTemplatesSharedBetweenThreads() throws Exception {
+    	final CriteriaQueryTemplateCache<Course> templates = new CriteriaQueryTemplateCache<Course>(Course.class);
+    	final RSQLParser parser = new RSQLParser();
+    	List<Future<Integer>> results = new ArrayList<Future<Integer>>();
+    	ExecutorService executor = Executors.newFixedThreadPool(4);
+    	try {
+    		for (int i = 0; i < 32; i++) {
+    			// two shapes, each one bound with matching and not matching values
+    			final String filter = (i % 2 == 0 ? "department.code==X,id=in=(" : "name==*Course;id=in=(") + (i % 4 < 2 ? "1,2)" : "3,4)");
+    			results.add(executor.submit(new Callable<Integer>() {
+    				public Integer call() throws Exception {
+    					EntityManager manager = EntityManagerFactoryInitializer.getEntityManagerFactory().createEntityManager();
+    					try {
+    						return templates.createQuery(parser.parse(filter), manager).getResultList().size();
+    					} finally {
+    						manager.close();
+    					}
+    				}
+    			}));
+    		}
+    		for (int i = 0; i < results.size(); i++) {
+    			assertEquals((Integer) (i % 4 < 2 ? 1 : 0), results.get(i).get());
+    		}
+    	} finally {
+    		executor.shutdown();
+    	}
+    	EntityManager manager = EntityManagerFactoryInitializer.getEntityManagerFactory().createEntityManager();
+    	try {
+    		assertEquals(2, templates.size(manager.getEntityManagerFactory()));
+    	} finally {
+    		manager.close();
+    	}
+    }
+
+    @Test
+    public void testNodeNormalizer() throws Exception {
+    	NodeNormalizer<Course> normalizer = new NodeNormalizer<Course>(Course.class);
+    	RSQLParser parser = new RSQLParser();
+
+    	Node rootNode = normalizer.normalize(parser.parse("(id==1,id==2),(id=in=(3,1);id==1);code==MI-MDW"), entityManager);
+    	assertEquals(RSQLParserCache.fingerprint(parser.parse("id=in=(1,2),(id==1;code==MI-MDW)")), RSQLParserCache.fingerprint(rootNode));
+    	assertTrue(rootNode instanceof LogicalNode);
+
+    	rootNode = normalizer.normalize(parser.parse("id!=2;(id!=3;id=out=(4,2));department.id==1;department.id==1"), entityManager);
+    	assertEquals(RSQLParserCache.fingerprint(parser.parse("department.id==1;id=out=(2,3,4)")), RSQLParserCache.fingerprint(rootNode));
+    	List<Course> courses = entityManager.createQuery(rootNode.accept(new JpaCriteriaQueryVisitor<Course>(), entityManager)).getResultList();
+    	assertEquals("Testing Course", courses.get(0).getName());
+
+    	// strings, nulls and collections keep their own comparisons
+    	String filter = "name==Testing*,name==Other;id==null,id==1;department.head.titles.name==Phd,department.head.titles.name==Other";
+    	rootNode = normalizer.normalize(parser.parse(filter), entityManager);
+    	assertEquals(RSQLParserCache.fingerprint(parser.parse(filter)), RSQLParserCache.fingerprint(rootNode));
+    }
+
+    @Test
+    public void testNodeNormalizerIntervals() throws Exception {
+    	NodeNormalizer<Course> normalizer = new NodeNormalizer<Course>(Course.class);
+    	RSQLParser parser = new RSQLParser();
+
+    	Node rootNode = normalizer.normalize(parser.parse("credits=gt=5;credits=ge=2;credits=lt=20;credits=le=15;code==MI-MDW"), entityManager);
+    	assertEquals(RSQLParserCache.fingerprint(new AndNode(Arrays.asList(parser.parse("code==MI-MDW"),
+    			new ComparisonNode(ComparisonOperatorProxy.BETWEEN.getOperator(), "credits", Arrays.asList("6", "15"))))), RSQLParserCache.fingerprint(rootNode));
+    	List<Course> courses = entityManager.createQuery(rootNode.accept(new JpaCriteriaQueryVisitor<Course>(), entityManager)).getResultList();
+    	assertEquals("Testing Course", courses.get(0).getName());
+    	assertEquals(1, new CriteriaQueryTemplateCache<Course>(Course.class).createQuery(rootNode, entityManager).getResultList().size());
+
+    	rootNode = normalizer.normalize(parser.parse("id=in=(1,2,3);id=gt=1;id!=3"), entityManager);
+    	assertEquals(RSQLParserCache.fingerprint(parser.parse("id==2")), RSQLParserCache.fingerprint(rootNode));
+
+    	assertTrue(NodeNormalizer.isEmpty(normalizer.normalize(parser.parse("active==true;active==false"), entityManager)));
+    	assertTrue(NodeNormalizer.isEmpty(normalizer.normalize(parser.parse("credits=gt=5;credits=lt=3,id==1;id==null"), entityManager)));
+    	assertTrue(NodeNormalizer.isEmpty(normalizer.normalize(parser.parse("startDate=gt=2015-01-01;startDate=lt=2015-01-02"), entityManager)));
+    	assertFalse(NodeNormalizer.isEmpty(normalizer.normalize(parser.parse("startDate=gt=2015-01-01;startDate=lt=2015-01-03,id==1"), entityManager)));
+
+    	rootNode = normalizer.normalize(parser.parse("id==1;id==2"), entityManager);
+    	assertEquals(0, entityManager.createQuery(rootNode.accept(new JpaCriteriaQueryVisitor<Course>(), entityManager)).getResultList().size());
+    }
+
+    @Test
+    public void testSelectivityHintOfAliasedSelector() throws Exception {
+    	SimpleBuilderTools tools = new SimpleBuilderTools();
+    	((SimpleMapper) tools.getPropertiesMapper()).addMapping(Course.class, new HashMap<String, String>());
+    	((SimpleMapper) tools.getPropertiesMapper()).addMapping(Course.class, "c", "code");
+    	DefaultSelectivityEstimator estimator = new DefaultSelectivityEstimator();
+    	estimator.sample(entityManager, Course.class, "code");
+
+    	SelectorPlan plan = PredicateBuilder.findSelectorPlan("c", Course.class, entityManager, tools);
+    	ComparisonNode equal = new ComparisonNode(RSQLOperators.EQUAL, "c", Arrays.asList("MI-MDW"));
+    	assertEquals(1.0, estimator.estimate(equal, plan, Arrays.<Object>asList("MI-MDW"), entityManager), 0);
+    	ComparisonNode like = new ComparisonNode(RSQLOperators.EQUAL, "c", Arrays.asList("MI_MDW"));
+    	assertEquals(DefaultSelectivityEstimator.LIKE_SELECTIVITY, estimator.estimate(like, plan, Arrays.<Object>asList("MI_MDW"), entityManager), 0);
+    }
+
+    @Test
+    public void testSelectivityReorderer() throws Exception {
+    	RSQLParser parser = new RSQLParser();
+    	Node rootNode = parser.parse("name==*Course;credits=gt=1;(code==MI-MDW,id==1);id==1;department.id==1");
+
+    	SelectivityReorderer<Course> reorderer = new SelectivityReorderer<Course>(Course.class);
+    	assertEquals("(id=='1';department.id=='1';(code=='MI-MDW',id=='1');credits=gt='1';name=='*Course')", reorderer.reorder(rootNode, entityManager).toString());
+
+    	DefaultSelectivityEstimator estimator = new DefaultSelectivityEstimator();
+    	estimator.setSelectivity(Course.class, "department.id", 0.5);
+    	estimator.sample(entityManager, Course.class, "code");
+    	reorderer = new SelectivityReorderer<Course>(Course.class, new SimpleBuilderTools(), estimator);
+    	Node reordered = reorderer.reorder(rootNode, entityManager);
+    	assertEquals("(id=='1';credits=gt='1';department.id=='1';name=='*Course';(code=='MI-MDW',id=='1'))", reordered.toString());
+
+    	List<Course> courses = entityManager.createQuery(reordered.accept(new JpaCriteriaQueryVisitor<Course>(), entityManager)).getResultList();
+    	assertEquals("Testing Course", courses.get(0).getName());
+    	Node ordered = parser.parse("id==1;name==*Course");
+    	assertTrue(ordered == reorderer.reorder(ordered, entityManager));
+    }
+
+    @Test
+    public void testLargeInListStrategy() throws Exception {
+    	StringBuilder ids = new StringBuilder("1");
+    	for (int i = 2500; i > 1; i--) {
+    		ids.append(',').append(i).append(',').append(i);
+    	}
+    	Node rootNode = new RSQLParser().parse("id=in=(" + ids + ")");
+
+    	CriteriaQuery<Course> query = entityManager.getCriteriaBuilder().createQuery(Course.class);
+    	Root<Course> root = query.from(Course.class);
+    	JpaPredicateVisitor<Course> visitor = new JpaPredicateVisitor<Course>().defineRoot(root);
+    	visitor.getBuilderTools().setInListStrategy(new ThresholdInListStrategy(100, new DefaultInListStrategy(),
+    			new DefaultInListStrategy(DefaultInListStrategy.ORACLE_MAXIMUM_SIZE, true)));
+    	Predicate predicate = rootNode.accept(visitor, entityManager);
+    	assertEquals(Predicate.BooleanOperator.OR, predicate.getOperator());
+
+    	List<Course> courses = entityManager.createQuery(query.where(predicate)).getResultList();
+    	assertEquals("Testing Course", courses.get(0).getName());
+
+    	CriteriaQueryTemplateCache<Course> templates = new CriteriaQueryTemplateCache<Course>(Course.class, visitor.getBuilderTools(), 16);
+    	assertEquals(0, templates.createQuery(new RSQLParser().parse("id=out=(" + ids + ")"), entityManager).getResultList().size());
+    }
+
+    @Test
+    public void testInListPadding() throws Exception {
+    	DefaultInListStrategy strategy = new DefaultInListStrategy(4, false, DefaultInListStrategy.powersOfTwo(64));
+    	assertEquals(1, strategy.paddedSize(1));
+    	assertEquals(4, strategy.paddedSize(3));
+    	assertEquals(5, strategy.paddedSize(5));
+
+    	JpaCriteriaQueryVisitor<Course> visitor = new JpaCriteriaQueryVisitor<Course>();
+    	visitor.getBuilderTools().setInListStrategy(strategy);
+    	CriteriaQuery<Course> query = new RSQLParser().parse("id=in=(3,2,1)").accept(visitor, entityManager);
+    	assertEquals(1, entityManager.createQuery(query).getResultList().size());
+
+    	CriteriaQueryTemplateCache<Course> templates = new CriteriaQueryTemplateCache<Course>(Course.class, visitor.getBuilderTools(), 16);
+    	assertEquals(1, templates.createQuery(new RSQLParser().parse("id=in=(1,2,3)"), entityManager).getResultList().size());
+    	assertEquals(0, templates.createQuery(new RSQLParser().parse("id=out=(1,2,3)"), entityManager).getResultList().size());
+    	assertEquals(0, templates.createQuery(new RSQLParser().parse("id=in=(4,5,6,7)"), entityManager).getResultList().size());
+    	assertEquals(1, templates.createQuery(new RSQLParser().parse("id=in=(6,7,8,9,1)"), entityManager).getResultList().size());
+    	assertEquals(3, templates.size(entityManager.getEntityManagerFactory()));
+    }
+
+    @Test
+    public void testInListPaddingSharedTemplate() throws Exception {
+    	BuilderTools tools = new SimpleBuilderTools();
+    	tools.setInListStrategy(new DefaultInListStrategy(4, false, DefaultInListStrategy.powersOfTwo(64)));
+    	RSQLParser parser = new RSQLParser();
+
+    	// lists of 3 and 4 values share the padded template, in both warm up orders
+    	CriteriaQueryTemplateCache<Course> templates = new CriteriaQueryTemplateCache<Course>(Course.class, tools, 16);
+    	assertEquals(0, templates.createQuery(parser.parse("id=in=(5,6,7)"), entityManager).getResultList().size());
+    	assertEquals(1, templates.createQuery(parser.parse("id=in=(5,6,7,1)"), entityManager).getResultList().size());
+    	assertEquals(1, templates.size(entityManager.getEntityManagerFactory()));
+
+    	templates = new CriteriaQueryTemplateCache<Course>(Course.class, tools, 16);
+    	assertEquals(1, templates.createQuery(parser.parse("id=in=(5,6,7,1)"), entityManager).getResultList().size());
+    	assertEquals(1, templates.createQuery(parser.parse("id=in=(1,6,7)"), entityManager).getResultList().size());
+    	assertEquals(0, templates.createQuery(parser.parse("id=in=(5,6,7)"), entityManager).getResultList().size());
+    	assertEquals(1, templates.size(entityManager.getEntityManagerFactory()));
+    }
+
+    @Test
+    public void testExactStringMatchAndLeadingWildcard() throws Exception {
+    	CriteriaQuery<Course> query = entityManager.getCriteriaBuilder().createQuery(Course.class);
+    	Root<Course> root = query.from(Course.class);
+    	JpaPredicateVisitor<Course> visitor = new JpaPredicateVisitor<Course>().defineRoot(root);
+    	Predicate predicate = new RSQLParser().parse("code==mi-mdw").accept(visitor, entityManager);
+    	assertEquals(1, entityManager.createQuery(query.where(predicate)).getResultList().size());
+
+    	final List<String> flagged = new ArrayList<String>();
+    	visitor.getBuilderTools().setLeadingWildcardHandler(new LeadingWildcardHandler() {
+    		public Predicate createLike(Expression<String> path, String argument, CriteriaBuilder builder) {
+    			flagged.add(argument);
+    			return null;
+    		}
+    	});
+    	predicate = new RSQLParser().parse("name==*course;name==test*;name!=*other*").accept(visitor, entityManager);
+    	assertEquals(Arrays.asList("*course", "*other*"), flagged);
+    	assertEquals(1, entityManager.createQuery(query.where(predicate)).getResultList().size());
+
+    	CriteriaQueryTemplateCache<Course> templates = new CriteriaQueryTemplateCache<Course>(Course.class, visitor.getBuilderTools(), 16);
+    	assertEquals(1, templates.createQuery(new RSQLParser().parse("code==MI-MDW"), entityManager).getResultList().size());
+    	assertEquals(0, templates.createQuery(new RSQLParser().parse("code==MI"), entityManager).getResultList().size());
+    	assertEquals(1, templates.createQuery(new RSQLParser().parse("code==MI*"), entityManager).getResultList().size());
+    	assertEquals(1, templates.createQuery(new RSQLParser().parse("code==*MDW"), entityManager).getResultList().size());
+    	assertEquals(Arrays.asList("*course", "*other*", "*MDW"), flagged);
+    	assertEquals(3, templates.size(entityManager.getEntityManagerFactory()));
+    }
+
+    @Test
+    public void testCaseSensitivityPolicy() throws Exception {
+    	JpaCriteriaQueryVisitor<Course> visitor = new JpaCriteriaQueryVisitor<Course>();
+    	CaseSensitivityPolicy policy = visitor.getBuilderTools().getCaseSensitivityPolicy();
+    	policy.register(Course.class, "code", CaseSensitivity.SENSITIVE);
+    	policy.registerShadow(Course.class, "name", "details.description");
+    	assertEquals(CaseSensitivity.LOWER, policy.getDefaultSensitivity());
+
+    	assertEquals(0, entityManager.createQuery(new RSQLParser().parse("code==mi-mdw").accept(visitor, entityManager)).getResultList().size());
+    	assertEquals(1, entityManager.createQuery(new RSQLParser().parse("code==MI-*").accept(visitor, entityManager)).getResultList().size());
+    	assertEquals(1, entityManager.createQuery(new RSQLParser().parse("name==TEST").accept(visitor, entityManager)).getResultList().size());
+    	assertEquals(1, entityManager.createQuery(new RSQLParser().parse("department.code==mi-mdw").accept(visitor, entityManager)).getResultList().size());
+
+    	policy.register(Department.class, CaseSensitivity.COLLATION);
+    	assertEquals(0, entityManager.createQuery(new RSQLParser().parse("department.code==mi-mdw").accept(visitor, entityManager)).getResultList().size());
+
+    	CriteriaQueryTemplateCache<Course> templates = new CriteriaQueryTemplateCache<Course>(Course.class, visitor.getBuilderTools(), 16);
+    	assertEquals(0, templates.createQuery(new RSQLParser().parse("code==mi-mdw"), entityManager).getResultList().size());
+    	assertEquals(1, templates.createQuery(new RSQLParser().parse("code==MI-MDW"), entityManager).getResultList().size());
+    	assertEquals(1, templates.createQuery(new RSQLParser().parse("name==T*"), entityManager).getResultList().size());
+    }
+
+    @Test
+    public void testParserCache() throws Exception {
+    	RSQLParserCache parser = new RSQLParserCache();
+    	Node rootNode = parser.parse("department.id==1;id=in=(1,2)");
+    	assertTrue(rootNode == parser.parse(" department.id==1;id=in=(1,2) "));
+    	assertTrue(rootNode == parser.parse("id=in=(2,1);department.id==1"));
+    	assertEquals(1, parser.getHitCount());
+    	assertEquals(2, parser.getMissCount());
+    	assertEquals(2, parser.size());
+
+    	List<Course> courses = entityManager.createQuery(rootNode.accept(new JpaCriteriaQueryVisitor<Course>(), entityManager)).getResultList();
+    	assertEquals("Testing Course", courses.get(0).getName());
+    }
+
+    @Test
+    public void testParserCacheEviction() throws Exception {
+    	RSQLParserCache parser = new RSQLParserCache(new RSQLParser(), 2, 20);
+    	parser.parse("id==1");
+    	parser.parse("id==2");
+    	parser.parse("id==3");
+    	assertEquals(2, parser.size());
+    	assertEquals(1, parser.getEvictionCount());
+    	parser.parse("name==Some_long_name");
+    	assertEquals(1, parser.size());
+    	assertEquals(20, parser.weight());
+    	assertEquals(3, parser.getEvictionCount());
+
+    	// interned trees go away with the filters that refer to them
+    	parser = new RSQLParserCache(new RSQLParser(), 3, 20);
+    	Node evicted = parser.parse("id==1");
+    	parser.parse("name==Some_long_name");
+    	assertEquals(1, parser.size());
+    	assertFalse(evicted == parser.parse("id==1"));
+    	assertEquals(RSQLParserCache.fingerprint(new RSQLParser().parse("a==1;(b==2;c=out=(y,x))")),
+    			RSQLParserCache.fingerprint(new RSQLParser().parse("c=out=(x,y);b==2;a==1")));
+    }
+
+    @Test
+    public void testCriteriaQueryTemplateReusedForSameShape() throws Exception {
+    	CriteriaQueryTemplateCache<Course> templates = new CriteriaQueryTemplateCache<Course>(Course.class);
+    	RSQLParser parser = new RSQLParser();
+
+    	List<Course> courses = templates.createQuery(parser.parse("name==*Course;credits=ge=5;id=in=(1,2)"), entityManager).getResultList();
+    	assertEquals("Testing Course", courses.get(0).getName());
+    	assertEquals(1, templates.size(entityManager.getEntityManagerFactory()));
+
+    	courses = templates.createQuery(parser.parse("name==Other*;credits=ge=1;id=in=(3,4)"), entityManager).getResultList();
+    	assertEquals(0, courses.size());
+    	assertEquals(1, templates.size(entityManager.getEntityManagerFactory()));
+
+    	courses = templates.createQuery(parser.parse("name==*Course;credits=ge=1"), entityManager).getResultList();
+    	assertEquals(1, courses.size());
+    	assertEquals(2, templates.size(entityManager.getEntityManagerFactory()));
+    }
+
+    @Test
+    public void testCriteriaQueryTemplateWithLiteralArguments() throws Exception {
+    	CriteriaQueryTemplateCache<Course> templates = new CriteriaQueryTemplateCache<Course>(Course.class);
+    	RSQLParser parser = new RSQLParser();
+
+    	assertEquals(1, templates.createQuery(parser.parse("department.id==1,code==null,startDate=lt=2100-01-01"), entityManager).getResultList().size());
+    	assertEquals(0, templates.createQuery(parser.parse("code!=null;code==null"), entityManager).getResultList().size());
+    	assertEquals(2, templates.size(entityManager.getEntityManagerFactory()));
+    }
+
     @Test
     public void testUnsupportedNode() throws Exception {
     	try{
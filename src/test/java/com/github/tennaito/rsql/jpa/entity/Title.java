@@ -23,12 +23,29 @@
  */
 package com.github.tennaito.rsql.jpa.entity;
 
+import java.sql.Timestamp;
+
+import javax.persistence.Column;
 import javax.persistence.Entity;
+import javax.persistence.EntityListeners;
+
+import com.github.tennaito.rsql.jpa.CountCacheInvalidator;
 
 /**
  * @author Antonio Rabelo
  */
 @Entity
+@EntityListeners(CountCacheInvalidator.class)
 public class Title extends AbstractTestEntity {
 
+    @Column
+    private Timestamp awarded;
+
+    public Timestamp getAwarded() {
+        return awarded;
+    }
+
+    public void setAwarded(Timestamp awarded) {
+        this.awarded = awarded;
+    }
 }